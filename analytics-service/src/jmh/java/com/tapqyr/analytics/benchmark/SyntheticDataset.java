@@ -0,0 +1,207 @@
+package com.tapqyr.analytics.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Writes a synthetic copy of the backend's SQLite database: the {@code users}, {@code todos} and
+ * {@code user_memories} tables with the Prisma column layout (timestamps as epoch milliseconds,
+ * no index on {@code todos.userId}), filled deterministically from a seed.
+ * <p>
+ * Todo ownership is skewed so a few users hold most todos, creation times spread over the last
+ * year with per-user weekday habits, and about a third of users have a memory row.
+ * <pre>
+ * java -cp ... com.tapqyr.analytics.benchmark.SyntheticDataset 100000 10000000 target/benchmark-data/large.db
+ * </pre>
+ */
+public final class SyntheticDataset {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final String[] PRIORITIES = {"low", "medium", "high"};
+
+    private SyntheticDataset() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: SyntheticDataset <users> <todos> [file] [seed]");
+            System.exit(1);
+        }
+        int users = Integer.parseInt(args[0]);
+        long todos = Long.parseLong(args[1]);
+        Path file = args.length > 2 ? Paths.get(args[2]) : defaultFile(Paths.get("target/benchmark-data"), users, todos);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        long started = System.currentTimeMillis();
+        generate(file, users, todos, seed);
+        System.out.printf("Wrote %d users / %d todos to %s in %d ms%n", users, todos, file, System.currentTimeMillis() - started);
+    }
+
+    // Path of the dataset for these sizes under dir, generating it first if it does not exist yet
+    public static Path ensure(Path dir, int users, long todos) throws IOException, SQLException {
+        Path file = defaultFile(dir, users, todos);
+        if (!Files.exists(file)) {
+            generate(file, users, todos, 42L);
+        }
+        return file;
+    }
+
+    static Path defaultFile(Path dir, int users, long todos) {
+        return dir.resolve("users-" + users + "-todos-" + todos + ".db").toAbsolutePath();
+    }
+
+    // Generated into a temporary file and moved into place, so an interrupted run never leaves a partial dataset
+    public static void generate(Path file, int users, long todos, long seed) throws IOException, SQLException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+
+        Random random = new Random(seed);
+        long now = System.currentTimeMillis();
+        long yearAgo = now - 365 * DAY_MILLIS;
+        String[] userIds = new String[users];
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + partial)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=OFF");
+                statement.execute("PRAGMA synchronous=OFF");
+                createSchema(statement);
+            }
+            connection.setAutoCommit(false);
+
+            // Per-user habits: favourite weekday, completion and AI bias
+            int[] favouriteDay = new int[users];
+            double[] completionBias = new double[users];
+            double[] aiBias = new double[users];
+            try (PreparedStatement insertUser = connection.prepareStatement(
+                    "INSERT INTO users (id, email, name, password, createdAt, updatedAt, isEmailVerified, lastLogin, onboardingComplete) " +
+                    "VALUES (?, ?, ?, 'x', ?, ?, 1, ?, 1)");
+                 PreparedStatement insertMemory = connection.prepareStatement(
+                    "INSERT INTO user_memories (id, userId, createdAt, updatedAt, taskPreferences, workPatterns, memoryText) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int u = 0; u < users; u++) {
+                    String userId = new UUID(random.nextLong(), random.nextLong()).toString();
+                    userIds[u] = userId;
+                    favouriteDay[u] = random.nextInt(7);
+                    completionBias[u] = random.nextDouble();
+                    aiBias[u] = random.nextDouble() * 0.6;
+
+                    long createdAt = yearAgo + (long) (random.nextDouble() * 300 * DAY_MILLIS);
+                    long updatedAt = createdAt + (long) (random.nextDouble() * (now - createdAt));
+                    insertUser.setString(1, userId);
+                    insertUser.setString(2, "user" + u + "@example.com");
+                    insertUser.setString(3, random.nextInt(5) == 0 ? null : "User " + u);
+                    insertUser.setLong(4, createdAt);
+                    insertUser.setLong(5, updatedAt);
+                    insertUser.setLong(6, updatedAt);
+                    insertUser.addBatch();
+
+                    if (random.nextInt(3) == 0) {
+                        insertMemory.setString(1, new UUID(random.nextLong(), random.nextLong()).toString());
+                        insertMemory.setString(2, userId);
+                        insertMemory.setLong(3, createdAt);
+                        insertMemory.setLong(4, updatedAt);
+                        insertMemory.setString(5, "{\"preferredPriority\":\"" + PRIORITIES[random.nextInt(3)] + "\"}");
+                        insertMemory.setString(6, "{\"focusHours\":[" + (8 + random.nextInt(4)) + "," + (13 + random.nextInt(4)) + "]}");
+                        insertMemory.setString(7, "Prefers " + PRIORITIES[random.nextInt(3)] + " priority work in the morning");
+                        insertMemory.addBatch();
+                    }
+                    if ((u + 1) % BATCH_SIZE == 0) {
+                        insertUser.executeBatch();
+                        insertMemory.executeBatch();
+                    }
+                }
+                insertUser.executeBatch();
+                insertMemory.executeBatch();
+            }
+
+            try (PreparedStatement insertTodo = connection.prepareStatement(
+                    "INSERT INTO todos (id, title, completed, dueDate, priority, createdAt, userId, isAIGenerated) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (long t = 0; t < todos; t++) {
+                    // Squaring a uniform draw gives a long tail of light users
+                    double r = random.nextDouble();
+                    int u = (int) (r * r * users);
+
+                    long createdAt = yearAgo + (long) (random.nextDouble() * (now - yearAgo));
+                    if (random.nextDouble() < 0.4) {
+                        // Move onto the user's favourite weekday, staying in the past
+                        int shift = Math.floorMod(favouriteDay[u] - dayIndex(createdAt), 7);
+                        createdAt = createdAt + shift * DAY_MILLIS > now ? createdAt - (7 - shift) * DAY_MILLIS : createdAt + shift * DAY_MILLIS;
+                    }
+
+                    insertTodo.setString(1, new UUID(random.nextLong(), random.nextLong()).toString());
+                    insertTodo.setString(2, "Todo " + t);
+                    insertTodo.setBoolean(3, random.nextDouble() < completionBias[u]);
+                    if (random.nextDouble() < 0.4) {
+                        insertTodo.setLong(4, createdAt + (long) (random.nextDouble() * 14 * DAY_MILLIS));
+                    } else {
+                        insertTodo.setNull(4, Types.INTEGER);
+                    }
+                    insertTodo.setString(5, PRIORITIES[random.nextInt(3)]);
+                    insertTodo.setLong(6, createdAt);
+                    insertTodo.setString(7, userIds[u]);
+                    insertTodo.setBoolean(8, random.nextDouble() < aiBias[u]);
+                    insertTodo.addBatch();
+                    if ((t + 1) % BATCH_SIZE == 0) {
+                        insertTodo.executeBatch();
+                    }
+                    if ((t + 1) % 1_000_000 == 0) {
+                        connection.commit();
+                    }
+                }
+                insertTodo.executeBatch();
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE");
+                statement.execute("PRAGMA journal_mode=WAL");
+            }
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // 0 = Monday, in the JVM default zone like the service's weekday columns
+    private static int dayIndex(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).getDayOfWeek().ordinal();
+    }
+
+    private static void createSchema(Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE \"users\" (" +
+                "\"id\" TEXT NOT NULL PRIMARY KEY, \"email\" TEXT NOT NULL, \"name\" TEXT, \"password\" TEXT NOT NULL, " +
+                "\"createdAt\" DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, \"updatedAt\" DATETIME NOT NULL, " +
+                "\"isEmailVerified\" BOOLEAN NOT NULL DEFAULT false, \"verificationToken\" TEXT, \"resetPasswordToken\" TEXT, " +
+                "\"resetPasswordExpires\" DATETIME, \"lastLogin\" DATETIME, \"workDescription\" TEXT, \"shortTermGoals\" TEXT, " +
+                "\"longTermGoals\" TEXT, \"otherContext\" TEXT, \"onboardingComplete\" BOOLEAN NOT NULL DEFAULT false, " +
+                "\"refreshToken\" TEXT)");
+        statement.execute("CREATE UNIQUE INDEX \"users_email_key\" ON \"users\"(\"email\")");
+        statement.execute("CREATE TABLE \"todos\" (" +
+                "\"id\" TEXT NOT NULL PRIMARY KEY, \"title\" TEXT NOT NULL, \"description\" TEXT, " +
+                "\"completed\" BOOLEAN NOT NULL DEFAULT false, \"dueDate\" DATETIME, \"priority\" TEXT NOT NULL DEFAULT 'medium', " +
+                "\"createdAt\" DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, \"userId\" TEXT, " +
+                "\"isAIGenerated\" BOOLEAN NOT NULL DEFAULT false, " +
+                "CONSTRAINT \"todos_userId_fkey\" FOREIGN KEY (\"userId\") REFERENCES \"users\" (\"id\") ON DELETE SET NULL ON UPDATE CASCADE)");
+        statement.execute("CREATE TABLE \"user_memories\" (" +
+                "\"id\" TEXT NOT NULL PRIMARY KEY, \"userId\" TEXT NOT NULL, " +
+                "\"createdAt\" DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, \"updatedAt\" DATETIME NOT NULL, " +
+                "\"taskPreferences\" JSONB, \"workPatterns\" JSONB, \"interactionHistory\" JSONB, \"userPersona\" JSONB, " +
+                "\"memoryText\" TEXT, " +
+                "CONSTRAINT \"user_memories_userId_fkey\" FOREIGN KEY (\"userId\") REFERENCES \"users\" (\"id\") ON DELETE CASCADE ON UPDATE CASCADE)");
+        statement.execute("CREATE UNIQUE INDEX \"user_memories_userId_key\" ON \"user_memories\"(\"userId\")");
+    }
+}
@@ -0,0 +1,169 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.AnalyticsServiceApplication;
+import com.tapqyr.analytics.benchmark.SyntheticDataset;
+import com.tapqyr.analytics.dto.ActivityPatterns;
+import com.tapqyr.analytics.dto.SimilarUser;
+import com.tapqyr.analytics.dto.TodoAnalytics;
+import com.tapqyr.analytics.repository.UserRepository;
+import com.tapqyr.analytics.rollup.TodoRollupService;
+import com.tapqyr.analytics.store.AnalyticsStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end timings of the {@link UserAnalyticsService} hot paths against a synthetic SQLite
+ * dataset (see {@link SyntheticDataset}), with the result caches turned off so every call pays
+ * for its queries. {@code dataset} is {@code users:todos}; files are generated on first use under
+ * {@code benchmark.data-dir} (default {@code target/benchmark-data}) and reused afterwards.
+ * <p>
+ * By default the in-memory {@link AnalyticsStore} and the other background jobs are off, so every
+ * iteration measures the SQLite path. With {@code -p store=true} the store is enabled and the trial
+ * starts only once its load has finished, so every iteration measures the in-memory path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserAnalyticsServiceBenchmark {
+
+    @Param({"1000:100000"})
+    public String dataset;
+
+    @Param({"20"})
+    public int limit;
+
+    // Window for getTodoAnalytics, ending now
+    @Param({"90"})
+    public int rangeDays;
+
+    // Serve from the in-memory store instead of SQLite
+    @Param({"false"})
+    public boolean store;
+
+    private ConfigurableApplicationContext context;
+    private UserAnalyticsService analyticsService;
+    private List<String> userIds;
+    private List<ActivityPatterns> samplePatterns;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] sizes = dataset.split(":");
+        Path dataDir = Paths.get(System.getProperty("benchmark.data-dir", "target/benchmark-data"));
+        Path database = SyntheticDataset.ensure(dataDir, Integer.parseInt(sizes[0]), Long.parseLong(sizes[1]));
+        Path rollups = database.resolveSibling(database.getFileName() + ".rollups");
+        Path memorySearch = database.resolveSibling(database.getFileName() + ".memory-search");
+
+        context = new SpringApplicationBuilder(AnalyticsServiceApplication.class)
+                // Command-line style arguments so they win over application.properties; WebConfig
+                // enables MVC, so the context still needs a servlet container, on a random port
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:sqlite:" + database,
+                        "--analytics.rollup.db-path=" + rollups,
+                        "--analytics.memory-search.db-path=" + memorySearch,
+                        "--spring.cache.type=none",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                        "--logging.level.org.springframework=WARN",
+                        "--logging.level.com.tapqyr.analytics=WARN",
+                        // Background refreshes would otherwise land inside measurement iterations
+                        "--analytics.rollup.refresh-interval-ms=3600000",
+                        "--analytics.memory-search.refresh-interval-ms=3600000",
+                        "--analytics.similarity.poll-interval-ms=3600000",
+                        "--analytics.similarity.rebuild-interval-ms=3600000",
+                        "--analytics.cache.invalidation-interval-ms=3600000",
+                        // The store would switch calls from SQLite to memory partway through the trial
+                        "--analytics.store.enabled=" + store,
+                        "--analytics.store.poll-interval-ms=3600000",
+                        "--analytics.ingest.enabled=false",
+                        "--analytics.sketch.enabled=false",
+                        "--analytics.cohort.enabled=false",
+                        "--analytics.memory-insights.enabled=false",
+                        "--analytics.weekly-report.enabled=false");
+        if (store) {
+            AnalyticsStore analyticsStore = context.getBean(AnalyticsStore.class);
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+            while (!analyticsStore.isReady()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Analytics store did not finish loading");
+                }
+                Thread.sleep(100);
+            }
+        }
+        analyticsService = context.getBean(UserAnalyticsService.class);
+        context.getBean(TodoRollupService.class).refresh();
+
+        userIds = new ArrayList<>();
+        for (Object[] row : context.getBean(UserRepository.class).findAllIdAndName()) {
+            userIds.add((String) row[0]);
+        }
+        random = new Random(7);
+
+        // Real activity patterns for the score micro-benchmark; also builds the similarity index
+        samplePatterns = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            samplePatterns.add(analyticsService.getUserActivityPatterns(randomUser()));
+        }
+        analyticsService.findSimilarUsers(randomUser(), limit);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double calculateSimilarityScore() {
+        return UserAnalyticsService.calculateSimilarityScore(
+                samplePatterns.get(random.nextInt(samplePatterns.size())),
+                samplePatterns.get(random.nextInt(samplePatterns.size())));
+    }
+
+    @Benchmark
+    public ActivityPatterns getUserActivityPatterns() {
+        return analyticsService.getUserActivityPatterns(randomUser());
+    }
+
+    @Benchmark
+    public TodoAnalytics getTodoAnalytics() {
+        LocalDateTime end = LocalDateTime.now();
+        return analyticsService.getTodoAnalytics(end.minusDays(rangeDays), end);
+    }
+
+    @Benchmark
+    public List<SimilarUser> findSimilarUsers() {
+        return analyticsService.findSimilarUsers(randomUser(), limit);
+    }
+
+    private String randomUser() {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.dto.ActivityPatterns;
+import com.tapqyr.analytics.rollup.TodoCounts;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares top-K lookups on {@link UserSimilarityIndex} against the pattern-by-pattern full scan that
+ * {@code findSimilarUsers} used to run. Both sides work on the same synthetic users held in memory,
+ * so the scan numbers exclude the per-user todo loading it also paid for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSimilarityIndexBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int users;
+
+    @Param({"20"})
+    public int limit;
+
+    private UserSimilarityIndex index;
+    private List<String> userIds;
+    private List<ActivityPatterns> patterns;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random generator = new Random(42);
+        index = new UserSimilarityIndex();
+        userIds = new ArrayList<>(users);
+        patterns = new ArrayList<>(users);
+
+        for (int u = 0; u < users; u++) {
+            String userId = "user-" + u;
+            userIds.add(userId);
+            index.putUser(userId, "User " + u);
+
+            int todoCount = 1 + generator.nextInt(200);
+            long[] dayCounts = new long[7];
+            long[] priorityCounts = new long[3];
+            long completed = 0;
+            long aiGenerated = 0;
+            // Skewed habits so users fall into distinct clusters
+            int favouriteDay = generator.nextInt(7);
+            double completionBias = generator.nextDouble();
+            double aiBias = generator.nextDouble() * 0.5;
+            for (int t = 0; t < todoCount; t++) {
+                int day = generator.nextDouble() < 0.4 ? favouriteDay : generator.nextInt(7);
+                int priority = generator.nextInt(3);
+                boolean isCompleted = generator.nextDouble() < completionBias;
+                boolean isAi = generator.nextDouble() < aiBias;
+
+                index.addTodos(userId, DayOfWeek.of(day + 1), UserSimilarityIndex.PRIORITIES[priority], isCompleted, isAi, 1);
+                dayCounts[day]++;
+                priorityCounts[priority]++;
+                if (isCompleted) completed++;
+                if (isAi) aiGenerated++;
+            }
+
+            patterns.add(new ActivityPatterns(new TodoCounts(todoCount, completed, aiGenerated, 0,
+                    priorityCounts[0], priorityCounts[1], priorityCounts[2]), dayCounts));
+        }
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public List<UserSimilarityIndex.Match> indexTopK() {
+        return index.topK(userIds.get(random.nextInt(users)), limit, 0.5);
+    }
+
+    @Benchmark
+    public List<double[]> fullScan() {
+        int query = random.nextInt(users);
+        ActivityPatterns queryPatterns = patterns.get(query);
+        List<double[]> matches = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            if (u == query) continue;
+            double score = UserAnalyticsService.calculateSimilarityScore(queryPatterns, patterns.get(u));
+            if (score > 0.5) {
+                matches.add(new double[]{score, u});
+            }
+        }
+        matches.sort((a, b) -> Double.compare(b[0], a[0]));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range scans over {@link TodoColumns}, counted by one thread and split into fork-join segments.
+ * The range covers the newer half of the synthetic todos, like a recent {@code /todo/analytics} window.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TodoColumnsScanBenchmark {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"100000", "1000000", "10000000"})
+    public int todos;
+
+    @Param({"65536"})
+    public int segmentRows;
+
+    private TodoColumns columns;
+    private long startMillis;
+    private long endMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        columns = new TodoColumns();
+        long now = System.currentTimeMillis();
+        for (int t = 0; t < todos; t++) {
+            long created = now - random.nextInt(365) * DAY_MILLIS;
+            columns.append(t + 1, 1 + random.nextInt(10_000), created,
+                    random.nextBoolean() ? created + 3 * DAY_MILLIS : TodoColumns.NO_DUE_DATE,
+                    random.nextInt(3), random.nextInt(ActivityHeatmap.HOURS_PER_WEEK), random.nextInt(365),
+                    random.nextDouble() < 0.6, random.nextDouble() < 0.2);
+        }
+        startMillis = now - 182 * DAY_MILLIS;
+        endMillis = now;
+    }
+
+    @Benchmark
+    public ActivityCounts sequential() {
+        return columns.countBetween(startMillis, endMillis, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ActivityCounts parallel() {
+        return columns.countBetween(startMillis, endMillis, segmentRows);
+    }
+}
@@ -0,0 +1,160 @@
+package com.tapqyr.analytics.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+import com.tapqyr.analytics.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-user result caches for {@code UserAnalyticsService}.
+ * <p>
+ * Entries are evicted per user when new rows show up past the high-water marks of
+ * {@code todos.createdAt}, {@code users.updatedAt} and {@code user_memories.updatedAt}. Todo
+ * completion changes leave no trace in those columns, so the Node backend can also evict a user
+ * explicitly; the cache TTL bounds staleness for anything else.
+ */
+@Service
+@Slf4j
+public class AnalyticsCacheService {
+
+    public static final String ACTIVITY_PATTERNS = "activityPatterns";
+    public static final String ENGAGEMENT_METRICS = "engagementMetrics";
+    public static final String WEEKLY_REPORTS = "weeklyReports";
+
+    private final CacheManager cacheManager;
+    private final TodoRepository todoRepository;
+    private final UserRepository userRepository;
+    private final UserMemoryRepository userMemoryRepository;
+
+    private long todoWatermark = Long.MIN_VALUE;
+    private LocalDateTime userWatermark;
+    private LocalDateTime memoryWatermark;
+
+    public AnalyticsCacheService(CacheManager cacheManager, TodoRepository todoRepository,
+                                 UserRepository userRepository, UserMemoryRepository userMemoryRepository) {
+        this.cacheManager = cacheManager;
+        this.todoRepository = todoRepository;
+        this.userRepository = userRepository;
+        this.userMemoryRepository = userMemoryRepository;
+    }
+
+    // Weekly reports are keyed by user and week so entries roll over on Monday
+    public static String weeklyReportKey(String userId) {
+        LocalDate weekStart = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return userId + ":" + weekStart;
+    }
+
+    // Cached value, or null when absent
+    public Object lookup(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        Cache.ValueWrapper value = cache == null ? null : cache.get(key);
+        return value == null ? null : value.get();
+    }
+
+    public void store(String cacheName, Object key, Object value) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put(key, value);
+        }
+    }
+
+    public void evictUser(String userId) {
+        evict(ACTIVITY_PATTERNS, userId);
+        evict(ENGAGEMENT_METRICS, userId);
+        evict(WEEKLY_REPORTS, weeklyReportKey(userId));
+    }
+
+    public void evictAll() {
+        for (String name : List.of(ACTIVITY_PATTERNS, ENGAGEMENT_METRICS, WEEKLY_REPORTS)) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    // Hit/miss/eviction counters and current size per cache
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (String name : List.of(ACTIVITY_PATTERNS, ENGAGEMENT_METRICS, WEEKLY_REPORTS)) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache caffeineCache) {
+                CacheStats cacheStats = caffeineCache.getNativeCache().stats();
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("size", caffeineCache.getNativeCache().estimatedSize());
+                values.put("hits", cacheStats.hitCount());
+                values.put("misses", cacheStats.missCount());
+                values.put("hitRate", cacheStats.hitRate());
+                values.put("evictions", cacheStats.evictionCount());
+                stats.put(name, values);
+            }
+        }
+        return stats;
+    }
+
+    // Evict users whose rows changed since the last check
+    @Scheduled(fixedDelayString = "${analytics.cache.invalidation-interval-ms:5000}")
+    public synchronized void invalidateChangedUsers() {
+        if (userWatermark == null) {
+            // Nothing is cached before the first pass, so only the high-water marks are needed
+            Long newestTodo = todoRepository.findMaxCreatedAt();
+            todoWatermark = newestTodo == null ? Long.MIN_VALUE : newestTodo;
+            userWatermark = orEpoch(userRepository.findMaxUpdatedAt());
+            memoryWatermark = orEpoch(userMemoryRepository.findMaxUpdatedAt());
+            return;
+        }
+
+        Set<String> todoUsers = new HashSet<>();
+        for (Object[] row : todoRepository.findUserIdsWithTodosCreatedAfter(todoWatermark)) {
+            todoUsers.add((String) row[0]);
+            todoWatermark = Math.max(todoWatermark, ((Number) row[1]).longValue());
+        }
+        todoUsers.forEach(this::evictUser);
+
+        Set<String> profileUsers = new HashSet<>();
+        for (Object[] row : userRepository.findIdsUpdatedAfter(userWatermark)) {
+            profileUsers.add((String) row[0]);
+            userWatermark = max(userWatermark, (LocalDateTime) row[1]);
+        }
+        for (Object[] row : userMemoryRepository.findUserIdsUpdatedAfter(memoryWatermark)) {
+            profileUsers.add((String) row[0]);
+            memoryWatermark = max(memoryWatermark, (LocalDateTime) row[1]);
+        }
+        profileUsers.forEach(userId -> evict(ENGAGEMENT_METRICS, userId));
+
+        if (!todoUsers.isEmpty() || !profileUsers.isEmpty()) {
+            log.debug("Evicted cached analytics for {} users with new todos and {} with profile or memory changes",
+                    todoUsers.size(), profileUsers.size());
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private static LocalDateTime orEpoch(LocalDateTime value) {
+        return value == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : value;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+}
@@ -0,0 +1,114 @@
+package com.tapqyr.analytics.cohort;
+
+import com.tapqyr.analytics.dto.CohortRetention;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Signup-week cohorts and, per cohort and week since signup, a bitset of the members active that week.
+ * <p>
+ * Each user gets a dense index within their cohort, so activity is one bit per member and week and a
+ * retention cell is a bitset cardinality. Marking activity is idempotent, so the same todo or login may be
+ * applied more than once. Bits are never cleared: deleted todos and users still count as past activity.
+ * Not thread-safe; {@link CohortRetentionService} guards it.
+ */
+final class CohortMatrix {
+
+    private final ZoneId zone;
+    private final Map<String, Member> members = new HashMap<>();
+    private final TreeMap<LocalDate, Cohort> cohorts = new TreeMap<>();
+
+    CohortMatrix(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    int userCount() {
+        return members.size();
+    }
+
+    // Adds the user to their signup cohort once; a lastLogin marks the user active in its week
+    void addUser(String userId, LocalDateTime createdAt, LocalDateTime lastLogin) {
+        Member member = members.get(userId);
+        if (member == null) {
+            if (createdAt == null) {
+                return;
+            }
+            Cohort cohort = cohorts.computeIfAbsent(weekOf(createdAt.toLocalDate()), Cohort::new);
+            member = new Member(cohort, cohort.size++);
+            members.put(userId, member);
+        }
+        if (lastLogin != null) {
+            markActive(member, weekOf(lastLogin.toLocalDate()));
+        }
+    }
+
+    // Marks the user active in the week of a todo created at the given epoch millis; unknown users are ignored
+    void addTodo(String userId, long createdAt) {
+        Member member = members.get(userId);
+        if (member != null) {
+            markActive(member, weekOf(Instant.ofEpochMilli(createdAt).atZone(zone).toLocalDate()));
+        }
+    }
+
+    // Cohorts from the week containing from, each with up to weeks columns ending at the current week
+    CohortRetention retention(LocalDate from, LocalDate currentWeek, int weeks) {
+        LocalDate fromWeek = weekOf(from);
+        List<CohortRetention.Cohort> rows = new ArrayList<>();
+        for (Cohort cohort : cohorts.subMap(fromWeek, true, currentWeek, true).values()) {
+            int columns = (int) Math.min(weeks, ChronoUnit.WEEKS.between(cohort.week, currentWeek) + 1);
+            List<Long> active = new ArrayList<>(columns);
+            List<Double> retention = new ArrayList<>(columns);
+            for (int week = 0; week < columns; week++) {
+                long count = week < cohort.activeByWeek.size() ? cohort.activeByWeek.get(week).cardinality() : 0;
+                active.add(count);
+                retention.add((double) count / cohort.size);
+            }
+            rows.add(new CohortRetention.Cohort(cohort.week, cohort.size, active, retention));
+        }
+        return new CohortRetention(fromWeek, weeks, rows);
+    }
+
+    private void markActive(Member member, LocalDate week) {
+        long offset = ChronoUnit.WEEKS.between(member.cohort.week, week);
+        // Activity before signup, e.g. clock skew between the backend's writes
+        if (offset < 0) {
+            return;
+        }
+        List<BitSet> activeByWeek = member.cohort.activeByWeek;
+        while (activeByWeek.size() <= offset) {
+            activeByWeek.add(new BitSet());
+        }
+        activeByWeek.get((int) offset).set(member.index);
+    }
+
+    static LocalDate weekOf(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private record Member(Cohort cohort, int index) {
+    }
+
+    private static final class Cohort {
+
+        final LocalDate week;
+        int size;
+        // Members active in the n-th week after signup, by member index
+        final List<BitSet> activeByWeek = new ArrayList<>();
+
+        Cohort(LocalDate week) {
+            this.week = week;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.tapqyr.analytics.cohort;
+
+import com.tapqyr.analytics.dto.CohortRetention;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Weekly cohort retention: users grouped by signup week and counted as active in a later week when they
+ * created a todo or logged in during it.
+ * <p>
+ * The {@link CohortMatrix} is built in one streaming pass over users and todos and then extended every
+ * {@code analytics.cohort.refresh-interval-ms} from users whose updatedAt and todos whose createdAt passed
+ * the watermarks, so past weeks are never recomputed. The users table keeps only the latest lastLogin, so
+ * logins older than the first build count only as each user's last one, and later logins only when a
+ * refresh reads them before the user logs in again. Requests fail with {@link IllegalStateException} until
+ * the first build finishes; with the matrix disabled, each request reads only the cohorts it asks for.
+ */
+@Service
+@Slf4j
+public class CohortRetentionService {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    // Upper bound for weeks since signup in one matrix
+    private static final int MAX_WEEKS = 104;
+
+    private final UserRepository userRepository;
+    private final TodoRepository todoRepository;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CohortMatrix matrix = new CohortMatrix(zone);
+
+    @Value("${analytics.cohort.enabled:true}")
+    private boolean enabled = true;
+
+    private volatile boolean ready;
+    private LocalDateTime userWatermark = EPOCH;
+    private long todoWatermark = Long.MIN_VALUE;
+
+    public CohortRetentionService(UserRepository userRepository, TodoRepository todoRepository) {
+        this.userRepository = userRepository;
+        this.todoRepository = todoRepository;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.cohort.refresh-interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        // Bound the todos before reading users, so every todo read below has its user read first
+        Long newestTodo = todoRepository.findMaxCreatedAt();
+        lock.writeLock().lock();
+        try {
+            userWatermark = applyUsers(matrix, userWatermark);
+            if (newestTodo != null) {
+                // Inclusive bounds re-read the boundary todos, which marks nothing new
+                applyTodos(matrix, todoWatermark, newestTodo);
+                todoWatermark = newestTodo;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!ready) {
+            ready = true;
+            log.info("Built cohort retention over {} users in {} ms", matrix.userCount(),
+                    System.currentTimeMillis() - started);
+        }
+    }
+
+    /**
+     * Retention of the cohorts that signed up from the week containing {@code from} (by default the
+     * cohorts of the last {@code weeks} weeks) through the current week, for up to {@code weeks} weeks
+     * since signup.
+     *
+     * @throws IllegalStateException while the matrix is still being built
+     */
+    @Transactional(readOnly = true)
+    public CohortRetention getRetention(LocalDate from, int weeks) {
+        LocalDate currentWeek = CohortMatrix.weekOf(LocalDate.now(zone));
+        int columns = Math.max(1, Math.min(weeks, MAX_WEEKS));
+        LocalDate start = from == null ? currentWeek.minusWeeks(columns - 1L) : from;
+        if (start.isAfter(currentWeek)) {
+            throw new IllegalArgumentException("From must not be in the future");
+        }
+        if (!enabled) {
+            return buildRetention(CohortMatrix.weekOf(start), currentWeek, columns);
+        }
+        if (!ready) {
+            throw new IllegalStateException("Cohort retention is still being built; try again shortly");
+        }
+        lock.readLock().lock();
+        try {
+            return matrix.retention(start, currentWeek, columns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Only users who signed up from the first requested week, and todos since then, can fall in the requested cohorts
+    private CohortRetention buildRetention(LocalDate fromWeek, LocalDate currentWeek, int columns) {
+        CohortMatrix built = new CohortMatrix(zone);
+        Long newestTodo = todoRepository.findMaxCreatedAt();
+        try (Stream<Object[]> users = userRepository.streamCohortRowsCreatedSince(fromWeek.atStartOfDay())) {
+            users.forEach(user -> built.addUser((String) user[0], (LocalDateTime) user[1], (LocalDateTime) user[2]));
+        }
+        if (newestTodo != null) {
+            applyTodos(built, fromWeek.atStartOfDay(zone).toInstant().toEpochMilli(), newestTodo);
+        }
+        return built.retention(fromWeek, currentWeek, columns);
+    }
+
+    // Returns the newest updatedAt read
+    private LocalDateTime applyUsers(CohortMatrix target, LocalDateTime since) {
+        LocalDateTime newest = since;
+        try (Stream<Object[]> users = userRepository.streamCohortRowsUpdatedSince(since)) {
+            for (Object[] user : (Iterable<Object[]>) users::iterator) {
+                target.addUser((String) user[0], (LocalDateTime) user[1], (LocalDateTime) user[2]);
+                if (user[3] instanceof LocalDateTime updatedAt && updatedAt.isAfter(newest)) {
+                    newest = updatedAt;
+                }
+            }
+        }
+        return newest;
+    }
+
+    private void applyTodos(CohortMatrix target, long from, long to) {
+        try (Stream<Object[]> todos = todoRepository.streamActivityRowsCreatedBetween(from, to)) {
+            todos.forEach(todo -> target.addTodo((String) todo[0], ((Number) todo[1]).longValue()));
+        }
+    }
+}
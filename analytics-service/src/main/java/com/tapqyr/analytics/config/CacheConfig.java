@@ -0,0 +1,10 @@
+package com.tapqyr.analytics.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Caches are Caffeine-backed; names and spec come from spring.cache.* in application.properties
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
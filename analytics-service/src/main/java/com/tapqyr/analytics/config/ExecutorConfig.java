@@ -0,0 +1,45 @@
+package com.tapqyr.analytics.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${analytics.comprehensive.pool-size:8}")
+    private int sectionPoolSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Runs the sections of the comprehensive analytics endpoint concurrently
+    @Bean
+    public AsyncTaskExecutor analyticsSectionExecutor() {
+        return boundedExecutor("analytics-section-", sectionPoolSize, sectionPoolSize * 16, virtualThreads);
+    }
+
+    /**
+     * A fixed platform-thread pool, or one virtual thread per task when running on Java 21 with
+     * {@code spring.threads.virtual.enabled}. Virtual threads are still capped at {@code concurrency}
+     * so a burst cannot queue more work than the SQLite reader pool can serve.
+     */
+    static AsyncTaskExecutor boundedExecutor(String threadNamePrefix, int concurrency, int queueCapacity,
+                                             boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(concurrency);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        return executor;
+    }
+}
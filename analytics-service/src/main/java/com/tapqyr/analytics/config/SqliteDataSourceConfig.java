@@ -0,0 +1,83 @@
+package com.tapqyr.analytics.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Connection pool for the shared Prisma SQLite database.
+ * <p>
+ * The analytics service never writes to that file, so every pooled connection is opened read-only
+ * and the pool is sized for concurrent readers. In WAL mode those readers neither block nor are
+ * blocked by the backend's writer; busy_timeout covers the short checkpoint windows.
+ */
+@Configuration
+@Slf4j
+public class SqliteDataSourceConfig {
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    // Journal mode to put the database in at startup; blank leaves it untouched
+    @Value("${analytics.sqlite.journal-mode:WAL}")
+    private String journalMode;
+
+    @Value("${analytics.sqlite.busy-timeout-ms:5000}")
+    private int busyTimeoutMs;
+
+    @Value("${analytics.sqlite.reader-pool-size:8}")
+    private int readerPoolSize;
+
+    @Value("${analytics.sqlite.read-only:true}")
+    private boolean readOnly;
+
+    @Bean
+    public DataSource dataSource() {
+        applyJournalMode(url, journalMode);
+        return readerPool(url, "sqlite-readers", readerPoolSize, readOnly, busyTimeoutMs);
+    }
+
+    // Pool whose connections are opened with the given SQLite flags
+    public static HikariDataSource readerPool(String url, String poolName, int size, boolean readOnly, int busyTimeoutMs) {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(readOnly);
+        config.setBusyTimeout(busyTimeoutMs);
+        SQLiteDataSource sqliteDataSource = new SQLiteDataSource(config);
+        sqliteDataSource.setUrl(url);
+
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setDataSource(sqliteDataSource);
+        hikariConfig.setPoolName(poolName);
+        // sqlite-jdbc rejects setReadOnly calls that disagree with the open mode
+        hikariConfig.setReadOnly(readOnly);
+        hikariConfig.setMaximumPoolSize(size);
+        hikariConfig.setMinimumIdle(Math.min(size, 2));
+        return new HikariDataSource(hikariConfig);
+    }
+
+    // The journal mode is stored in the database file, so one read-write connection sets it for everyone
+    public static void applyJournalMode(String url, String journalMode) {
+        if (journalMode == null || journalMode.isBlank()) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("PRAGMA journal_mode=" + SQLiteConfig.JournalMode.valueOf(journalMode.toUpperCase()))) {
+            log.info("SQLite journal mode for {} is {}", url, result.next() ? result.getString(1) : "unknown");
+        } catch (SQLException e) {
+            log.warn("Could not set SQLite journal mode {} on {}: {}", journalMode, url, e.getMessage());
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.tapqyr.analytics.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -18,6 +20,28 @@ public class WebConfig implements WebMvcConfigurer {
     @Value("${spring.application.allowed-origins:http://localhost:3000,http://localhost:5173}")
     private String[] allowedOrigins;
 
+    @Value("${analytics.streaming.timeout-ms:300000}")
+    private long streamingTimeoutMs;
+
+    @Value("${analytics.streaming.max-concurrent:8}")
+    private int streamingMaxConcurrent;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Streaming (NDJSON) responses are written from this pool instead of the request thread
+    @Bean
+    public AsyncTaskExecutor streamingTaskExecutor() {
+        return ExecutorConfig.boundedExecutor("analytics-stream-", streamingMaxConcurrent,
+                streamingMaxConcurrent * 4, virtualThreads);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(streamingTimeoutMs);
+        configurer.setTaskExecutor(streamingTaskExecutor());
+    }
+
     @Bean
     public CorsFilter corsFilter() {
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
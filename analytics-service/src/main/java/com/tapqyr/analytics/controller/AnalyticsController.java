@@ -1,45 +1,42 @@
 package com.tapqyr.analytics.controller;
 
-import com.tapqyr.analytics.service.UserAnalyticsService;
+import com.tapqyr.analytics.service.ComprehensiveAnalyticsService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics")
 public class AnalyticsController {
 
-    private final UserAnalyticsService userAnalyticsService;
+    private final ComprehensiveAnalyticsService comprehensiveAnalyticsService;
     
-    public AnalyticsController(UserAnalyticsService userAnalyticsService) {
-        this.userAnalyticsService = userAnalyticsService;
+    public AnalyticsController(ComprehensiveAnalyticsService comprehensiveAnalyticsService) {
+        this.comprehensiveAnalyticsService = comprehensiveAnalyticsService;
     }
     
     /**
-     * Get comprehensive user analytics including task completion and activities
+     * Get comprehensive user analytics including task completion and activities.
+     * Sections are computed concurrently; failed or timed-out sections are listed under "errors".
      * 
      * @param userId The user ID to get analytics for
      * @return A map containing all user analytics
      */
     @GetMapping("/user/{userId}/comprehensive")
     public ResponseEntity<Map<String, Object>> getUserComprehensiveAnalytics(@PathVariable String userId) {
-        Map<String, Object> userAnalytics = new HashMap<>();
-        
         try {
-            // Get user activity patterns (task statistics)
-            Map<String, Object> activityPatterns = userAnalyticsService.getUserActivityPatterns(userId);
-            userAnalytics.put("taskAnalytics", activityPatterns);
+            Map<String, Object> userAnalytics = comprehensiveAnalyticsService.getUserComprehensiveAnalytics(userId);
             
-            // Get user engagement metrics
-            Map<String, Object> engagementMetrics = userAnalyticsService.getUserEngagementMetrics(userId);
-            userAnalytics.put("engagementMetrics", engagementMetrics);
-            
-            // Get weekly report data
-            Map<String, Object> weeklyReport = userAnalyticsService.getWeeklyUserReport(userId);
-            userAnalytics.put("weeklyReport", weeklyReport);
+            // Nothing to show if every section failed
+            if (!userAnalytics.containsKey(ComprehensiveAnalyticsService.TASK_ANALYTICS)
+                    && !userAnalytics.containsKey(ComprehensiveAnalyticsService.ENGAGEMENT_METRICS)
+                    && !userAnalytics.containsKey(ComprehensiveAnalyticsService.WEEKLY_REPORT)) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    Map.of("error", "Failed to fetch user analytics: " + userAnalytics.get("errors"))
+                );
+            }
             
             return ResponseEntity.ok(userAnalytics);
         } catch (Exception e) {
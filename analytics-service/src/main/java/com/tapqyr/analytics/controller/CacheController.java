@@ -0,0 +1,51 @@
+package com.tapqyr.analytics.controller;
+
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.store.ChangeIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics/cache")
+@Tag(name = "Analytics Cache", description = "Endpoints for inspecting and invalidating cached analytics")
+public class CacheController {
+
+    private final AnalyticsCacheService analyticsCacheService;
+    private final ChangeIngestionService changeIngestionService;
+
+    public CacheController(AnalyticsCacheService analyticsCacheService, ChangeIngestionService changeIngestionService) {
+        this.analyticsCacheService = analyticsCacheService;
+        this.changeIngestionService = changeIngestionService;
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Get cache statistics", description = "Returns size, hit and miss counts for each analytics cache")
+    public ResponseEntity<Map<String, Map<String, Object>>> getStats() {
+        return ResponseEntity.ok(analyticsCacheService.getStats());
+    }
+
+    @DeleteMapping("/users/{userId}")
+    @Operation(summary = "Invalidate a user's cached analytics",
+            description = "Called by the backend after changes the cache cannot detect, such as completing a todo; " +
+                    "the user's todos are also reloaded into the in-memory analytics store")
+    public ResponseEntity<Void> invalidateUser(@PathVariable String userId) {
+        analyticsCacheService.evictUser(userId);
+        changeIngestionService.requestResync(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Invalidate all cached analytics", description = "Clears every analytics cache")
+    public ResponseEntity<Void> invalidateAll() {
+        analyticsCacheService.evictAll();
+        return ResponseEntity.noContent().build();
+    }
+}
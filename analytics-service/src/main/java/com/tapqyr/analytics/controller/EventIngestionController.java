@@ -0,0 +1,56 @@
+package com.tapqyr.analytics.controller;
+
+import com.tapqyr.analytics.dto.IngestEvent;
+import com.tapqyr.analytics.dto.IngestResult;
+import com.tapqyr.analytics.ingest.EventIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics/events")
+@Tag(name = "Event Ingestion", description = "Endpoints for the backend to push todo, login and memory changes")
+public class EventIngestionController {
+
+    // Seconds a client should wait before resending events a full queue rejected
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final EventIngestionService eventIngestionService;
+
+    public EventIngestionController(EventIngestionService eventIngestionService) {
+        this.eventIngestionService = eventIngestionService;
+    }
+
+    @PostMapping
+    @Operation(summary = "Push a batch of events",
+            description = "Queues todo.created, todo.completed, user.login and memory.updated events in order; todo " +
+                    "events need the todo's todoRowId. Returns " +
+                    "202 once all are queued, or 429 with Retry-After and the number accepted when the queue is full; " +
+                    "resend the events after that number")
+    public ResponseEntity<?> ingest(@RequestBody List<IngestEvent> events) {
+        if (!eventIngestionService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Event ingestion is disabled"));
+        }
+        try {
+            IngestResult result = eventIngestionService.submit(events);
+            if (result.accepted() < result.submitted()) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                        .body(result);
+            }
+            return ResponseEntity.accepted().body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.tapqyr.analytics.controller;
+
+import com.tapqyr.analytics.dto.Quantiles;
+import com.tapqyr.analytics.sketch.GlobalSketchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics/global")
+@Tag(name = "Global Analytics", description = "Approximate distributions across all users, exact on request")
+public class GlobalAnalyticsController {
+
+    private final GlobalSketchService globalSketchService;
+
+    public GlobalAnalyticsController(GlobalSketchService globalSketchService) {
+        this.globalSketchService = globalSketchService;
+    }
+
+    @GetMapping("/active-users")
+    @Operation(summary = "Count active users",
+            description = "Returns the number of distinct users who created todos between two days, inclusive")
+    public ResponseEntity<?> getActiveUsers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'to' must not be before 'from'"));
+        }
+        return ResponseEntity.ok(globalSketchService.activeUsers(from, to, exact));
+    }
+
+    @GetMapping("/due-date-slack")
+    @Operation(summary = "Get due-date slack quantiles",
+            description = "Returns quantiles of the hours between creation and due date of todos created between two days")
+    public ResponseEntity<?> getDueDateSlack(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<Double> ranks,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'to' must not be before 'from'"));
+        }
+        try {
+            return ResponseEntity.ok(globalSketchService.dueDateSlackHours(from, to, toRanks(ranks), exact));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/todos-per-user")
+    @Operation(summary = "Get todos-per-user quantiles",
+            description = "Returns quantiles of the number of todos per user, among users with todos")
+    public ResponseEntity<?> getTodosPerUser(
+            @RequestParam(required = false) List<Double> ranks,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        try {
+            return ResponseEntity.ok(globalSketchService.todosPerUser(toRanks(ranks), exact));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static double[] toRanks(List<Double> ranks) {
+        if (ranks == null || ranks.isEmpty()) {
+            return Quantiles.DEFAULT_RANKS;
+        }
+        double[] result = new double[ranks.size()];
+        for (int i = 0; i < result.length; i++) {
+            double rank = ranks.get(i);
+            if (!(rank >= 0.0 && rank <= 1.0)) {
+                throw new IllegalArgumentException("Ranks must be between 0 and 1");
+            }
+            result[i] = rank;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+package com.tapqyr.analytics.controller;
+
+import com.tapqyr.analytics.dto.MemoryInsights;
+import com.tapqyr.analytics.dto.MemoryInsightsSummary;
+import com.tapqyr.analytics.memory.MemoryInsightsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/analytics")
+@Tag(name = "Memory Insights", description = "Analytics over fields of the user memory JSON columns")
+public class MemoryInsightsController {
+
+    private final MemoryInsightsService memoryInsightsService;
+
+    public MemoryInsightsController(MemoryInsightsService memoryInsightsService) {
+        this.memoryInsightsService = memoryInsightsService;
+    }
+
+    @GetMapping("/user/{userId}/memory-insights")
+    @Operation(summary = "Get memory insights for a user",
+            description = "Returns assistant actions, task counters, task preferences and persona fields from a user's memory")
+    public ResponseEntity<MemoryInsights> getUserMemoryInsights(@PathVariable String userId) {
+        return ResponseEntity.ok(memoryInsightsService.getUserInsights(userId));
+    }
+
+    @GetMapping("/memories/insights")
+    @Operation(summary = "Get memory insights over all users",
+            description = "Aggregates memory insights over every user, with the most common values of each task preference")
+    public ResponseEntity<MemoryInsightsSummary> getMemoryInsightsSummary(
+            @RequestParam(defaultValue = "5") int topValues) {
+        return ResponseEntity.ok(memoryInsightsService.getSummary(topValues));
+    }
+}
@@ -0,0 +1,38 @@
+package com.tapqyr.analytics.controller;
+
+import com.tapqyr.analytics.search.MemorySearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics/memories")
+@Tag(name = "Memory Search", description = "Full-text search over user memory text")
+public class MemorySearchController {
+
+    private final MemorySearchService memorySearchService;
+
+    public MemorySearchController(MemorySearchService memorySearchService) {
+        this.memorySearchService = memorySearchService;
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search user memories",
+            description = "Returns memories containing every word of 'q', best match first, with a snippet of the matching text")
+    public ResponseEntity<?> searchMemories(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(memorySearchService.search(q, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.tapqyr.analytics.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Builds newline-delimited JSON responses that write each row as soon as it is produced,
+ * so memory use does not grow with the size of the result.
+ */
+@Component
+public class NdjsonResponses {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    // Rows written between explicit flushes
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectWriter writer;
+
+    public NdjsonResponses(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer();
+    }
+
+    @FunctionalInterface
+    public interface RowProducer {
+        void produce(Consumer<Object> sink);
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(RowProducer producer) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, 8192);
+            int[] written = {0};
+            try {
+                producer.produce(row -> writeRow(out, row, ++written[0] % FLUSH_EVERY == 0));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    private void writeRow(OutputStream out, Object row, boolean flush) {
+        try {
+            out.write(writer.writeValueAsBytes(row));
+            out.write('\n');
+            if (flush) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.tapqyr.analytics.controller;
 
+import com.tapqyr.analytics.cohort.CohortRetentionService;
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+import com.tapqyr.analytics.dto.ActivityPatterns;
+import com.tapqyr.analytics.dto.EngagementMetrics;
+import com.tapqyr.analytics.dto.OverdueSummary;
+import com.tapqyr.analytics.dto.SimilarUser;
+import com.tapqyr.analytics.dto.TodoAnalytics;
+import com.tapqyr.analytics.dto.UpcomingTodo;
+import com.tapqyr.analytics.dto.UserOverdueCount;
+import com.tapqyr.analytics.service.BatchAnalyticsService;
+import com.tapqyr.analytics.service.OverdueAnalyticsService;
 import com.tapqyr.analytics.service.UserAnalyticsService;
+import com.tapqyr.analytics.service.WeeklyReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +38,21 @@ import java.util.Map;
 public class UserAnalyticsController {
 
     private final UserAnalyticsService userAnalyticsService;
+    private final BatchAnalyticsService batchAnalyticsService;
+    private final OverdueAnalyticsService overdueAnalyticsService;
+    private final WeeklyReportService weeklyReportService;
+    private final CohortRetentionService cohortRetentionService;
+    private final NdjsonResponses ndjsonResponses;
     
-    public UserAnalyticsController(UserAnalyticsService userAnalyticsService) {
+    public UserAnalyticsController(UserAnalyticsService userAnalyticsService, BatchAnalyticsService batchAnalyticsService,
+                                   OverdueAnalyticsService overdueAnalyticsService, WeeklyReportService weeklyReportService,
+                                   CohortRetentionService cohortRetentionService, NdjsonResponses ndjsonResponses) {
         this.userAnalyticsService = userAnalyticsService;
+        this.batchAnalyticsService = batchAnalyticsService;
+        this.overdueAnalyticsService = overdueAnalyticsService;
+        this.weeklyReportService = weeklyReportService;
+        this.cohortRetentionService = cohortRetentionService;
+        this.ndjsonResponses = ndjsonResponses;
     }
 
     @GetMapping("/growth")
@@ -32,41 +61,183 @@ public class UserAnalyticsController {
         return ResponseEntity.ok(userAnalyticsService.getUserGrowthMetrics());
     }
 
+    @GetMapping("/growth/activity")
+    @Operation(summary = "Get activity counts over sliding windows",
+            description = "Returns signups, logins, todos created and todos completed in each trailing window, " +
+                    "given as minutes, hours or days (e.g. 15m, 1h, 90d)")
+    public ResponseEntity<?> getActivityCounts(
+            @RequestParam(defaultValue = "1h,1d,7d,30d,90d") List<String> windows) {
+        try {
+            return ResponseEntity.ok(userAnalyticsService.getActivityCounts(windows));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/growth/cohorts")
+    @Operation(summary = "Get cohort retention",
+            description = "Returns users grouped by signup week with the share of each cohort active in each week since " +
+                    "signup, for cohorts from the week containing 'from' (by default the last 'weeks' weeks). Returns 503 " +
+                    "until the first build finishes")
+    public ResponseEntity<?> getCohortRetention(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(defaultValue = "12") int weeks) {
+        try {
+            return ResponseEntity.ok(cohortRetentionService.getRetention(from, weeks));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/todo/completion-rates")
-    @Operation(summary = "Get todo completion rates by user", description = "Returns completion rate statistics for all users")
-    public ResponseEntity<List<Map<String, Object>>> getTodoCompletionRateByUser() {
-        return ResponseEntity.ok(userAnalyticsService.getTodoCompletionRateByUser());
+    @Operation(summary = "Get todo completion rates by user",
+            description = "Returns completion rate statistics ordered by user ID, one page of 'limit' users (default 100) " +
+                    "when 'after' or 'limit' is given; pass the last userId as 'after' for the next page. Without " +
+                    "either, returns every user and a null-userId row for todos without a user")
+    public ResponseEntity<List<Map<String, Object>>> getTodoCompletionRateByUser(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userAnalyticsService.getAllTodoCompletionRates());
+        }
+        return ResponseEntity.ok(userAnalyticsService.getTodoCompletionRateByUser(after, limit == null ? 100 : limit));
+    }
+
+    @GetMapping(value = "/todo/completion-rates", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream todo completion rates by user",
+            description = "Streams completion rate statistics for every user after 'after' as newline-delimited JSON")
+    public ResponseEntity<StreamingResponseBody> streamTodoCompletionRateByUser(
+            @RequestParam(required = false) String after) {
+        return ndjsonResponses.stream(sink -> userAnalyticsService.streamTodoCompletionRates(after, sink::accept));
+    }
+
+    @GetMapping("/users/leaderboard")
+    @Operation(summary = "Get user leaderboard",
+            description = "Returns users ranked by todoCount, completionRate or aiShare, best first; pass nextCursor as " +
+                    "'cursor' for the next page")
+    public ResponseEntity<?> getLeaderboard(
+            @RequestParam(defaultValue = "todoCount") String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(userAnalyticsService.getLeaderboard(sortBy, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/user/{userId}/activity-patterns")
     @Operation(summary = "Get user activity patterns", description = "Returns activity patterns for a specific user")
-    public ResponseEntity<Map<String, Object>> getUserActivityPatterns(@PathVariable String userId) {
+    public ResponseEntity<ActivityPatterns> getUserActivityPatterns(@PathVariable String userId) {
         return ResponseEntity.ok(userAnalyticsService.getUserActivityPatterns(userId));
     }
 
+    @GetMapping("/user/{userId}/activity-heatmap")
+    @Operation(summary = "Get user activity heatmap",
+            description = "Returns a user's todo creation counts per hour of the week and per day of the year")
+    public ResponseEntity<ActivityHeatmap> getUserActivityHeatmap(@PathVariable String userId) {
+        return ResponseEntity.ok(userAnalyticsService.getUserActivityHeatmap(userId));
+    }
+
+    @GetMapping("/todo/activity-heatmap")
+    @Operation(summary = "Get activity heatmap",
+            description = "Returns todo creation counts of all users per hour of the week and per day of the year")
+    public ResponseEntity<ActivityHeatmap> getActivityHeatmap() {
+        return ResponseEntity.ok(userAnalyticsService.getActivityHeatmap());
+    }
+
     @GetMapping("/user/{userId}/engagement")
     @Operation(summary = "Get user engagement metrics", description = "Returns engagement metrics for a specific user")
-    public ResponseEntity<Map<String, Object>> getUserEngagementMetrics(@PathVariable String userId) {
+    public ResponseEntity<EngagementMetrics> getUserEngagementMetrics(@PathVariable String userId) {
         return ResponseEntity.ok(userAnalyticsService.getUserEngagementMetrics(userId));
     }
 
+    @PostMapping("/users/batch")
+    @Operation(summary = "Get analytics for several users",
+            description = "Returns activity patterns and engagement metrics keyed by user ID for a JSON array of user IDs")
+    public ResponseEntity<?> getBatchUserAnalytics(@RequestBody List<String> userIds) {
+        try {
+            return ResponseEntity.ok(batchAnalyticsService.getUserAnalytics(userIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/todo/analytics")
     @Operation(summary = "Get todo analytics", description = "Returns analytics for todos created within a specific date range")
-    public ResponseEntity<Map<String, Object>> getTodoAnalytics(
+    public ResponseEntity<TodoAnalytics> getTodoAnalytics(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
         return ResponseEntity.ok(userAnalyticsService.getTodoAnalytics(startDate, endDate));
     }
 
+    @GetMapping("/todo/overdue")
+    @Operation(summary = "Get overdue todo analytics",
+            description = "Returns the number of open todos past their due date, their aging and the users with the most")
+    public ResponseEntity<OverdueSummary> getOverdueSummary(@RequestParam(defaultValue = "10") int topUsers) {
+        return ResponseEntity.ok(overdueAnalyticsService.getOverdueSummary(topUsers));
+    }
+
+    @GetMapping("/todo/upcoming")
+    @Operation(summary = "Get upcoming todos", description = "Returns open todos due within the next N hours, soonest first")
+    public ResponseEntity<List<UpcomingTodo>> getUpcomingTodos(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(overdueAnalyticsService.getUpcomingTodos(hours, limit));
+    }
+
+    @GetMapping("/user/{userId}/overdue")
+    @Operation(summary = "Get user overdue count", description = "Returns the number of a user's open todos past their due date")
+    public ResponseEntity<UserOverdueCount> getUserOverdueCount(@PathVariable String userId) {
+        return ResponseEntity.ok(overdueAnalyticsService.getUserOverdueCount(userId));
+    }
+
     @GetMapping("/user/{userId}/weekly-report")
-    @Operation(summary = "Get weekly user report", description = "Returns a weekly progress report for a specific user")
-    public ResponseEntity<Map<String, Object>> getWeeklyUserReport(@PathVariable String userId) {
-        return ResponseEntity.ok(userAnalyticsService.getWeeklyUserReport(userId));
+    @Operation(summary = "Get weekly user report",
+            description = "Returns a weekly progress report for a specific user, for the current week or the week containing 'week'")
+    public ResponseEntity<?> getWeeklyUserReport(
+            @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate week) {
+        try {
+            return ResponseEntity.ok(weeklyReportService.getWeeklyReport(userId, week));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/users/weekly-reports")
+    @Operation(summary = "Get precomputed weekly reports",
+            description = "Returns precomputed weekly reports ordered by user ID for the last completed week or the week " +
+                    "containing 'week'; pass the last userId as 'after' for the next page. Returns 503 while the last " +
+                    "completed week is still being precomputed")
+    public ResponseEntity<?> getWeeklyReports(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate week,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(weeklyReportService.getWeeklyReports(week, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/user/{userId}/similar-users")
-    @Operation(summary = "Find similar users", description = "Returns users with similar activity patterns")
-    public ResponseEntity<List<Map<String, Object>>> findSimilarUsers(@PathVariable String userId) {
-        return ResponseEntity.ok(userAnalyticsService.findSimilarUsers(userId));
+    @Operation(summary = "Find similar users", description = "Returns the top users with similar activity patterns")
+    public ResponseEntity<List<SimilarUser>> findSimilarUsers(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(userAnalyticsService.findSimilarUsers(userId, limit));
+    }
+
+    @GetMapping(value = "/user/{userId}/similar-users", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream similar users", description = "Streams the top similar users as newline-delimited JSON")
+    public ResponseEntity<StreamingResponseBody> streamSimilarUsers(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ndjsonResponses.stream(sink -> userAnalyticsService.streamSimilarUsers(userId, limit, sink::accept));
     }
 } 
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.tapqyr.analytics.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Distinct users who created a todo between two local days, inclusive. Approximate counts carry a
+ * 95% confidence interval; exact counts have both bounds equal to the estimate.
+ */
+public record ActiveUsers(LocalDate from, LocalDate to, long estimate, long lowerBound, long upperBound,
+                          boolean exact) {
+
+    public static ActiveUsers exact(LocalDate from, LocalDate to, long count) {
+        return new ActiveUsers(from, to, count, count, count, true);
+    }
+}
@@ -0,0 +1,60 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+
+/**
+ * Todo creation counts in local time behind {@code /activity-heatmap}: per hour of the week, indexed
+ * by {@code DayOfWeek.ordinal() * 24 + hour}, and per day of the year across all years, indexed from
+ * zero for January 1st. Serialized by {@link Serializer} as 24-hour rows keyed by weekday name.
+ */
+@JsonSerialize(using = ActivityHeatmap.Serializer.class)
+public record ActivityHeatmap(long todoCount, int[] hourOfWeekCounts, int[] dayOfYearCounts) {
+
+    public static final int HOURS_PER_DAY = 24;
+    public static final int HOURS_PER_WEEK = 7 * HOURS_PER_DAY;
+    // Leap years have a 366th day
+    public static final int DAYS_PER_YEAR = 366;
+
+    // DayOfWeek.values() clones its array on every call
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    public static final ActivityHeatmap EMPTY = new ActivityHeatmap(0, new int[HOURS_PER_WEEK], new int[DAYS_PER_YEAR]);
+
+    public static int hourOfWeek(DayOfWeek day, int hour) {
+        return day.ordinal() * HOURS_PER_DAY + hour;
+    }
+
+    public int countAt(DayOfWeek day, int hour) {
+        return hourOfWeekCounts[hourOfWeek(day, hour)];
+    }
+
+    static final class Serializer extends StdSerializer<ActivityHeatmap> {
+
+        Serializer() {
+            super(ActivityHeatmap.class);
+        }
+
+        @Override
+        public void serialize(ActivityHeatmap heatmap, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("todoCount", heatmap.todoCount());
+
+            gen.writeObjectFieldStart("todosByHourOfWeek");
+            for (DayOfWeek day : DAYS) {
+                gen.writeFieldName(day.name());
+                gen.writeArray(heatmap.hourOfWeekCounts(), day.ordinal() * HOURS_PER_DAY, HOURS_PER_DAY);
+            }
+            gen.writeEndObject();
+
+            gen.writeFieldName("todosByDayOfYear");
+            gen.writeArray(heatmap.dayOfYearCounts(), 0, DAYS_PER_YEAR);
+            gen.writeEndObject();
+        }
+    }
+}
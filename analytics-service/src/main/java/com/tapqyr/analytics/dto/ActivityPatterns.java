@@ -0,0 +1,107 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.tapqyr.analytics.repository.TodoActivitySummary;
+import com.tapqyr.analytics.rollup.TodoCounts;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+
+/**
+ * A user's todo activity: the counts behind {@code /activity-patterns}, with creation counts per
+ * weekday indexed by {@link DayOfWeek#ordinal()}. Rates and the most active day are derived on
+ * access; the JSON shape is written by {@link Serializer}.
+ */
+@JsonSerialize(using = ActivityPatterns.Serializer.class)
+public record ActivityPatterns(TodoCounts counts, long[] dayCounts) {
+
+    // DayOfWeek.values() clones its array on every call
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    // Patterns of a user without todos
+    public static final ActivityPatterns EMPTY = new ActivityPatterns(TodoCounts.ZERO, new long[7]);
+
+    public static ActivityPatterns of(TodoActivitySummary summary) {
+        long[] dayCounts = new long[7];
+        for (DayOfWeek day : DAYS) {
+            dayCounts[day.ordinal()] = summary.getCountForDay(day);
+        }
+        return new ActivityPatterns(TodoCounts.of(summary), dayCounts);
+    }
+
+    public int todoCount() {
+        return (int) counts.total();
+    }
+
+    public boolean isEmpty() {
+        return counts.total() == 0;
+    }
+
+    public double completionRate() {
+        return CountFields.ratio(counts.completed(), todoCount());
+    }
+
+    public double aiGeneratedPercentage() {
+        return CountFields.ratio(counts.aiGenerated(), todoCount());
+    }
+
+    public long countForDay(DayOfWeek day) {
+        return dayCounts[day.ordinal()];
+    }
+
+    // Ties go to the earliest day; null when no todos
+    public DayOfWeek mostActiveDay() {
+        DayOfWeek mostActiveDay = null;
+        long mostActiveDayCount = 0;
+        for (DayOfWeek day : DAYS) {
+            if (dayCounts[day.ordinal()] > mostActiveDayCount) {
+                mostActiveDay = day;
+                mostActiveDayCount = dayCounts[day.ordinal()];
+            }
+        }
+        return mostActiveDay;
+    }
+
+    static final class Serializer extends StdSerializer<ActivityPatterns> {
+
+        Serializer() {
+            super(ActivityPatterns.class);
+        }
+
+        @Override
+        public void serialize(ActivityPatterns patterns, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("todoCount", patterns.todoCount());
+            if (!patterns.isEmpty()) {
+                TodoCounts counts = patterns.counts();
+
+                gen.writeObjectFieldStart("todosByDayOfWeek");
+                for (DayOfWeek day : DAYS) {
+                    CountFields.writeIfPositive(gen, day.name(), patterns.countForDay(day));
+                }
+                gen.writeEndObject();
+
+                DayOfWeek mostActiveDay = patterns.mostActiveDay();
+                if (mostActiveDay != null) {
+                    gen.writeStringField("mostActiveDay", mostActiveDay.name());
+                    gen.writeNumberField("mostActiveDayCount", patterns.countForDay(mostActiveDay));
+                }
+
+                gen.writeNumberField("completionRate", patterns.completionRate());
+
+                gen.writeObjectFieldStart("dueDatePatterns");
+                gen.writeNumberField("withDueDate", counts.withDueDate());
+                gen.writeNumberField("withoutDueDate", patterns.todoCount() - counts.withDueDate());
+                gen.writeEndObject();
+
+                CountFields.writePriorities(gen, "priorityDistribution", counts);
+                gen.writeNumberField("aiGeneratedCount", counts.aiGenerated());
+                gen.writeNumberField("aiGeneratedPercentage", patterns.aiGeneratedPercentage());
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.tapqyr.analytics.dto;
+
+// One user's entry in the batch analytics response
+public record BatchUserAnalytics(ActivityPatterns activityPatterns, EngagementMetrics engagementMetrics) {
+}
@@ -0,0 +1,15 @@
+package com.tapqyr.analytics.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Users grouped by signup week (weeks start on Monday), with how many of each cohort were active in each
+ * week since: {@code activeUsers.get(n)} counts members who created a todo or logged in during the n-th
+ * week after signup, {@code retention.get(n)} the same as a share of the cohort. Lists stop at the current week.
+ */
+public record CohortRetention(LocalDate from, int weeks, List<Cohort> cohorts) {
+
+    public record Cohort(LocalDate signupWeek, long users, List<Long> activeUsers, List<Double> retention) {
+    }
+}
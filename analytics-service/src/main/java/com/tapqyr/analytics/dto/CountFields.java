@@ -0,0 +1,31 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.tapqyr.analytics.rollup.TodoCounts;
+
+import java.io.IOException;
+
+// Field writers shared by the response serializers; zero counts are left out, as the old maps did
+final class CountFields {
+
+    private CountFields() {
+    }
+
+    static void writePriorities(JsonGenerator gen, String fieldName, TodoCounts counts) throws IOException {
+        gen.writeObjectFieldStart(fieldName);
+        writeIfPositive(gen, "low", counts.lowPriority());
+        writeIfPositive(gen, "medium", counts.mediumPriority());
+        writeIfPositive(gen, "high", counts.highPriority());
+        gen.writeEndObject();
+    }
+
+    static void writeIfPositive(JsonGenerator gen, String fieldName, long count) throws IOException {
+        if (count > 0) {
+            gen.writeNumberField(fieldName, count);
+        }
+    }
+
+    static double ratio(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+}
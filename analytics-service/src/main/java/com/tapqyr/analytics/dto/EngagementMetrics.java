@@ -0,0 +1,56 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Profile and memory engagement for one user. An unknown user serializes as an empty object;
+ * {@code daysSinceRegistration} is {@link #UNKNOWN} when the user has no creation date, and the
+ * memory fields are only meaningful when {@code hasMemory} is set.
+ */
+@JsonSerialize(using = EngagementMetrics.Serializer.class)
+public record EngagementMetrics(boolean userFound, LocalDateTime lastLogin, long daysSinceRegistration,
+                                Boolean onboardingComplete, double profileCompleteness, long totalTodos,
+                                boolean hasMemory, LocalDateTime memoryLastUpdated, boolean hasTaskPreferences,
+                                boolean hasWorkPatterns, boolean hasInteractionHistory, boolean hasUserPersona) {
+
+    public static final long UNKNOWN = -1;
+
+    public static final EngagementMetrics USER_NOT_FOUND =
+            new EngagementMetrics(false, null, UNKNOWN, null, 0, 0, false, null, false, false, false, false);
+
+    static final class Serializer extends StdSerializer<EngagementMetrics> {
+
+        Serializer() {
+            super(EngagementMetrics.class);
+        }
+
+        @Override
+        public void serialize(EngagementMetrics metrics, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            if (metrics.userFound()) {
+                provider.defaultSerializeField("lastLogin", metrics.lastLogin(), gen);
+                if (metrics.daysSinceRegistration() != UNKNOWN) {
+                    gen.writeNumberField("daysSinceRegistration", metrics.daysSinceRegistration());
+                }
+                provider.defaultSerializeField("onboardingComplete", metrics.onboardingComplete(), gen);
+                gen.writeNumberField("profileCompleteness", metrics.profileCompleteness());
+                gen.writeNumberField("totalTodos", metrics.totalTodos());
+                gen.writeBooleanField("hasMemory", metrics.hasMemory());
+                if (metrics.hasMemory()) {
+                    provider.defaultSerializeField("memoryLastUpdated", metrics.memoryLastUpdated(), gen);
+                    gen.writeBooleanField("hasTaskPreferences", metrics.hasTaskPreferences());
+                    gen.writeBooleanField("hasWorkPatterns", metrics.hasWorkPatterns());
+                    gen.writeBooleanField("hasInteractionHistory", metrics.hasInteractionHistory());
+                    gen.writeBooleanField("hasUserPersona", metrics.hasUserPersona());
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+// One change reported by the backend. occurredAt is an ISO-8601 instant, defaulting to the time it is applied:
+// the todo's createdAt for todo.created and the lastLogin written for user.login. Todo events carry the todo's
+// SQLite rowid; todo.created also its priority, dueDate and isAIGenerated
+public record IngestEvent(IngestEventType type, String userId, Instant occurredAt, Long todoRowId, String priority,
+                          Instant dueDate, @JsonProperty("isAIGenerated") Boolean aiGenerated) {
+}
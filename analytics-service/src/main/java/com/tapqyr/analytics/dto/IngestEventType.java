@@ -0,0 +1,23 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+// Kinds of change the backend reports through the event ingestion endpoint, by their JSON names
+public enum IngestEventType {
+
+    TODO_CREATED("todo.created"),
+    TODO_COMPLETED("todo.completed"),
+    LOGIN("user.login"),
+    MEMORY_UPDATED("memory.updated");
+
+    private final String key;
+
+    IngestEventType(String key) {
+        this.key = key;
+    }
+
+    @JsonValue
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,5 @@
+package com.tapqyr.analytics.dto;
+
+// Events of a batch queued in order; when fewer than submitted, the rest should be sent again later
+public record IngestResult(int accepted, int submitted) {
+}
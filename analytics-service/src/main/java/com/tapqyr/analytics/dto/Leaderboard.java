@@ -0,0 +1,18 @@
+package com.tapqyr.analytics.dto;
+
+import com.tapqyr.analytics.repository.UserTodoTotals;
+
+import java.util.List;
+
+// One page of users ranked by a metric, best first; nextCursor is null once a page comes back short
+public record Leaderboard(LeaderboardMetric sortBy, List<Entry> users, String nextCursor) {
+
+    public record Entry(String userId, String userName, long todoCount, long completedCount, double completionRate,
+                        long aiGeneratedCount, double aiShare) {
+
+        public static Entry of(UserTodoTotals totals) {
+            return new Entry(totals.userId(), totals.userName(), totals.todoCount(), totals.completedCount(),
+                    totals.completionRate(), totals.aiGeneratedCount(), totals.aiGeneratedShare());
+        }
+    }
+}
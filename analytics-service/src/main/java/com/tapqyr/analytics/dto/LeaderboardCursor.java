@@ -0,0 +1,45 @@
+package com.tapqyr.analytics.dto;
+
+import com.tapqyr.analytics.repository.UserTodoTotals;
+
+/**
+ * Keyset position in a leaderboard: the metric of the last user on a page as the fraction
+ * {@code numerator / denominator}, and that user's ID to break ties. Encoded for clients as
+ * {@code numerator/denominator/userId}.
+ */
+public record LeaderboardCursor(long numerator, long denominator, String userId) {
+
+    public static LeaderboardCursor after(LeaderboardMetric metric, UserTodoTotals totals) {
+        return new LeaderboardCursor(metric.numerator(totals.todoCount(), totals.completedCount(), totals.aiGeneratedCount()),
+                metric.denominator(totals.todoCount()), totals.userId());
+    }
+
+    public static LeaderboardCursor parse(String cursor) {
+        String[] parts = cursor.split("/", 3);
+        try {
+            if (parts.length == 3) {
+                long numerator = Long.parseLong(parts[0]);
+                long denominator = Long.parseLong(parts[1]);
+                if (numerator >= 0 && denominator > 0) {
+                    return new LeaderboardCursor(numerator, denominator, parts[2]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid leaderboard cursor: " + cursor);
+    }
+
+    public String encode() {
+        return numerator + "/" + denominator + "/" + userId;
+    }
+
+    /**
+     * Compares the non-negative fractions a/b and c/d without overflow, by comparing the 128-bit
+     * products a*d and c*b.
+     */
+    public static int compareFractions(long a, long b, long c, long d) {
+        int high = Long.compare(Math.multiplyHigh(a, d), Math.multiplyHigh(c, b));
+        return high != 0 ? high : Long.compareUnsigned(a * d, c * b);
+    }
+}
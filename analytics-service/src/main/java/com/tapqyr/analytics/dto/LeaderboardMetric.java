@@ -0,0 +1,51 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * What the user leaderboard ranks by. Each metric is a fraction of a user's todo totals, so rankings
+ * and cursors compare exact numerators and denominators instead of rounded rates.
+ */
+public enum LeaderboardMetric {
+
+    TODO_COUNT("todoCount"),
+    COMPLETION_RATE("completionRate"),
+    AI_SHARE("aiShare");
+
+    private final String key;
+
+    LeaderboardMetric(String key) {
+        this.key = key;
+    }
+
+    @JsonValue
+    public String key() {
+        return key;
+    }
+
+    public static LeaderboardMetric of(String key) {
+        for (LeaderboardMetric metric : values()) {
+            if (metric.key.equals(key)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("Unknown leaderboard metric: " + key);
+    }
+
+    public long numerator(long todoCount, long completedCount, long aiGeneratedCount) {
+        return switch (this) {
+            case TODO_COUNT -> todoCount;
+            case COMPLETION_RATE -> completedCount;
+            case AI_SHARE -> aiGeneratedCount;
+        };
+    }
+
+    public long denominator(long todoCount) {
+        return this == TODO_COUNT ? 1 : todoCount;
+    }
+
+    // Position before every user: no count reaches Long.MAX_VALUE and no rate reaches 2
+    public LeaderboardCursor first() {
+        return this == TODO_COUNT ? new LeaderboardCursor(Long.MAX_VALUE, 1, "") : new LeaderboardCursor(2, 1, "");
+    }
+}
@@ -0,0 +1,21 @@
+package com.tapqyr.analytics.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields pulled out of one user's memory JSON columns: assistant actions recorded in interactionHistory,
+ * the task counters the assistant keeps in workPatterns, scalar taskPreferences values (null for nested
+ * ones) and the top-level userPersona fields. {@code averageDaysToComplete} is null when not recorded.
+ */
+public record MemoryInsights(String userId, LocalDateTime updatedAt, long interactionCount,
+                             Map<String, Long> interactionsByAction, Map<String, Long> tasksByPriority,
+                             Map<String, Long> completionsByPriority, long withDueDate, long withoutDueDate,
+                             long completedWithDueDate, Double averageDaysToComplete,
+                             Map<String, String> taskPreferences, List<String> personaFields) {
+
+    public static MemoryInsights none(String userId) {
+        return new MemoryInsights(userId, null, 0, Map.of(), Map.of(), Map.of(), 0, 0, 0, null, Map.of(), List.of());
+    }
+}
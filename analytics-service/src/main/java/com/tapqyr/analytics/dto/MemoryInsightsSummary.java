@@ -0,0 +1,15 @@
+package com.tapqyr.analytics.dto;
+
+import java.util.Map;
+
+/**
+ * {@link MemoryInsights} aggregated over every user's memory. Counters are summed; preference and
+ * persona maps count users per field, and {@code taskPreferenceValues} the most common scalar values
+ * of each preference. {@code averageDaysToComplete} is weighted by completions with a due date.
+ */
+public record MemoryInsightsSummary(long memories, long usersWithInteractions, long interactionCount,
+                                    Map<String, Long> interactionsByAction, Map<String, Long> tasksByPriority,
+                                    Map<String, Long> completionsByPriority, long withDueDate, long withoutDueDate,
+                                    Double averageDaysToComplete, Map<String, Long> taskPreferenceFields,
+                                    Map<String, Map<String, Long>> taskPreferenceValues, Map<String, Long> personaFields) {
+}
@@ -0,0 +1,7 @@
+package com.tapqyr.analytics.dto;
+
+import java.time.LocalDateTime;
+
+// A memory matching a search; higher scores rank first, and matched terms in the snippet are bracketed
+public record MemorySearchHit(String userId, double score, String snippet, LocalDateTime updatedAt) {
+}
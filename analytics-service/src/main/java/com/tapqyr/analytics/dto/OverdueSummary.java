@@ -0,0 +1,25 @@
+package com.tapqyr.analytics.dto;
+
+import java.util.List;
+
+/**
+ * Open todos past their due date: the total, how long they have been overdue, and the users with the
+ * most of them. Aging buckets are whole hours since the due hour, split at {@link #AGING_UPPER_HOURS}.
+ */
+public record OverdueSummary(long overdueCount, List<AgingBucket> aging, List<UserOverdueCount> topUsers) {
+
+    public static final long[] AGING_UPPER_HOURS = {24, 72, 168, 720};
+    public static final String[] AGING_LABELS = {"lessThan1Day", "1to3Days", "3to7Days", "7to30Days", "30DaysOrMore"};
+
+    public record AgingBucket(String label, long count) {
+    }
+
+    // Buckets indexed like AGING_LABELS
+    public static List<AgingBucket> aging(long[] counts) {
+        AgingBucket[] buckets = new AgingBucket[AGING_LABELS.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new AgingBucket(AGING_LABELS[i], counts[i]);
+        }
+        return List.of(buckets);
+    }
+}
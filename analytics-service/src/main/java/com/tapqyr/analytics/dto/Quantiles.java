@@ -0,0 +1,29 @@
+package com.tapqyr.analytics.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Quantiles of a distribution over {@code count} values. The value at rank r is the smallest one with
+ * at least r of all values at or below it; quantiles are empty when there are no values.
+ */
+public record Quantiles(long count, boolean exact, List<Quantile> quantiles) {
+
+    // Ranks reported unless the caller asks for others
+    public static final double[] DEFAULT_RANKS = {0.0, 0.25, 0.5, 0.75, 0.9, 0.99, 1.0};
+
+    public record Quantile(double rank, double value) {
+    }
+
+    // Exact quantiles of ascending values
+    public static Quantiles ofSorted(double[] sorted, double[] ranks) {
+        List<Quantile> quantiles = new ArrayList<>(ranks.length);
+        if (sorted.length > 0) {
+            for (double rank : ranks) {
+                int index = (int) Math.ceil(rank * sorted.length) - 1;
+                quantiles.add(new Quantile(rank, sorted[Math.max(0, Math.min(sorted.length - 1, index))]));
+            }
+        }
+        return new Quantiles(sorted.length, true, quantiles);
+    }
+}
@@ -0,0 +1,35 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+
+// One /similar-users row; sharedMostActiveDay is null when the two users' most active days differ
+@JsonSerialize(using = SimilarUser.Serializer.class)
+public record SimilarUser(String userId, String userName, double similarityScore, DayOfWeek sharedMostActiveDay) {
+
+    static final class Serializer extends StdSerializer<SimilarUser> {
+
+        Serializer() {
+            super(SimilarUser.class);
+        }
+
+        @Override
+        public void serialize(SimilarUser user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("userId", user.userId());
+            gen.writeStringField("userName", user.userName());
+            gen.writeNumberField("similarityScore", user.similarityScore());
+            gen.writeObjectFieldStart("sharedPatterns");
+            if (user.sharedMostActiveDay() != null) {
+                gen.writeStringField("sharedMostActiveDay", user.sharedMostActiveDay().name());
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.tapqyr.analytics.rollup.TodoCounts;
+
+import java.io.IOException;
+
+// Counts for all todos created in a date range, as returned by /todo/analytics
+@JsonSerialize(using = TodoAnalytics.Serializer.class)
+public record TodoAnalytics(TodoCounts counts) {
+
+    public int todoCount() {
+        return (int) counts.total();
+    }
+
+    public double completionRate() {
+        return CountFields.ratio(counts.completed(), todoCount());
+    }
+
+    public double aiGeneratedPercentage() {
+        return CountFields.ratio(counts.aiGenerated(), todoCount());
+    }
+
+    static final class Serializer extends StdSerializer<TodoAnalytics> {
+
+        Serializer() {
+            super(TodoAnalytics.class);
+        }
+
+        @Override
+        public void serialize(TodoAnalytics analytics, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            TodoCounts counts = analytics.counts();
+            gen.writeStartObject();
+            gen.writeNumberField("todoCount", analytics.todoCount());
+            if (counts.total() > 0) {
+                gen.writeNumberField("completionRate", analytics.completionRate());
+                CountFields.writePriorities(gen, "priorityDistribution", counts);
+                gen.writeNumberField("aiGeneratedCount", counts.aiGenerated());
+                gen.writeNumberField("aiGeneratedPercentage", analytics.aiGeneratedPercentage());
+                gen.writeNumberField("withDueDate", counts.withDueDate());
+                gen.writeNumberField("withoutDueDate", analytics.todoCount() - counts.withDueDate());
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.tapqyr.analytics.dto;
+
+import java.time.LocalDateTime;
+
+// An open todo coming due soon
+public record UpcomingTodo(String id, String userId, String title, LocalDateTime dueDate) {
+}
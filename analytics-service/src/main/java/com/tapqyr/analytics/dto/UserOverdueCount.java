@@ -0,0 +1,5 @@
+package com.tapqyr.analytics.dto;
+
+// Open todos of one user past their due date
+public record UserOverdueCount(String userId, long overdueCount) {
+}
@@ -0,0 +1,75 @@
+package com.tapqyr.analytics.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.tapqyr.analytics.rollup.TodoCounts;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * A user's todo counts for the week starting {@code weekStart} (a Monday), the week before it and
+ * all time. Comparisons against all time and the previous week are only reported once the user
+ * has any todos.
+ */
+@JsonSerialize(using = WeeklyReport.Serializer.class)
+public record WeeklyReport(String userId, LocalDate weekStart, TodoCounts week,
+                           TodoCounts previousWeek, TodoCounts allTime) {
+
+    public LocalDate weekEnd() {
+        return weekStart.plusDays(6);
+    }
+
+    public double completionRate() {
+        return CountFields.ratio(week.completed(), week.total());
+    }
+
+    public double previousWeekCompletionRate() {
+        return CountFields.ratio(previousWeek.completed(), previousWeek.total());
+    }
+
+    public double allTimeCompletionRate() {
+        return CountFields.ratio(allTime.completed(), allTime.total());
+    }
+
+    static final class Serializer extends StdSerializer<WeeklyReport> {
+
+        Serializer() {
+            super(WeeklyReport.class);
+        }
+
+        @Override
+        public void serialize(WeeklyReport report, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            TodoCounts week = report.week();
+            gen.writeStartObject();
+            gen.writeStringField("userId", report.userId());
+            provider.defaultSerializeField("weekStart", report.weekStart(), gen);
+            provider.defaultSerializeField("weekEnd", report.weekEnd(), gen);
+            gen.writeNumberField("totalTodosCreated", (int) week.total());
+
+            gen.writeNumberField("completedTodos", week.completed());
+            gen.writeNumberField("completionRate", report.completionRate());
+
+            CountFields.writePriorities(gen, "priorityBreakdown", week);
+
+            gen.writeNumberField("aiGeneratedCount", week.aiGenerated());
+            gen.writeNumberField("aiGeneratedPercentage", CountFields.ratio(week.aiGenerated(), week.total()));
+
+            gen.writeNumberField("withDueDate", week.withDueDate());
+            gen.writeNumberField("withoutDueDate", week.total() - week.withDueDate());
+
+            if (report.allTime().total() > 0) {
+                long prevWeekCount = report.previousWeek().total();
+                gen.writeNumberField("completionRateChangeFromAverage", report.completionRate() - report.allTimeCompletionRate());
+                gen.writeNumberField("prevWeekTodoCount", (int) prevWeekCount);
+                gen.writeNumberField("todoCountChangeFromPrevWeek", (int) (week.total() - prevWeekCount));
+                gen.writeNumberField("prevWeekCompletionRate", report.previousWeekCompletionRate());
+                gen.writeNumberField("completionRateChangeFromPrevWeek",
+                        report.completionRate() - report.previousWeekCompletionRate());
+            }
+            gen.writeEndObject();
+        }
+    }
+}
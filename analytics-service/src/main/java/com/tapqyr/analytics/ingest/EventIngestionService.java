@@ -0,0 +1,171 @@
+package com.tapqyr.analytics.ingest;
+
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.dto.IngestEvent;
+import com.tapqyr.analytics.dto.IngestEventType;
+import com.tapqyr.analytics.dto.IngestResult;
+import com.tapqyr.analytics.store.ActivityCounters;
+import com.tapqyr.analytics.store.ChangeIngestionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies changes the backend pushes, so dashboards reflect them without waiting for the next poll.
+ * <p>
+ * Request threads put events on a bounded lock-free {@link EventQueue} and return; one applier thread
+ * takes them off in order and is the only thread applying them. Created and completed todos go to the
+ * analytics store through {@link ChangeIngestionService}, which also updates the activity counters and the
+ * similarity index and skips them when its tailer reads them later. Logins go to the {@link ActivityCounters}.
+ * Every event then evicts the user's cached analytics. Without the analytics store, or before its load
+ * completes, events only evict caches and the polls pick the changes up. A full queue rejects the rest of a
+ * batch rather than blocking the request.
+ */
+@Service
+@Slf4j
+public class EventIngestionService implements InitializingBean, DisposableBean {
+
+    // Events applied between cache evictions
+    private static final int MAX_DRAIN = 1024;
+
+    // The applier is woken by each batch; this only bounds how long shutdown waits for it
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ActivityCounters activityCounters;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final ChangeIngestionService changeIngestionService;
+    private final EventQueue<IngestEvent> queue;
+
+    @Value("${analytics.ingest.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.ingest.max-batch-size:1000}")
+    private int maxBatchSize = 1000;
+
+    private volatile boolean running;
+    private volatile Thread applier;
+
+    public EventIngestionService(ActivityCounters activityCounters, AnalyticsCacheService analyticsCacheService,
+                                 ChangeIngestionService changeIngestionService,
+                                 @Value("${analytics.ingest.queue-capacity:65536}") int queueCapacity,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        this.activityCounters = activityCounters;
+        this.analyticsCacheService = analyticsCacheService;
+        this.changeIngestionService = changeIngestionService;
+        this.queue = new EventQueue<>(queueCapacity);
+        meterRegistry.ifAvailable(registry -> Gauge.builder("analytics.ingest.queue.size", queue, EventQueue::size)
+                .description("Pushed events waiting to be applied")
+                .register(registry));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::applyLoop, "analytics-ingest-applier");
+        thread.setDaemon(true);
+        applier = thread;
+        thread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        Thread thread = applier;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Queue a batch in order. Returns how many events were queued; fewer than submitted means the queue
+     * filled up and the remaining events were not taken.
+     */
+    public IngestResult submit(List<IngestEvent> events) {
+        if (events.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " events per batch");
+        }
+        for (IngestEvent event : events) {
+            if (event == null || event.type() == null || event.userId() == null || event.userId().isEmpty()) {
+                throw new IllegalArgumentException("Every event needs a type and a userId");
+            }
+            if ((event.type() == IngestEventType.TODO_CREATED || event.type() == IngestEventType.TODO_COMPLETED)
+                    && event.todoRowId() == null) {
+                throw new IllegalArgumentException(event.type().key() + " events need a todoRowId");
+            }
+        }
+        int accepted = 0;
+        while (accepted < events.size() && queue.offer(events.get(accepted))) {
+            accepted++;
+        }
+        Thread thread = applier;
+        if (accepted > 0 && thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return new IngestResult(accepted, events.size());
+    }
+
+    private void applyLoop() {
+        Set<String> touchedUsers = new HashSet<>();
+        // Events queued before shutdown are still applied
+        while (running || queue.size() > 0) {
+            if (drain(touchedUsers) == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private int drain(Set<String> touchedUsers) {
+        int applied = 0;
+        IngestEvent event;
+        while (applied < MAX_DRAIN && (event = queue.poll()) != null) {
+            try {
+                apply(event);
+                touchedUsers.add(event.userId());
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply {} event for user {}", event.type().key(), event.userId(), e);
+            }
+            applied++;
+        }
+        touchedUsers.forEach(analyticsCacheService::evictUser);
+        touchedUsers.clear();
+        return applied;
+    }
+
+    private void apply(IngestEvent event) {
+        long occurredAt = event.occurredAt() == null ? System.currentTimeMillis() : event.occurredAt().toEpochMilli();
+        switch (event.type()) {
+            // Same layout as TodoRepository.INGEST_COLUMNS
+            case TODO_CREATED -> changeIngestionService.applyPushedTodo(new Object[]{event.todoRowId(), event.userId(),
+                    occurredAt, event.dueDate() == null ? null : event.dueDate().toEpochMilli(), event.priority(), false,
+                    Boolean.TRUE.equals(event.aiGenerated())});
+            case TODO_COMPLETED -> changeIngestionService.applyPushedCompletion(event.userId(), event.todoRowId());
+            case LOGIN -> activityCounters.recordLogin(event.userId(),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(occurredAt), ZoneId.systemDefault()));
+            case MEMORY_UPDATED -> {
+                // Memory flags arrive with the next poll; evicting the user's cache is all that is needed now
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tapqyr.analytics.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer, over a ring of sequence-stamped slots.
+ * <p>
+ * A producer claims a position with a CAS on the tail and publishes its element by advancing the slot's
+ * sequence; the consumer takes the element once the sequence shows it published and hands the slot back
+ * one lap ahead. {@link #offer} fails instead of waiting when the ring is full.
+ */
+final class EventQueue<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    // Written by the consumer only; volatile so size() can be read from other threads
+    private volatile long head;
+
+    // Capacity is rounded up to a power of two
+    EventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        elements = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, elements.length));
+    }
+
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The consumer has not freed this slot from the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // Consumer side only; null when empty or the next element is not yet published
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head;
+        int slot = (int) (position & mask);
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[slot];
+        elements[slot] = null;
+        sequences.set(slot, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+}
@@ -0,0 +1,197 @@
+package com.tapqyr.analytics.memory;
+
+import com.tapqyr.analytics.dto.MemoryInsights;
+import com.tapqyr.analytics.dto.MemoryInsightsSummary;
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Field-level analytics over the memory JSON columns.
+ * <p>
+ * Each memory is parsed once per {@code updatedAt} by {@link MemoryJsonExtractor}, and the extracted
+ * fields are kept per user. A {@link MemoryTailer} reads the memories changed since the last refresh,
+ * and only those whose updatedAt moved are re-parsed, so summaries over every user aggregate small
+ * records instead of re-parsing JSON. Until the first refresh completes, memories are parsed on each
+ * request.
+ */
+@Service
+@Slf4j
+public class MemoryInsightsService {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final int MAX_TOP_VALUES = 100;
+
+    // Memories the watermark skipped are parsed this many at a time
+    private static final int RECONCILE_CHUNK_SIZE = 200;
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final MemoryTailer tailer;
+
+    private final Map<String, MemoryInsights> extracted = new ConcurrentHashMap<>();
+
+    @Value("${analytics.memory-insights.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.memory-insights.reconcile-interval-ms:60000}")
+    private long reconcileIntervalMs = 60000;
+
+    private volatile boolean ready;
+
+    public MemoryInsightsService(UserMemoryRepository userMemoryRepository) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.tailer = new MemoryTailer(userMemoryRepository, RECONCILE_CHUNK_SIZE);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.memory-insights.refresh-interval-ms:10000}")
+    @Transactional(readOnly = true)
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int[] parsed = {0};
+        tailer.tail(userMemoryRepository::streamJsonColumnsUpdatedSince, memory -> (LocalDateTime) memory[1],
+                memory -> {
+                    MemoryInsights cached = extracted.get((String) memory[0]);
+                    // The boundary rows are read again on every refresh
+                    if (cached == null || !Objects.equals(cached.updatedAt(), memory[1])) {
+                        extracted.put((String) memory[0], extract(memory));
+                        parsed[0]++;
+                    }
+                });
+
+        tailer.reconcile(reconcileIntervalMs, extracted.size(), () -> new HashSet<>(extracted.keySet()),
+                extracted.keySet()::removeAll,
+                missing -> {
+                    for (Object[] memory : userMemoryRepository.findJsonColumnsByUserIdIn(missing)) {
+                        extracted.put((String) memory[0], extract(memory));
+                        parsed[0]++;
+                    }
+                });
+
+        if (!ready) {
+            ready = true;
+            log.info("Extracted memory fields of {} users in {} ms", parsed[0], System.currentTimeMillis() - started);
+        } else if (parsed[0] > 0) {
+            log.debug("Re-extracted memory fields of {} users in {} ms", parsed[0], System.currentTimeMillis() - started);
+        }
+    }
+
+    public MemoryInsights getUserInsights(String userId) {
+        if (isReady()) {
+            MemoryInsights insights = extracted.get(userId);
+            return insights == null ? MemoryInsights.none(userId) : insights;
+        }
+        List<Object[]> rows = userMemoryRepository.findJsonColumnsByUserId(userId);
+        return rows.isEmpty() ? MemoryInsights.none(userId) : extract(rows.get(0));
+    }
+
+    // Aggregates over every user's memory, with up to topValues common values per task preference
+    @Transactional(readOnly = true)
+    public MemoryInsightsSummary getSummary(int topValues) {
+        Summary summary = new Summary();
+        if (isReady()) {
+            extracted.values().forEach(summary::add);
+        } else {
+            try (Stream<Object[]> memories = userMemoryRepository.streamJsonColumnsUpdatedSince(EPOCH)) {
+                memories.forEach(memory -> summary.add(extract(memory)));
+            }
+        }
+        return summary.toSummary(Math.max(0, Math.min(topValues, MAX_TOP_VALUES)));
+    }
+
+    // Row in UserMemoryRepository.JSON_COLUMNS layout
+    private static MemoryInsights extract(Object[] memory) {
+        return MemoryJsonExtractor.extract((String) memory[0], (LocalDateTime) memory[1], (String) memory[2],
+                (String) memory[3], (String) memory[4], (String) memory[5]);
+    }
+
+    private static final class Summary {
+
+        long memories;
+        long usersWithInteractions;
+        long interactionCount;
+        final Map<String, Long> interactionsByAction = new HashMap<>();
+        final Map<String, Long> tasksByPriority = new HashMap<>();
+        final Map<String, Long> completionsByPriority = new HashMap<>();
+        long withDueDate;
+        long withoutDueDate;
+        long completedWithDueDate;
+        double daysToCompleteSum;
+        final Map<String, Long> preferenceFields = new HashMap<>();
+        final Map<String, Map<String, Long>> preferenceValues = new HashMap<>();
+        final Map<String, Long> personaFields = new HashMap<>();
+
+        void add(MemoryInsights insights) {
+            memories++;
+            if (insights.interactionCount() > 0) {
+                usersWithInteractions++;
+                interactionCount += insights.interactionCount();
+            }
+            insights.interactionsByAction().forEach((action, count) -> interactionsByAction.merge(action, count, Long::sum));
+            insights.tasksByPriority().forEach((priority, count) -> tasksByPriority.merge(priority, count, Long::sum));
+            insights.completionsByPriority().forEach((priority, count) -> completionsByPriority.merge(priority, count, Long::sum));
+            withDueDate += insights.withDueDate();
+            withoutDueDate += insights.withoutDueDate();
+            if (insights.averageDaysToComplete() != null && insights.completedWithDueDate() > 0) {
+                completedWithDueDate += insights.completedWithDueDate();
+                daysToCompleteSum += insights.averageDaysToComplete() * insights.completedWithDueDate();
+            }
+            insights.taskPreferences().forEach((field, value) -> {
+                preferenceFields.merge(field, 1L, Long::sum);
+                if (value != null) {
+                    preferenceValues.computeIfAbsent(field, f -> new HashMap<>()).merge(value, 1L, Long::sum);
+                }
+            });
+            insights.personaFields().forEach(field -> personaFields.merge(field, 1L, Long::sum));
+        }
+
+        MemoryInsightsSummary toSummary(int topValues) {
+            Map<String, Long> fields = byCountDescending(preferenceFields);
+            Map<String, Map<String, Long>> topPreferenceValues = new LinkedHashMap<>();
+            if (topValues > 0) {
+                fields.keySet().stream()
+                        .filter(preferenceValues::containsKey)
+                        .forEach(field -> topPreferenceValues.put(field, top(preferenceValues.get(field), topValues)));
+            }
+            return new MemoryInsightsSummary(memories, usersWithInteractions, interactionCount,
+                    byCountDescending(interactionsByAction), byCountDescending(tasksByPriority),
+                    byCountDescending(completionsByPriority), withDueDate, withoutDueDate,
+                    completedWithDueDate == 0 ? null : daysToCompleteSum / completedWithDueDate,
+                    fields, topPreferenceValues, byCountDescending(personaFields));
+        }
+
+        private static Map<String, Long> byCountDescending(Map<String, Long> counts) {
+            return top(counts, counts.size());
+        }
+
+        // The limit largest counts, ties by key
+        private static Map<String, Long> top(Map<String, Long> counts, int limit) {
+            Map<String, Long> sorted = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            return sorted;
+        }
+    }
+}
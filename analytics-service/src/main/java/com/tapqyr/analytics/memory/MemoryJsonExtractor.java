@@ -0,0 +1,166 @@
+package com.tapqyr.analytics.memory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tapqyr.analytics.dto.MemoryInsights;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls the fields behind {@link MemoryInsights} out of the memory JSON columns with Jackson's streaming
+ * parser. Only the selected paths are read; every other subtree is skipped token by token without
+ * being materialized, so large histories cost a scan, not a tree. The paths follow what the backend's
+ * memory and assistant services write. A column that is missing or not valid JSON contributes nothing.
+ */
+@Slf4j
+final class MemoryJsonExtractor {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Scalar preference values longer than this are cut, so free text cannot bloat the histograms
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private MemoryJsonExtractor() {
+    }
+
+    static MemoryInsights extract(String userId, LocalDateTime updatedAt, String taskPreferences, String workPatterns,
+                                  String interactionHistory, String userPersona) {
+        Fields history = read(userId, "interactionHistory", interactionHistory, MemoryJsonExtractor::readInteractions);
+        Fields patterns = read(userId, "workPatterns", workPatterns, MemoryJsonExtractor::readWorkPatterns);
+        Fields preferences = read(userId, "taskPreferences", taskPreferences, MemoryJsonExtractor::readTopLevel);
+        Fields persona = read(userId, "userPersona", userPersona, MemoryJsonExtractor::readTopLevel);
+        return new MemoryInsights(userId, updatedAt, history.interactionCount, history.interactionsByAction,
+                patterns.tasksByPriority, patterns.completionsByPriority, patterns.withDueDate, patterns.withoutDueDate,
+                patterns.completedWithDueDate, patterns.averageDaysToComplete, preferences.topLevel,
+                new ArrayList<>(persona.topLevel.keySet()));
+    }
+
+    private interface ColumnReader {
+        void read(JsonParser parser, Fields fields) throws IOException;
+    }
+
+    // Runs the reader with the parser positioned on the column's root object; all or nothing per column
+    private static Fields read(String userId, String column, String json, ColumnReader reader) {
+        Fields fields = new Fields();
+        if (json == null || json.isBlank()) {
+            return fields;
+        }
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                reader.read(parser, fields);
+            }
+            return fields;
+        } catch (IOException e) {
+            log.debug("Skipping malformed {} of user {}: {}", column, userId, e.getMessage());
+            return new Fields();
+        }
+    }
+
+    // interactionHistory.actions[*].action
+    private static void readInteractions(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"actions".equals(name) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                fields.interactionCount++;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_STRING && "action".equals(field)) {
+                        fields.interactionsByAction.merge(parser.getText(), 1L, Long::sum);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    // workPatterns.tasksByPriority, .completionsByPriority and .preferredDueDates
+    private static void readWorkPatterns(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (name) {
+                case "tasksByPriority" -> readCounts(parser, fields.tasksByPriority);
+                case "completionsByPriority" -> readCounts(parser, fields.completionsByPriority);
+                case "preferredDueDates" -> readDueDates(parser, fields);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readCounts(JsonParser parser, Map<String, Long> counts) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken().isNumeric()) {
+                counts.put(name, parser.getValueAsLong());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readDueDates(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (!parser.nextToken().isNumeric()) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (name) {
+                case "withDueDate" -> fields.withDueDate = parser.getValueAsLong();
+                case "withoutDueDate" -> fields.withoutDueDate = parser.getValueAsLong();
+                case "totalCompletedWithDueDate" -> fields.completedWithDueDate = parser.getValueAsLong();
+                case "averageDaysToComplete" -> fields.averageDaysToComplete = parser.getValueAsDouble();
+                default -> {
+                }
+            }
+        }
+    }
+
+    // Top-level fields with their scalar values as text; objects, arrays and nulls map to null
+    private static void readTopLevel(JsonParser parser, Fields fields) throws IOException {
+        Map<String, String> values = fields.topLevel;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                String text = parser.getText();
+                values.put(name, text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) : text);
+            } else {
+                values.put(name, null);
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static final class Fields {
+        long interactionCount;
+        final Map<String, Long> interactionsByAction = new LinkedHashMap<>();
+        final Map<String, Long> tasksByPriority = new LinkedHashMap<>();
+        final Map<String, Long> completionsByPriority = new LinkedHashMap<>();
+        long withDueDate;
+        long withoutDueDate;
+        long completedWithDueDate;
+        Double averageDaysToComplete;
+        final Map<String, String> topLevel = new LinkedHashMap<>();
+    }
+}
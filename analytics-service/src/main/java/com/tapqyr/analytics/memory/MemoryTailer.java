@@ -0,0 +1,114 @@
+package com.tapqyr.analytics.memory;
+
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Follows user_memories by {@code updatedAt} for a copy kept elsewhere: the analytics store's flags, the
+ * search index and the extracted insights each own one.
+ * <p>
+ * {@link #tail} reads memories updated at or after the watermark; the bound is inclusive so rows sharing
+ * the previous watermark's millisecond are not missed, and copies must treat rows read again as upserts.
+ * Deleted memories leave no updatedAt behind and a memory can be written with an older one, so
+ * {@link #reconcile} compares counts and, when they differ, drops the users that are gone and hands over
+ * the ones the watermark skipped. Not thread-safe; owners call it from one synchronized refresh.
+ */
+public final class MemoryTailer {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final UserMemoryRepository userMemoryRepository;
+
+    // Missing users are handed over in chunks of this many
+    private final int chunkSize;
+
+    private LocalDateTime watermark = EPOCH;
+    private long lastReconciled;
+
+    public MemoryTailer(UserMemoryRepository userMemoryRepository, int chunkSize) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.chunkSize = chunkSize;
+    }
+
+    public LocalDateTime watermark() {
+        return watermark;
+    }
+
+    // Start from the given watermark, or from the beginning when null
+    public void reset(LocalDateTime watermark) {
+        this.watermark = watermark == null ? EPOCH : watermark;
+        this.lastReconciled = 0;
+    }
+
+    // Reconcile only after the interval, counted from now
+    public void reconciledNow() {
+        lastReconciled = System.currentTimeMillis();
+    }
+
+    public <R> void tail(Function<LocalDateTime, Stream<R>> query, Function<R, LocalDateTime> updatedAtOf,
+                         Consumer<R> sink) {
+        tail(query, updatedAtOf, sink, newest -> {
+        });
+    }
+
+    /**
+     * Pass memories updated at or after the watermark, as the query reads them, to the sink; then call
+     * commit with the newest updatedAt seen and move the watermark there. If anything throws, the watermark
+     * stays and the same memories are read again.
+     */
+    public <R> void tail(Function<LocalDateTime, Stream<R>> query, Function<R, LocalDateTime> updatedAtOf,
+                         Consumer<R> sink, Consumer<LocalDateTime> commit) {
+        LocalDateTime newest = watermark;
+        try (Stream<R> memories = query.apply(watermark)) {
+            for (R memory : (Iterable<R>) memories::iterator) {
+                sink.accept(memory);
+                LocalDateTime updatedAt = updatedAtOf.apply(memory);
+                if (updatedAt != null && updatedAt.isAfter(newest)) {
+                    newest = updatedAt;
+                }
+            }
+        }
+        commit.accept(newest);
+        watermark = newest;
+    }
+
+    /**
+     * Once {@code intervalMs} has passed since the last reconcile, and only if the copy's count differs
+     * from the table's: pass the users whose memory was deleted to drop, then the users the copy is
+     * missing to add, in chunks. Returns whether the copy was reconciled.
+     */
+    public boolean reconcile(long intervalMs, long copyCount, Supplier<Set<String>> copyUserIds,
+                             Consumer<Set<String>> drop, Consumer<List<String>> add) {
+        if (System.currentTimeMillis() - lastReconciled < intervalMs) {
+            return false;
+        }
+        lastReconciled = System.currentTimeMillis();
+        if (userMemoryRepository.count() == copyCount) {
+            return false;
+        }
+        Set<String> live = new HashSet<>(userMemoryRepository.findAllUserIds());
+        Set<String> gone = new HashSet<>(copyUserIds.get());
+        List<String> missing = new ArrayList<>();
+        for (String userId : live) {
+            if (!gone.remove(userId)) {
+                missing.add(userId);
+            }
+        }
+        if (!gone.isEmpty()) {
+            drop.accept(gone);
+        }
+        for (int from = 0; from < missing.size(); from += chunkSize) {
+            add.accept(missing.subList(from, Math.min(missing.size(), from + chunkSize)));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.tapqyr.analytics.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds a row-count summary ({@code analytics.repository.rows}, tagged by repository and method) to
+ * every Spring Data repository. Latency per query is already published by Spring Boot as
+ * {@code spring.data.repository.invocations}.
+ */
+@Component
+public class RepositoryRowMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String ROWS = "analytics.repository.rows";
+
+    // Resolved lazily: post-processors are created before the registry is
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public RepositoryRowMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, repositoryInformation) -> {
+                        String repository = repositoryInformation.getRepositoryInterface().getSimpleName();
+                        proxyFactory.addAdvice((MethodInterceptor) invocation -> RowCounts.record(registry.getObject(), ROWS,
+                                Tags.of("repository", repository, "method", invocation.getMethod().getName()),
+                                invocation.proceed()));
+                    }));
+        }
+        return bean;
+    }
+}
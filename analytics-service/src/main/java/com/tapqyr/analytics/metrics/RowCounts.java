@@ -0,0 +1,51 @@
+package com.tapqyr.analytics.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Records how many rows a query or service call returned into a distribution summary. Only
+ * collections, arrays, optionals and streams are counted; single objects such as DTOs, maps,
+ * scalars and void are not recorded.
+ */
+final class RowCounts {
+
+    private RowCounts() {
+    }
+
+    // Returns the result to hand back to the caller; streams are wrapped and recorded when closed
+    static Object record(MeterRegistry registry, String name, Tags tags, Object result) {
+        if (result instanceof Stream<?> stream) {
+            AtomicLong rows = new AtomicLong();
+            return stream.peek(row -> rows.incrementAndGet())
+                    .onClose(() -> summary(registry, name, tags).record(rows.get()));
+        }
+        long rows = count(result);
+        if (rows >= 0) {
+            summary(registry, name, tags).record(rows);
+        }
+        return result;
+    }
+
+    // -1 unless the result is a collection, array or optional; other iterables may be lazy or single-use
+    static long count(Object result) {
+        if (result instanceof Collection<?> collection) return collection.size();
+        if (result instanceof Optional<?> optional) return optional.isPresent() ? 1 : 0;
+        if (result != null && result.getClass().isArray()) return Array.getLength(result);
+        return -1;
+    }
+
+    private static DistributionSummary summary(MeterRegistry registry, String name, Tags tags) {
+        return DistributionSummary.builder(name)
+                .baseUnit("rows")
+                .tags(tags)
+                .register(registry);
+    }
+}
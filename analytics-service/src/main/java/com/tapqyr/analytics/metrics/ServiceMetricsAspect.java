@@ -0,0 +1,47 @@
+package com.tapqyr.analytics.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the analytics services ({@code analytics.service.calls}, tagged by
+ * class, method and exception) and records the number of rows returned by collection-valued ones
+ * ({@code analytics.service.rows}).
+ */
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+
+    static final String CALLS = "analytics.service.calls";
+    static final String ROWS = "analytics.service.rows";
+
+    private final MeterRegistry registry;
+
+    public ServiceMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * com.tapqyr.analytics.service..*(..))")
+    public Object timeServiceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Tags tags = Tags.of("class", joinPoint.getSignature().getDeclaringType().getSimpleName(),
+                "method", joinPoint.getSignature().getName());
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return RowCounts.record(registry, ROWS, tags, joinPoint.proceed());
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(CALLS)
+                    .tags(tags)
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
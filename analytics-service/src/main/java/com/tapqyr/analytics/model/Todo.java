@@ -2,6 +2,7 @@ package com.tapqyr.analytics.model;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
@@ -46,7 +47,8 @@ public class Todo {
     @Column(name = "isAIGenerated")
     private Boolean isAIGenerated;
     
-    @ManyToOne
+    // Lazy so todo scans do not load the owner's row, with its tokens and free-text goals
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", insertable = false, updatable = false)
     private User user;
     
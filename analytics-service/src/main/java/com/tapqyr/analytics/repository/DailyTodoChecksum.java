@@ -0,0 +1,14 @@
+package com.tapqyr.analytics.repository;
+
+/**
+ * Fingerprint of the todos created on one local day (ISO yyyy-MM-dd). Completing, re-prioritising or
+ * deleting a todo changes it, so rollups of days outside the recheck window can be found stale.
+ */
+public interface DailyTodoChecksum {
+
+    String getDay();
+
+    long getTodoCount();
+
+    long getRowChecksum();
+}
@@ -0,0 +1,12 @@
+package com.tapqyr.analytics.repository;
+
+// Todo counts for one local creation day (ISO yyyy-MM-dd) and user; userId is null for unowned todos
+public interface DailyTodoCountSummary extends TodoCountSummary {
+
+    String getDay();
+
+    String getUserId();
+
+    // Same fingerprint as DailyTodoChecksum, for this user's todos of the day
+    long getRowChecksum();
+}
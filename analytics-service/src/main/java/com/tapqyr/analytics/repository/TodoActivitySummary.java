@@ -0,0 +1,36 @@
+package com.tapqyr.analytics.repository;
+
+import java.time.DayOfWeek;
+
+/**
+ * {@link TodoCountSummary} plus creation counts per weekday. Weekday columns follow the JVM default
+ * time zone, same as the entity's {@code createdAt}.
+ */
+public interface TodoActivitySummary extends TodoCountSummary {
+
+    long getMondayCount();
+
+    long getTuesdayCount();
+
+    long getWednesdayCount();
+
+    long getThursdayCount();
+
+    long getFridayCount();
+
+    long getSaturdayCount();
+
+    long getSundayCount();
+
+    default long getCountForDay(DayOfWeek day) {
+        return switch (day) {
+            case MONDAY -> getMondayCount();
+            case TUESDAY -> getTuesdayCount();
+            case WEDNESDAY -> getWednesdayCount();
+            case THURSDAY -> getThursdayCount();
+            case FRIDAY -> getFridayCount();
+            case SATURDAY -> getSaturdayCount();
+            case SUNDAY -> getSundayCount();
+        };
+    }
+}
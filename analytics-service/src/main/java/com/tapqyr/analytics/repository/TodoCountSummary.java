@@ -0,0 +1,30 @@
+package com.tapqyr.analytics.repository;
+
+/**
+ * Aggregated todo counts computed inside SQLite, used instead of loading {@code Todo} entities.
+ */
+public interface TodoCountSummary {
+
+    long getTotalCount();
+
+    long getCompletedCount();
+
+    long getAiGeneratedCount();
+
+    long getWithDueDateCount();
+
+    long getLowPriorityCount();
+
+    long getMediumPriorityCount();
+
+    long getHighPriorityCount();
+
+    default long getCountForPriority(String priority) {
+        return switch (priority) {
+            case "low" -> getLowPriorityCount();
+            case "medium" -> getMediumPriorityCount();
+            case "high" -> getHighPriorityCount();
+            default -> 0L;
+        };
+    }
+}
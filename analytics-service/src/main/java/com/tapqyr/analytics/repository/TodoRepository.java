@@ -1,33 +1,112 @@
 package com.tapqyr.analytics.repository;
 
 import com.tapqyr.analytics.model.Todo;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 public interface TodoRepository extends JpaRepository<Todo, String> {
     
+    // Conditional counts behind TodoCountSummary/TodoActivitySummary; weekday 0 = Sunday, timestamps are
+    // epoch milliseconds
+    String WEEKDAY = "strftime('%w', createdAt / 1000, 'unixepoch', 'localtime')";
+    String LOCAL_DAY = "date(createdAt / 1000, 'unixepoch', 'localtime')";
+    // Heatmap buckets: weekday (0 = Sunday), hour 0-23 and day of the year 1-366 in local time
+    String HEATMAP_BUCKETS = "CAST(" + WEEKDAY + " AS INTEGER) AS weekday, " +
+           "CAST(strftime('%H', createdAt / 1000, 'unixepoch', 'localtime') AS INTEGER) AS hour, " +
+           "CAST(strftime('%j', createdAt / 1000, 'unixepoch', 'localtime') AS INTEGER) AS dayOfYear, COUNT(*) ";
+    String COUNT_SUMMARY_COLUMNS = "COUNT(*) AS totalCount, " +
+           "COUNT(CASE WHEN completed = 1 THEN 1 END) AS completedCount, " +
+           "COUNT(CASE WHEN isAIGenerated = 1 THEN 1 END) AS aiGeneratedCount, " +
+           "COUNT(dueDate) AS withDueDateCount, " +
+           "COUNT(CASE WHEN priority = 'low' THEN 1 END) AS lowPriorityCount, " +
+           "COUNT(CASE WHEN priority = 'medium' THEN 1 END) AS mediumPriorityCount, " +
+           "COUNT(CASE WHEN priority = 'high' THEN 1 END) AS highPriorityCount ";
+    String ACTIVITY_SUMMARY_COLUMNS = COUNT_SUMMARY_COLUMNS + ", " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '1' THEN 1 END) AS mondayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '2' THEN 1 END) AS tuesdayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '3' THEN 1 END) AS wednesdayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '4' THEN 1 END) AS thursdayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '5' THEN 1 END) AS fridayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '6' THEN 1 END) AS saturdayCount, " +
+           "COUNT(CASE WHEN " + WEEKDAY + " = '0' THEN 1 END) AS sundayCount ";
+    
+    // Row layout read by AnalyticsStore: rowid, userId, createdAt and dueDate millis, priority, completed, AI flag
+    String INGEST_COLUMNS = "rowid, userId, CAST(createdAt AS INTEGER), CAST(dueDate AS INTEGER), priority, " +
+           "completed, isAIGenerated ";
+    // Must match AnalyticsStore's checksum of the same rows
+    String ROW_CHECKSUM = "SUM(rowid * (1 + 2 * (completed IS 1) + 4 * (isAIGenerated IS 1) + 8 * (priority IS 'high') + " +
+           "16 * (priority IS 'low') + 32 * (dueDate IS NOT NULL))) ";
+    String CHECKSUM_COLUMNS = "COUNT(*) AS todoCount, " + ROW_CHECKSUM + "AS rowChecksum, " +
+           "SUM(COALESCE(CAST(dueDate AS INTEGER), 0) % 1000003) AS dueChecksum ";
+    
+    // Entity queries below are read-only: Hibernate keeps no snapshots of the loaded todos and never
+    // dirty-checks them. Only projections are used on hot paths.
+    
     // Find todos by user
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByUserId(String userId);
     
     // Find completed todos
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByCompletedTrue();
     
     // Find todos created in date range
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     
     // Find todos by user and created in date range
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByUserIdAndCreatedAtBetween(String userId, LocalDateTime start, LocalDateTime end);
     
+    // Open todos due before an epoch-millisecond instant; a null completed flag counts as open
+    String OVERDUE = "COALESCE(completed, 0) = 0 AND dueDate < :now ";
+    // Overdue aging bucket by whole hours since the due hour, split like OverdueSummary.AGING_UPPER_HOURS
+    String AGING_BUCKET = "CASE WHEN :now / 3600000 - dueDate / 3600000 < 24 THEN 0 " +
+           "WHEN :now / 3600000 - dueDate / 3600000 < 72 THEN 1 " +
+           "WHEN :now / 3600000 - dueDate / 3600000 < 168 THEN 2 " +
+           "WHEN :now / 3600000 - dueDate / 3600000 < 720 THEN 3 ELSE 4 END";
+    
     // Find overdue todos (due date is in the past and not completed)
     @Query("SELECT t FROM Todo t WHERE t.completed = false AND t.dueDate < CURRENT_TIMESTAMP")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findOverdueTodos();
     
+    // Overdue queries used until the in-memory due-date index is loaded
+    @Query(value = "SELECT " + AGING_BUCKET + " AS bucket, COUNT(*) FROM todos WHERE " + OVERDUE + "GROUP BY bucket",
+           nativeQuery = true)
+    List<Object[]> countOverdueByAgingBucket(@Param("now") long now);
+    
+    @Query(value = "SELECT userId, COUNT(*) AS overdueCount FROM todos WHERE userId IS NOT NULL AND " + OVERDUE +
+           "GROUP BY userId ORDER BY overdueCount DESC, userId LIMIT :limit",
+           nativeQuery = true)
+    List<Object[]> findTopOverdueUsers(@Param("now") long now, @Param("limit") int limit);
+    
+    @Query(value = "SELECT COUNT(*) FROM todos WHERE userId = :userId AND " + OVERDUE, nativeQuery = true)
+    long countOverdueByUserId(@Param("userId") String userId, @Param("now") long now);
+    
+    // Open todos due in [now, until], soonest first: id, userId, title, dueDate millis
+    @Query(value = "SELECT id, userId, title, CAST(dueDate AS INTEGER) FROM todos " +
+           "WHERE COALESCE(completed, 0) = 0 AND dueDate >= :now AND dueDate <= :until ORDER BY dueDate LIMIT :limit",
+           nativeQuery = true)
+    List<Object[]> findUpcomingDue(@Param("now") long now, @Param("until") long until, @Param("limit") int limit);
+    
+    // id and title of todos by SQLite rowid, for rows found in the in-memory store
+    @Query(value = "SELECT rowid, id, title FROM todos WHERE rowid IN (:rowIds)", nativeQuery = true)
+    List<Object[]> findIdAndTitleByRowIdIn(@Param("rowIds") Collection<Long> rowIds);
+    
     // Find completion rate per user
     @Query("SELECT t.userId, " +
            "COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END) AS completedCount, " +
@@ -35,12 +114,167 @@ public interface TodoRepository extends JpaRepository<Todo, String> {
            "FROM Todo t GROUP BY t.userId")
     List<Object[]> findCompletionRateByUser();
     
+    // One keyset page of completion rates ordered by user ID, with name and email joined in
+    @Query("SELECT new com.tapqyr.analytics.repository.UserCompletionRate(t.userId, " +
+           "COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END), COUNT(t.id), u.name, u.email) " +
+           "FROM Todo t LEFT JOIN User u ON u.id = t.userId " +
+           "WHERE t.userId > :after GROUP BY t.userId, u.name, u.email ORDER BY t.userId")
+    List<UserCompletionRate> findCompletionRatesAfter(@Param("after") String after, Limit limit);
+    
+    // Same rows as findCompletionRatesAfter without a page limit, read lazily; callers must close the stream
+    @Query("SELECT new com.tapqyr.analytics.repository.UserCompletionRate(t.userId, " +
+           "COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END), COUNT(t.id), u.name, u.email) " +
+           "FROM Todo t LEFT JOIN User u ON u.id = t.userId " +
+           "WHERE t.userId > :after GROUP BY t.userId, u.name, u.email ORDER BY t.userId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<UserCompletionRate> streamCompletionRatesAfter(@Param("after") String after);
+    
+    // Completion counts of todos without a user, as at most one row with a null userId
+    @Query("SELECT new com.tapqyr.analytics.repository.UserCompletionRate(t.userId, " +
+           "COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END), COUNT(t.id), u.name, u.email) " +
+           "FROM Todo t LEFT JOIN User u ON u.id = t.userId " +
+           "WHERE t.userId IS NULL GROUP BY t.userId, u.name, u.email")
+    List<UserCompletionRate> findCompletionRatesWithoutUser();
+    
     // Find todos by priority
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByPriority(String priority);
     
     // Find AI-generated todos
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<Todo> findByIsAIGenerated(Boolean isAIGenerated);
     
     // Count todos by user
     Long countByUserId(String userId);
-} 
\ No newline at end of file
+    
+    // All activity pattern counts for one user in a single aggregate row
+    @Query(value = "SELECT " + ACTIVITY_SUMMARY_COLUMNS + "FROM todos WHERE userId = :userId", nativeQuery = true)
+    TodoActivitySummary summarizeByUserId(@Param("userId") String userId);
+    
+    // Activity pattern counts for several users, one row per user that has todos
+    @Query(value = "SELECT userId, " + ACTIVITY_SUMMARY_COLUMNS + "FROM todos WHERE userId IN (:userIds) GROUP BY userId",
+           nativeQuery = true)
+    List<UserTodoActivitySummary> summarizeByUserIdIn(@Param("userIds") Collection<String> userIds);
+    
+    // Compact per-todo rows for UserTodoSnapshot: createdAt millis, completed, priority, AI flag, has due date
+    @Query(value = "SELECT CAST(createdAt AS INTEGER), completed, priority, isAIGenerated, " +
+           "CASE WHEN dueDate IS NULL THEN 0 ELSE 1 END FROM todos WHERE userId = :userId",
+           nativeQuery = true)
+    List<Object[]> findSnapshotRowsByUserId(@Param("userId") String userId);
+    
+    // Todo counts per weekday, hour and day of the year, for heatmaps while the in-memory store is unavailable
+    @Query(value = "SELECT " + HEATMAP_BUCKETS + "FROM todos GROUP BY weekday, hour, dayOfYear", nativeQuery = true)
+    List<Object[]> findHeatmapCounts();
+    
+    @Query(value = "SELECT " + HEATMAP_BUCKETS + "FROM todos WHERE userId = :userId GROUP BY weekday, hour, dayOfYear",
+           nativeQuery = true)
+    List<Object[]> findHeatmapCountsByUserId(@Param("userId") String userId);
+    
+    // userId, createdAt and dueDate millis of todos created at or after an epoch-millisecond bound, read lazily
+    // for the global sketches; callers must close the stream
+    @Query(value = "SELECT userId, CAST(createdAt AS INTEGER), CAST(dueDate AS INTEGER) FROM todos " +
+           "WHERE createdAt >= :since", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamSketchRowsCreatedSince(@Param("since") long since);
+    
+    // userId and createdAt millis of users' todos created within an inclusive epoch-millisecond range, read lazily
+    // for cohort retention; callers must close the stream
+    @Query(value = "SELECT userId, CAST(createdAt AS INTEGER) FROM todos " +
+           "WHERE userId IS NOT NULL AND createdAt >= :from AND createdAt <= :to", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamActivityRowsCreatedBetween(@Param("from") long from, @Param("to") long to);
+    
+    @Query(value = "SELECT COUNT(*) FROM todos WHERE createdAt BETWEEN :start AND :end", nativeQuery = true)
+    long countCreatedBetween(@Param("start") long start, @Param("end") long end);
+    
+    // Exact counterparts of the global sketches, over an inclusive epoch-millisecond range
+    @Query(value = "SELECT COUNT(DISTINCT userId) FROM todos WHERE createdAt BETWEEN :start AND :end", nativeQuery = true)
+    long countDistinctUsersCreatedBetween(@Param("start") long start, @Param("end") long end);
+    
+    @Query(value = "SELECT CAST(dueDate AS INTEGER) - CAST(createdAt AS INTEGER) AS slack FROM todos " +
+           "WHERE dueDate IS NOT NULL AND createdAt BETWEEN :start AND :end ORDER BY slack", nativeQuery = true)
+    List<Number> findDueDateSlackMillisCreatedBetween(@Param("start") long start, @Param("end") long end);
+    
+    @Query(value = "SELECT COUNT(*) AS todoCount FROM todos WHERE userId IS NOT NULL GROUP BY userId ORDER BY todoCount",
+           nativeQuery = true)
+    List<Number> findTodoCountsPerUser();
+    
+    // Counts for every todo created in an inclusive epoch-millisecond range
+    @Query(value = "SELECT " + COUNT_SUMMARY_COLUMNS + "FROM todos WHERE createdAt BETWEEN :start AND :end",
+           nativeQuery = true)
+    TodoCountSummary summarizeCreatedBetween(@Param("start") long start, @Param("end") long end);
+    
+    @Query(value = "SELECT " + COUNT_SUMMARY_COLUMNS + "FROM todos " +
+           "WHERE userId = :userId AND createdAt BETWEEN :start AND :end",
+           nativeQuery = true)
+    TodoCountSummary summarizeByUserIdCreatedBetween(@Param("userId") String userId,
+                                                     @Param("start") long start, @Param("end") long end);
+    
+    // Counts and row checksum per local creation day and user for todos created in [start, end)
+    @Query(value = "SELECT " + LOCAL_DAY + " AS day, userId, " + COUNT_SUMMARY_COLUMNS + ", " + ROW_CHECKSUM +
+           "AS rowChecksum FROM todos WHERE createdAt >= :start AND createdAt < :end GROUP BY day, userId",
+           nativeQuery = true)
+    List<DailyTodoCountSummary> summarizeDailyByUser(@Param("start") long start, @Param("end") long end);
+    
+    // Per-day fingerprints of todos created before a time, compared against the daily rollups to find stale days
+    @Query(value = "SELECT " + LOCAL_DAY + " AS day, COUNT(*) AS todoCount, " + ROW_CHECKSUM + "AS rowChecksum " +
+           "FROM todos WHERE createdAt < :end GROUP BY day",
+           nativeQuery = true)
+    List<DailyTodoChecksum> findDailyChecksumsBefore(@Param("end") long end);
+    
+    // Counts per user for the week [weekStart, weekEnd], the week before it and everything older, in one pass
+    @Query(value = "SELECT userId, CASE WHEN createdAt >= :weekStart THEN 0 WHEN createdAt >= :previousWeekStart THEN 1 " +
+           "ELSE 2 END AS period, " + COUNT_SUMMARY_COLUMNS +
+           "FROM todos WHERE userId IS NOT NULL AND createdAt <= :weekEnd GROUP BY userId, period",
+           nativeQuery = true)
+    List<WeeklyTodoCountSummary> summarizeWeeklyByUser(@Param("previousWeekStart") long previousWeekStart,
+                                                       @Param("weekStart") long weekStart,
+                                                       @Param("weekEnd") long weekEnd);
+    
+    @Query(value = "SELECT MAX(CAST(createdAt AS INTEGER)) FROM todos", nativeQuery = true)
+    Long findMaxCreatedAt();
+    
+    @Query(value = "SELECT MIN(CAST(createdAt AS INTEGER)) FROM todos WHERE createdAt > :since", nativeQuery = true)
+    Long findMinCreatedAtAfter(@Param("since") long since);
+    
+    // Users with todos created after an epoch-millisecond watermark, with their newest createdAt
+    @Query(value = "SELECT userId, MAX(CAST(createdAt AS INTEGER)) FROM todos " +
+           "WHERE userId IS NOT NULL AND createdAt > :since GROUP BY userId",
+           nativeQuery = true)
+    List<Object[]> findUserIdsWithTodosCreatedAfter(@Param("since") long since);
+    
+    // Todo counts per user, weekday (0 = Sunday), priority, completion and AI flag, with the newest createdAt
+    // of each group. Timestamps are stored by Prisma as epoch milliseconds.
+    @Query(value = "SELECT userId, " +
+           "CAST(" + WEEKDAY + " AS INTEGER) AS weekday, " +
+           "priority, completed, isAIGenerated, COUNT(*) AS todoCount, CAST(MAX(createdAt) AS INTEGER) AS lastCreatedAt " +
+           "FROM todos WHERE userId IS NOT NULL " +
+           "GROUP BY userId, weekday, priority, completed, isAIGenerated",
+           nativeQuery = true)
+    List<Object[]> findFeatureCountsByUser();
+    
+    // Lightweight rows for todos created after an epoch-millisecond watermark
+    @Query(value = "SELECT userId, CAST(createdAt AS INTEGER) AS createdAt, priority, completed, isAIGenerated " +
+           "FROM todos WHERE userId IS NOT NULL AND createdAt > :since ORDER BY createdAt",
+           nativeQuery = true)
+    List<Object[]> findFeatureRowsCreatedAfter(@Param("since") long since);
+    
+    // One page of todos in rowid order, for loading the in-memory store and tailing inserts
+    @Query(value = "SELECT " + INGEST_COLUMNS + "FROM todos WHERE rowid > :afterRowId ORDER BY rowid LIMIT :limit",
+           nativeQuery = true)
+    List<Object[]> findIngestRowsAfter(@Param("afterRowId") long afterRowId, @Param("limit") int limit);
+    
+    @Query(value = "SELECT " + INGEST_COLUMNS + "FROM todos WHERE userId IN (:userIds) AND rowid <= :maxRowId",
+           nativeQuery = true)
+    List<Object[]> findIngestRowsByUserIdIn(@Param("userIds") Collection<String> userIds,
+                                            @Param("maxRowId") long maxRowId);
+    
+    @Query(value = "SELECT " + INGEST_COLUMNS + "FROM todos WHERE userId IS NULL AND rowid <= :maxRowId",
+           nativeQuery = true)
+    List<Object[]> findIngestRowsWithoutUser(@Param("maxRowId") long maxRowId);
+    
+    // Per-user fingerprints of todos up to a rowid, compared against the in-memory store to find drift
+    @Query(value = "SELECT userId, " + CHECKSUM_COLUMNS + "FROM todos WHERE rowid <= :maxRowId GROUP BY userId",
+           nativeQuery = true)
+    List<TodoUserChecksum> findUserChecksums(@Param("maxRowId") long maxRowId);
+}
@@ -0,0 +1,16 @@
+package com.tapqyr.analytics.repository;
+
+/**
+ * Per-user fingerprint of the todo columns the in-memory store keeps. Completing, re-prioritising,
+ * re-dating or deleting a todo changes it even though the todos table has no updatedAt column.
+ */
+public interface TodoUserChecksum {
+
+    String getUserId();
+
+    long getTodoCount();
+
+    long getRowChecksum();
+
+    long getDueChecksum();
+}
@@ -0,0 +1,9 @@
+package com.tapqyr.analytics.repository;
+
+// Completion counts for one user, joined with the user's name and email
+public record UserCompletionRate(String userId, Long completedCount, Long totalCount, String userName, String userEmail) {
+
+    public double completionRate() {
+        return totalCount > 0 ? (double) completedCount / totalCount : 0.0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.tapqyr.analytics.repository;
+
+import java.time.LocalDateTime;
+
+// Which of a user's memory sections are populated, without loading the JSON columns themselves
+public record UserMemoryFlags(String userId, LocalDateTime updatedAt, boolean hasTaskPreferences,
+                              boolean hasWorkPatterns, boolean hasInteractionHistory, boolean hasUserPersona) {
+}
@@ -1,22 +1,88 @@
 package com.tapqyr.analytics.repository;
 
 import com.tapqyr.analytics.model.UserMemory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserMemoryRepository extends JpaRepository<UserMemory, String> {
     
+    String FLAGS = "new com.tapqyr.analytics.repository.UserMemoryFlags(m.userId, m.updatedAt, " +
+           "CASE WHEN m.taskPreferences IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN m.workPatterns IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN m.interactionHistory IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN m.userPersona IS NOT NULL THEN true ELSE false END)";
+    
+    // Entity queries are read-only: the JSON columns they load are never snapshotted for dirty checking
+    
     // Find user memory by user ID
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     Optional<UserMemory> findByUserId(String userId);
     
     // Find recently updated memories
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<UserMemory> findByUpdatedAtAfter(LocalDateTime timestamp);
     
     // Find memories that contain specific text patterns
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<UserMemory> findByMemoryTextContaining(String pattern);
-} 
\ No newline at end of file
+    
+    // Populated-section flags for the given users' memories; users without a memory have no row
+    @Query("SELECT " + FLAGS + " FROM UserMemory m WHERE m.userId IN :userIds")
+    List<UserMemoryFlags> findFlagsByUserIdIn(@Param("userIds") Collection<String> userIds);
+    
+    @Query("SELECT MAX(m.updatedAt) FROM UserMemory m")
+    LocalDateTime findMaxUpdatedAt();
+    
+    // User ids and updatedAt of memories changed after the given time, without loading the JSON columns
+    @Query("SELECT m.userId, m.updatedAt FROM UserMemory m WHERE m.updatedAt > :since")
+    List<Object[]> findUserIdsUpdatedAfter(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT " + FLAGS + " FROM UserMemory m")
+    List<UserMemoryFlags> findAllFlags();
+    
+    // User id, updatedAt and memory text of memories changed at or after the given time, without the JSON
+    // columns, read lazily; callers must close the stream
+    @Query("SELECT m.userId, m.updatedAt, m.memoryText FROM UserMemory m WHERE m.updatedAt >= :since")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Object[]> streamMemoryTextsUpdatedSince(@Param("since") LocalDateTime since);
+    
+    // Same columns for memories whose text contains the term
+    @Query("SELECT m.userId, m.updatedAt, m.memoryText FROM UserMemory m WHERE m.memoryText LIKE CONCAT('%', :term, '%')")
+    List<Object[]> findMemoryTextsContaining(@Param("term") String term);
+    
+    @Query("SELECT m.userId, m.updatedAt, m.memoryText FROM UserMemory m WHERE m.userId IN :userIds")
+    List<Object[]> findMemoryTextsByUserIdIn(@Param("userIds") Collection<String> userIds);
+    
+    @Query("SELECT m.userId FROM UserMemory m")
+    List<String> findAllUserIds();
+    
+    String JSON_COLUMNS = "m.userId, m.updatedAt, m.taskPreferences, m.workPatterns, m.interactionHistory, m.userPersona";
+    
+    // User id, updatedAt and the four JSON columns of memories changed at or after the given time, read lazily;
+    // callers must close the stream
+    @Query("SELECT " + JSON_COLUMNS + " FROM UserMemory m WHERE m.updatedAt >= :since")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"))
+    Stream<Object[]> streamJsonColumnsUpdatedSince(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT " + JSON_COLUMNS + " FROM UserMemory m WHERE m.userId = :userId")
+    List<Object[]> findJsonColumnsByUserId(@Param("userId") String userId);
+    
+    @Query("SELECT " + JSON_COLUMNS + " FROM UserMemory m WHERE m.userId IN :userIds")
+    List<Object[]> findJsonColumnsByUserIdIn(@Param("userIds") Collection<String> userIds);
+    
+    // Inclusive bound, so rows sharing the previous watermark's millisecond are not missed; callers upsert
+    @Query("SELECT " + FLAGS + " FROM UserMemory m WHERE m.updatedAt >= :since")
+    List<UserMemoryFlags> findFlagsUpdatedSince(@Param("since") LocalDateTime since);
+}
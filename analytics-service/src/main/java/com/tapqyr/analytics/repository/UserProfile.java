@@ -0,0 +1,9 @@
+package com.tapqyr.analytics.repository;
+
+import java.time.LocalDateTime;
+
+// The user columns analytics read, with the free-text profile fields reduced to whether they are filled in
+public record UserProfile(String id, String name, String email, LocalDateTime createdAt, LocalDateTime updatedAt,
+                          LocalDateTime lastLogin, Boolean onboardingComplete, boolean hasWorkDescription,
+                          boolean hasShortTermGoals, boolean hasLongTermGoals, boolean hasOtherContext) {
+}
@@ -1,29 +1,123 @@
 package com.tapqyr.analytics.repository;
 
 import com.tapqyr.analytics.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
     
+    // Entity lookups are read-only, so Hibernate keeps no snapshots of loaded users and never dirty-checks them
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<User> findAll();
+    
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    Optional<User> findById(String id);
+    
     // Find users by onboarding status
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<User> findByOnboardingComplete(Boolean onboardingComplete);
     
     // Find users created within a date range
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<User> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     
     // Find users by last login date
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<User> findByLastLoginBetween(LocalDateTime start, LocalDateTime end);
     
     // Count users by date range
     Long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     
-    // Custom query to find users with most todos
-    @Query("SELECT u FROM User u JOIN Todo t ON u.id = t.userId GROUP BY u.id ORDER BY COUNT(t.id) DESC")
-    List<User> findUsersByTodoCount();
-} 
\ No newline at end of file
+    Long countByLastLoginBetween(LocalDateTime start, LocalDateTime end);
+    
+    String TODO_TOTALS = "new com.tapqyr.analytics.repository.UserTodoTotals(u.id, u.name, COUNT(t.id), " +
+           "COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END), " +
+           "COUNT(CASE WHEN t.isAIGenerated = true THEN 1 ELSE NULL END)) " +
+           "FROM User u JOIN Todo t ON u.id = t.userId GROUP BY u.id, u.name ";
+    
+    // Leaderboard pages: users with todos ranked best first, ties by user ID, starting after the keyset
+    // position (:numerator / :denominator, :after) of the previous page's last user
+    @Query("SELECT " + TODO_TOTALS +
+           "HAVING COUNT(t.id) * :denominator < :numerator " +
+           "OR (COUNT(t.id) * :denominator = :numerator AND u.id > :after) " +
+           "ORDER BY COUNT(t.id) DESC, u.id")
+    List<UserTodoTotals> findUsersByTodoCount(@Param("numerator") long numerator, @Param("denominator") long denominator,
+                                              @Param("after") String after, Limit limit);
+    
+    @Query("SELECT " + TODO_TOTALS +
+           "HAVING COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END) * :denominator < :numerator * COUNT(t.id) " +
+           "OR (COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END) * :denominator = :numerator * COUNT(t.id) " +
+           "AND u.id > :after) " +
+           "ORDER BY COUNT(CASE WHEN t.completed = true THEN 1 ELSE NULL END) * 1.0 / COUNT(t.id) DESC, u.id")
+    List<UserTodoTotals> findUsersByCompletionRate(@Param("numerator") long numerator, @Param("denominator") long denominator,
+                                                   @Param("after") String after, Limit limit);
+    
+    @Query("SELECT " + TODO_TOTALS +
+           "HAVING COUNT(CASE WHEN t.isAIGenerated = true THEN 1 ELSE NULL END) * :denominator < :numerator * COUNT(t.id) " +
+           "OR (COUNT(CASE WHEN t.isAIGenerated = true THEN 1 ELSE NULL END) * :denominator = :numerator * COUNT(t.id) " +
+           "AND u.id > :after) " +
+           "ORDER BY COUNT(CASE WHEN t.isAIGenerated = true THEN 1 ELSE NULL END) * 1.0 / COUNT(t.id) DESC, u.id")
+    List<UserTodoTotals> findUsersByAiShare(@Param("numerator") long numerator, @Param("denominator") long denominator,
+                                            @Param("after") String after, Limit limit);
+    
+    // Id and display name only, without loading full user rows
+    @Query("SELECT u.id, u.name FROM User u")
+    List<Object[]> findAllIdAndName();
+    
+    @Query("SELECT u.id, u.name FROM User u WHERE u.id IN :ids")
+    List<Object[]> findIdAndNameByIdIn(@Param("ids") Collection<String> ids);
+    
+    @Query("SELECT MAX(u.updatedAt) FROM User u")
+    LocalDateTime findMaxUpdatedAt();
+    
+    // Ids and updatedAt of users changed after the given time
+    @Query("SELECT u.id, u.updatedAt FROM User u WHERE u.updatedAt > :since")
+    List<Object[]> findIdsUpdatedAfter(@Param("since") LocalDateTime since);
+    
+    // Id, createdAt, lastLogin and updatedAt of users changed at or after the given time, read lazily for cohort
+    // retention; callers must close the stream
+    @Query("SELECT u.id, u.createdAt, u.lastLogin, u.updatedAt FROM User u WHERE u.updatedAt >= :since")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Object[]> streamCohortRowsUpdatedSince(@Param("since") LocalDateTime since);
+    
+    // Id, createdAt, lastLogin and updatedAt of users who signed up at or after the given time, read lazily for
+    // cohort retention; callers must close the stream
+    @Query("SELECT u.id, u.createdAt, u.lastLogin, u.updatedAt FROM User u WHERE u.createdAt >= :since")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Object[]> streamCohortRowsCreatedSince(@Param("since") LocalDateTime since);
+    
+    String PROFILE = "new com.tapqyr.analytics.repository.UserProfile(u.id, u.name, u.email, u.createdAt, " +
+           "u.updatedAt, u.lastLogin, u.onboardingComplete, " +
+           "CASE WHEN u.workDescription IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN u.shortTermGoals IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN u.longTermGoals IS NOT NULL THEN true ELSE false END, " +
+           "CASE WHEN u.otherContext IS NOT NULL THEN true ELSE false END)";
+    
+    @Query("SELECT " + PROFILE + " FROM User u")
+    List<UserProfile> findAllProfiles();
+    
+    @Query("SELECT " + PROFILE + " FROM User u WHERE u.id = :id")
+    Optional<UserProfile> findProfileById(@Param("id") String id);
+    
+    @Query("SELECT " + PROFILE + " FROM User u WHERE u.id IN :ids")
+    List<UserProfile> findProfilesByIdIn(@Param("ids") Collection<String> ids);
+    
+    // Inclusive bound, so rows sharing the previous watermark's millisecond are not missed; callers upsert
+    @Query("SELECT " + PROFILE + " FROM User u WHERE u.updatedAt >= :since")
+    List<UserProfile> findProfilesUpdatedSince(@Param("since") LocalDateTime since);
+}
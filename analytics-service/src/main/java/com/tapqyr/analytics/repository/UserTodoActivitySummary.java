@@ -0,0 +1,7 @@
+package com.tapqyr.analytics.repository;
+
+// Activity counts for one user, from a query grouped by userId
+public interface UserTodoActivitySummary extends TodoActivitySummary {
+
+    String getUserId();
+}
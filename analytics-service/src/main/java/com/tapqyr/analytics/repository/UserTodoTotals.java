@@ -0,0 +1,13 @@
+package com.tapqyr.analytics.repository;
+
+// Todo totals for one user with the user's name, as ranked by the leaderboard
+public record UserTodoTotals(String userId, String userName, Long todoCount, Long completedCount, Long aiGeneratedCount) {
+
+    public double completionRate() {
+        return todoCount > 0 ? (double) completedCount / todoCount : 0.0;
+    }
+
+    public double aiGeneratedShare() {
+        return todoCount > 0 ? (double) aiGeneratedCount / todoCount : 0.0;
+    }
+}
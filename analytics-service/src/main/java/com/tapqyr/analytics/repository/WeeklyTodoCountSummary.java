@@ -0,0 +1,9 @@
+package com.tapqyr.analytics.repository;
+
+// Todo counts for one user and report period: 0 the report week, 1 the week before, 2 everything older
+public interface WeeklyTodoCountSummary extends TodoCountSummary {
+
+    String getUserId();
+
+    int getPeriod();
+}
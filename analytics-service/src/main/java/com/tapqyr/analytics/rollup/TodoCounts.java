@@ -0,0 +1,31 @@
+package com.tapqyr.analytics.rollup;
+
+import com.tapqyr.analytics.repository.TodoCountSummary;
+
+// Additive todo counters shared by rollup rows and live range queries
+public record TodoCounts(long total, long completed, long aiGenerated, long withDueDate,
+                         long lowPriority, long mediumPriority, long highPriority) {
+
+    public static final TodoCounts ZERO = new TodoCounts(0, 0, 0, 0, 0, 0, 0);
+
+    public static TodoCounts of(TodoCountSummary summary) {
+        return new TodoCounts(summary.getTotalCount(), summary.getCompletedCount(), summary.getAiGeneratedCount(),
+                summary.getWithDueDateCount(), summary.getLowPriorityCount(), summary.getMediumPriorityCount(),
+                summary.getHighPriorityCount());
+    }
+
+    public TodoCounts plus(TodoCounts other) {
+        return new TodoCounts(total + other.total, completed + other.completed, aiGenerated + other.aiGenerated,
+                withDueDate + other.withDueDate, lowPriority + other.lowPriority,
+                mediumPriority + other.mediumPriority, highPriority + other.highPriority);
+    }
+
+    public long countForPriority(String priority) {
+        return switch (priority) {
+            case "low" -> lowPriority;
+            case "medium" -> mediumPriority;
+            case "high" -> highPriority;
+            default -> 0L;
+        };
+    }
+}
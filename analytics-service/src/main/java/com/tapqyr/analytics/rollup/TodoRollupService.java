@@ -0,0 +1,218 @@
+package com.tapqyr.analytics.rollup;
+
+import com.tapqyr.analytics.repository.DailyTodoChecksum;
+import com.tapqyr.analytics.repository.DailyTodoCountSummary;
+import com.tapqyr.analytics.repository.TodoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Serves todo counts for arbitrary creation-time ranges from daily rollups.
+ * <p>
+ * Whole days before the sealed boundary (the start of the day of the last refresh) are summed from
+ * rollup rows; partial days at the range edges and anything after the boundary are counted live
+ * with one aggregate query each. A refresh re-aggregates only the days touched by todos created
+ * past the watermark, plus a trailing window so completions of recent todos are picked up
+ * (the todos table has no updatedAt column to tail). Older days are reconciled every
+ * {@code analytics.rollup.reconcile-interval-ms}: each day's todo count and row checksum is compared
+ * with the one recorded when the day was rolled up, and the days that differ are re-aggregated.
+ */
+@Service
+@Slf4j
+public class TodoRollupService {
+
+    static final String WATERMARK = "todos.createdAt.watermark";
+    static final String SEALED_THROUGH = "sealedThrough";
+
+    private final TodoRepository todoRepository;
+    private final TodoRollupStore rollupStore;
+
+    @Value("${analytics.rollup.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.rollup.recheck-days:30}")
+    private int recheckDays = 30;
+
+    @Value("${analytics.rollup.reconcile-interval-ms:3600000}")
+    private long reconcileIntervalMs = 3600000;
+
+    private long lastReconciled;
+
+    // First day not covered by rollup rows; null until the first refresh completes
+    private volatile LocalDate sealedThrough;
+
+    public TodoRollupService(TodoRepository todoRepository, TodoRollupStore rollupStore) {
+        this.todoRepository = todoRepository;
+        this.rollupStore = rollupStore;
+        this.sealedThrough = rollupStore.readState(SEALED_THROUGH).map(LocalDate::parse).orElse(null);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.rollup.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        Long watermark = rollupStore.readState(WATERMARK).map(Long::valueOf).orElse(null);
+        LocalDate previouslySealed = rollupStore.readState(SEALED_THROUGH).map(LocalDate::parse).orElse(null);
+        Long newestCreatedAt = todoRepository.findMaxCreatedAt();
+
+        LocalDate from;
+        if (watermark == null || previouslySealed == null) {
+            // First build covers the whole history
+            Long oldest = todoRepository.findMinCreatedAtAfter(Long.MIN_VALUE);
+            from = oldest == null ? today : toLocalDate(oldest);
+            lastReconciled = started;
+        } else {
+            from = previouslySealed.isBefore(today.minusDays(recheckDays)) ? previouslySealed : today.minusDays(recheckDays);
+            Long oldestTouched = todoRepository.findMinCreatedAtAfter(watermark);
+            if (oldestTouched != null && toLocalDate(oldestTouched).isBefore(from)) {
+                from = toLocalDate(oldestTouched);
+            }
+        }
+
+        if (!from.isBefore(today)) {
+            from = today;
+        }
+        if (started - lastReconciled >= reconcileIntervalMs) {
+            reconcileBefore(from);
+            lastReconciled = started;
+        }
+
+        Map<String, String> state = new HashMap<>();
+        state.put(WATERMARK, String.valueOf(newestCreatedAt == null ? Long.MIN_VALUE : newestCreatedAt));
+        state.put(SEALED_THROUGH, today.toString());
+        int days = rollUp(from, today, state);
+        sealedThrough = today;
+
+        log.debug("Refreshed todo rollups for {} to {} ({} days) in {} ms",
+                from, today, days, System.currentTimeMillis() - started);
+    }
+
+    // Re-aggregates, one run of consecutive days at a time, the days before end whose todos changed since they were rolled up
+    private void reconcileBefore(LocalDate end) {
+        Map<LocalDate, long[]> recorded = rollupStore.findChecksumsBefore(end);
+        TreeSet<LocalDate> stale = new TreeSet<>();
+        for (DailyTodoChecksum checksum : todoRepository.findDailyChecksumsBefore(toMillis(end))) {
+            LocalDate day = LocalDate.parse(checksum.getDay());
+            long[] actual = {checksum.getTodoCount(), checksum.getRowChecksum()};
+            if (!Arrays.equals(actual, recorded.remove(day))) {
+                stale.add(day);
+            }
+        }
+        // Days left over had all of their todos deleted
+        stale.addAll(recorded.keySet());
+        if (stale.isEmpty()) {
+            return;
+        }
+        LocalDate runStart = stale.first();
+        LocalDate runEnd = runStart;
+        for (LocalDate day : stale.tailSet(runStart, false)) {
+            if (!day.equals(runEnd.plusDays(1))) {
+                rollUp(runStart, runEnd.plusDays(1), Map.of());
+                runStart = day;
+            }
+            runEnd = day;
+        }
+        rollUp(runStart, runEnd.plusDays(1), Map.of());
+        log.info("Re-aggregated {} todo rollup days that changed after they were rolled up", stale.size());
+    }
+
+    // Replaces the rollups of days in [from, to) with fresh aggregates and records the state; returns the days with todos
+    private int rollUp(LocalDate from, LocalDate to, Map<String, String> state) {
+        Map<LocalDate, TodoCounts> daily = new HashMap<>();
+        Map<LocalDate, Map<String, TodoCounts>> dailyByUser = new HashMap<>();
+        Map<LocalDate, long[]> checksums = new HashMap<>();
+        if (from.isBefore(to)) {
+            for (DailyTodoCountSummary row : todoRepository.summarizeDailyByUser(toMillis(from), toMillis(to))) {
+                LocalDate day = LocalDate.parse(row.getDay());
+                TodoCounts counts = TodoCounts.of(row);
+                daily.merge(day, counts, TodoCounts::plus);
+                if (row.getUserId() != null) {
+                    dailyByUser.computeIfAbsent(day, d -> new HashMap<>()).put(row.getUserId(), counts);
+                }
+                long[] checksum = checksums.computeIfAbsent(day, d -> new long[2]);
+                checksum[0] += counts.total();
+                checksum[1] += row.getRowChecksum();
+            }
+        }
+        rollupStore.replaceDays(from, to, daily, dailyByUser, checksums, state);
+        return daily.size();
+    }
+
+    // Counts for all todos created in the inclusive range [start, end]
+    public TodoCounts countCreatedBetween(LocalDateTime start, LocalDateTime end) {
+        return countBetween(null, start, end);
+    }
+
+    // Counts for one user's todos created in the inclusive range [start, end]
+    public TodoCounts countCreatedBetween(String userId, LocalDateTime start, LocalDateTime end) {
+        return countBetween(userId, start, end);
+    }
+
+    private TodoCounts countBetween(String userId, LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            return TodoCounts.ZERO;
+        }
+        long startMillis = toMillis(start);
+        long endMillis = toMillis(end);
+
+        LocalDate sealed = enabled ? sealedThrough : null;
+        if (sealed == null) {
+            return live(userId, startMillis, endMillis);
+        }
+
+        // Whole days inside the range that rollups can answer
+        LocalDate firstFullDay = toMillis(start.toLocalDate()) == startMillis
+                ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+        LocalDate endDay = end.toLocalDate();
+        LocalDate fullDaysEnd = toMillis(endDay.plusDays(1)) - 1 <= endMillis ? endDay.plusDays(1) : endDay;
+        if (fullDaysEnd.isAfter(sealed)) {
+            fullDaysEnd = sealed;
+        }
+        if (!firstFullDay.isBefore(fullDaysEnd)) {
+            return live(userId, startMillis, endMillis);
+        }
+
+        TodoCounts counts = userId == null
+                ? rollupStore.sumDays(firstFullDay, fullDaysEnd)
+                : rollupStore.sumUserDays(userId, firstFullDay, fullDaysEnd);
+        if (startMillis < toMillis(firstFullDay)) {
+            counts = counts.plus(live(userId, startMillis, toMillis(firstFullDay) - 1));
+        }
+        if (toMillis(fullDaysEnd) <= endMillis) {
+            counts = counts.plus(live(userId, toMillis(fullDaysEnd), endMillis));
+        }
+        return counts;
+    }
+
+    private TodoCounts live(String userId, long startMillis, long endMillis) {
+        return TodoCounts.of(userId == null
+                ? todoRepository.summarizeCreatedBetween(startMillis, endMillis)
+                : todoRepository.summarizeByUserIdCreatedBetween(userId, startMillis, endMillis));
+    }
+
+    private static LocalDate toLocalDate(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long toMillis(LocalDate day) {
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,259 @@
+package com.tapqyr.analytics.rollup;
+
+import com.tapqyr.analytics.config.SqliteDataSourceConfig;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Daily todo rollups and weekly report snapshots kept in an SQLite file owned by the analytics service,
+ * separate from the Prisma-managed database so backend migrations never see these tables.
+ * <p>
+ * The file runs in WAL mode with a single pooled writer connection, so refreshes are serialized
+ * in the pool instead of contending on SQLite's write lock, and a separate pool of read-only
+ * connections serves range sums concurrently with a refresh.
+ */
+@Component
+public class TodoRollupStore implements DisposableBean {
+
+    private static final String COUNT_COLUMNS =
+            "total, completed, ai_generated, with_due_date, low_priority, medium_priority, high_priority";
+    private static final String SUM_COLUMNS =
+            "COALESCE(SUM(total), 0), COALESCE(SUM(completed), 0), COALESCE(SUM(ai_generated), 0), " +
+            "COALESCE(SUM(with_due_date), 0), COALESCE(SUM(low_priority), 0), " +
+            "COALESCE(SUM(medium_priority), 0), COALESCE(SUM(high_priority), 0)";
+
+    private static final RowMapper<TodoCounts> COUNTS_MAPPER = (rs, rowNum) -> new TodoCounts(
+            rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7));
+
+    // Weekly snapshots hold the counters three times: the week, the week before and all time through the week
+    private static final String WEEK_COUNT_COLUMNS = prefixed("week_") + ", " + prefixed("prev_") + ", " + prefixed("all_");
+
+    private static final RowMapper<UserWeekCounts> WEEK_COUNTS_MAPPER = (rs, rowNum) -> new UserWeekCounts(
+            rs.getString(1),
+            new TodoCounts(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8)),
+            new TodoCounts(rs.getLong(9), rs.getLong(10), rs.getLong(11), rs.getLong(12), rs.getLong(13), rs.getLong(14), rs.getLong(15)),
+            new TodoCounts(rs.getLong(16), rs.getLong(17), rs.getLong(18), rs.getLong(19), rs.getLong(20), rs.getLong(21), rs.getLong(22)));
+
+    private final HikariDataSource writerDataSource;
+    private final HikariDataSource readerDataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate readerJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public TodoRollupStore(@Value("${analytics.rollup.db-path:data/analytics-rollups.db}") String dbPath,
+                           @Value("${analytics.rollup.reader-pool-size:4}") int readerPoolSize,
+                           @Value("${analytics.sqlite.busy-timeout-ms:5000}") int busyTimeoutMs,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        File parent = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        String url = "jdbc:sqlite:" + dbPath;
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(busyTimeoutMs);
+        SQLiteDataSource sqliteDataSource = new SQLiteDataSource(config);
+        sqliteDataSource.setUrl(url);
+        HikariConfig writerConfig = new HikariConfig();
+        writerConfig.setDataSource(sqliteDataSource);
+        writerConfig.setPoolName("rollup-writer");
+        writerConfig.setMaximumPoolSize(1);
+        this.writerDataSource = new HikariDataSource(writerConfig);
+
+        this.jdbcTemplate = new JdbcTemplate(writerDataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(writerDataSource));
+        createSchema();
+
+        // Read-only connections can only open the file once the writer has created it
+        this.readerDataSource = SqliteDataSourceConfig.readerPool(url, "rollup-readers", readerPoolSize, true, busyTimeoutMs);
+        this.readerJdbcTemplate = new JdbcTemplate(readerDataSource);
+
+        // These pools are not DataSource beans, so Boot's Hikari metrics binder does not see them
+        meterRegistry.ifAvailable(registry -> {
+            writerDataSource.setMetricRegistry(registry);
+            readerDataSource.setMetricRegistry(registry);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        readerDataSource.close();
+        writerDataSource.close();
+    }
+
+    private void createSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS todo_daily_rollups (" +
+                "day TEXT PRIMARY KEY, total INTEGER NOT NULL, completed INTEGER NOT NULL, " +
+                "ai_generated INTEGER NOT NULL, with_due_date INTEGER NOT NULL, low_priority INTEGER NOT NULL, " +
+                "medium_priority INTEGER NOT NULL, high_priority INTEGER NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS todo_user_daily_rollups (" +
+                "user_id TEXT NOT NULL, day TEXT NOT NULL, total INTEGER NOT NULL, completed INTEGER NOT NULL, " +
+                "ai_generated INTEGER NOT NULL, with_due_date INTEGER NOT NULL, low_priority INTEGER NOT NULL, " +
+                "medium_priority INTEGER NOT NULL, high_priority INTEGER NOT NULL, PRIMARY KEY (user_id, day))");
+        // Fingerprint of the todos each day's rollups were built from; days rolled up before it existed have none
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS todo_daily_checksums (" +
+                "day TEXT PRIMARY KEY, todo_count INTEGER NOT NULL, row_checksum INTEGER NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS weekly_report_weeks (" +
+                "week_start TEXT PRIMARY KEY, computed_at INTEGER NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS weekly_report_snapshots (" +
+                "week_start TEXT NOT NULL, user_id TEXT NOT NULL, " +
+                WEEK_COUNT_COLUMNS.replace(",", " INTEGER NOT NULL,") + " INTEGER NOT NULL, " +
+                "PRIMARY KEY (week_start, user_id))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS rollup_state (name TEXT PRIMARY KEY, value TEXT NOT NULL)");
+    }
+
+    public Optional<String> readState(String name) {
+        List<String> values = jdbcTemplate.queryForList("SELECT value FROM rollup_state WHERE name = ?", String.class, name);
+        return values.stream().findFirst();
+    }
+
+    /**
+     * Replace every rollup row and checksum ({todo count, row checksum}) for days in [from, to) and record
+     * the new refresh state in the same transaction.
+     */
+    public void replaceDays(LocalDate from, LocalDate to, Map<LocalDate, TodoCounts> daily,
+                            Map<LocalDate, Map<String, TodoCounts>> dailyByUser, Map<LocalDate, long[]> checksums,
+                            Map<String, String> state) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM todo_daily_rollups WHERE day >= ? AND day < ?", from.toString(), to.toString());
+            jdbcTemplate.update("DELETE FROM todo_user_daily_rollups WHERE day >= ? AND day < ?", from.toString(), to.toString());
+            jdbcTemplate.update("DELETE FROM todo_daily_checksums WHERE day >= ? AND day < ?", from.toString(), to.toString());
+
+            jdbcTemplate.batchUpdate("INSERT INTO todo_daily_rollups (day, " + COUNT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    daily.entrySet().stream()
+                            .map(e -> row(e.getValue(), e.getKey().toString()))
+                            .toList());
+            jdbcTemplate.batchUpdate("INSERT INTO todo_user_daily_rollups (user_id, day, " + COUNT_COLUMNS + ") " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    dailyByUser.entrySet().stream()
+                            .flatMap(day -> day.getValue().entrySet().stream()
+                                    .map(user -> row(user.getValue(), user.getKey(), day.getKey().toString())))
+                            .toList());
+            jdbcTemplate.batchUpdate("INSERT INTO todo_daily_checksums (day, todo_count, row_checksum) VALUES (?, ?, ?)",
+                    checksums.entrySet().stream()
+                            .map(e -> new Object[]{e.getKey().toString(), e.getValue()[0], e.getValue()[1]})
+                            .toList());
+
+            state.forEach((name, value) -> jdbcTemplate.update(
+                    "INSERT INTO rollup_state (name, value) VALUES (?, ?) " +
+                    "ON CONFLICT(name) DO UPDATE SET value = excluded.value", name, value));
+        });
+    }
+
+    // {todo count, row checksum} recorded for each day before the given one
+    public Map<LocalDate, long[]> findChecksumsBefore(LocalDate to) {
+        Map<LocalDate, long[]> checksums = new HashMap<>();
+        jdbcTemplate.query("SELECT day, todo_count, row_checksum FROM todo_daily_checksums WHERE day < ?",
+                rs -> {
+                    checksums.put(LocalDate.parse(rs.getString(1)), new long[]{rs.getLong(2), rs.getLong(3)});
+                }, to.toString());
+        return checksums;
+    }
+
+    // Sum of the global rollup rows for days in [from, to)
+    public TodoCounts sumDays(LocalDate from, LocalDate to) {
+        return readerJdbcTemplate.queryForObject("SELECT " + SUM_COLUMNS + " FROM todo_daily_rollups WHERE day >= ? AND day < ?",
+                COUNTS_MAPPER, from.toString(), to.toString());
+    }
+
+    // Sum of one user's rollup rows for days in [from, to)
+    public TodoCounts sumUserDays(String userId, LocalDate from, LocalDate to) {
+        return readerJdbcTemplate.queryForObject("SELECT " + SUM_COLUMNS + " FROM todo_user_daily_rollups " +
+                        "WHERE user_id = ? AND day >= ? AND day < ?",
+                COUNTS_MAPPER, userId, from.toString(), to.toString());
+    }
+
+    /**
+     * Replace the snapshots of one report week, record the week as computed and drop weeks starting
+     * before {@code dropBefore}, in one transaction. Users absent from {@code reports} had no todos
+     * through the end of the week.
+     */
+    public void replaceWeeklyReports(LocalDate weekStart, List<UserWeekCounts> reports, LocalDate dropBefore) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM weekly_report_snapshots WHERE week_start = ? OR week_start < ?",
+                    weekStart.toString(), dropBefore.toString());
+            jdbcTemplate.update("DELETE FROM weekly_report_weeks WHERE week_start = ? OR week_start < ?",
+                    weekStart.toString(), dropBefore.toString());
+
+            String placeholders = ", ?".repeat(21);
+            jdbcTemplate.batchUpdate("INSERT INTO weekly_report_snapshots (week_start, user_id, " + WEEK_COUNT_COLUMNS + ") " +
+                            "VALUES (?, ?" + placeholders + ")",
+                    reports.stream()
+                            .map(report -> {
+                                Object[] row = new Object[23];
+                                row[0] = weekStart.toString();
+                                row[1] = report.userId();
+                                System.arraycopy(row(report.week()), 0, row, 2, 7);
+                                System.arraycopy(row(report.previousWeek()), 0, row, 9, 7);
+                                System.arraycopy(row(report.allTime()), 0, row, 16, 7);
+                                return row;
+                            })
+                            .toList());
+            jdbcTemplate.update("INSERT INTO weekly_report_weeks (week_start, computed_at) VALUES (?, ?)",
+                    weekStart.toString(), System.currentTimeMillis());
+        });
+    }
+
+    // Report weeks with snapshots, oldest first
+    public List<LocalDate> findWeeklyReportWeeks() {
+        return jdbcTemplate.queryForList("SELECT week_start FROM weekly_report_weeks ORDER BY week_start", String.class)
+                .stream()
+                .map(LocalDate::parse)
+                .toList();
+    }
+
+    public Optional<UserWeekCounts> findWeeklyReport(LocalDate weekStart, String userId) {
+        return readerJdbcTemplate.query("SELECT user_id, " + WEEK_COUNT_COLUMNS + " FROM weekly_report_snapshots " +
+                        "WHERE week_start = ? AND user_id = ?",
+                WEEK_COUNTS_MAPPER, weekStart.toString(), userId).stream().findFirst();
+    }
+
+    // One keyset page of a week's snapshots ordered by user ID, starting after the given ID
+    public List<UserWeekCounts> findWeeklyReportsAfter(LocalDate weekStart, String after, int limit) {
+        return readerJdbcTemplate.query("SELECT user_id, " + WEEK_COUNT_COLUMNS + " FROM weekly_report_snapshots " +
+                        "WHERE week_start = ? AND user_id > ? ORDER BY user_id LIMIT ?",
+                WEEK_COUNTS_MAPPER, weekStart.toString(), after, limit);
+    }
+
+    private static String prefixed(String prefix) {
+        return Arrays.stream(COUNT_COLUMNS.split(", "))
+                .map(column -> prefix + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static Object[] row(TodoCounts counts, Object... keys) {
+        Object[] row = new Object[keys.length + 7];
+        System.arraycopy(keys, 0, row, 0, keys.length);
+        int i = keys.length;
+        row[i++] = counts.total();
+        row[i++] = counts.completed();
+        row[i++] = counts.aiGenerated();
+        row[i++] = counts.withDueDate();
+        row[i++] = counts.lowPriority();
+        row[i++] = counts.mediumPriority();
+        row[i] = counts.highPriority();
+        return row;
+    }
+}
@@ -0,0 +1,5 @@
+package com.tapqyr.analytics.rollup;
+
+// One user's counts for a report week, the week before it and all todos created through the end of it
+public record UserWeekCounts(String userId, TodoCounts week, TodoCounts previousWeek, TodoCounts allTime) {
+}
@@ -0,0 +1,178 @@
+package com.tapqyr.analytics.search;
+
+import com.tapqyr.analytics.dto.MemorySearchHit;
+import com.tapqyr.analytics.memory.MemoryTailer;
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked search over user memory text, answered from the {@link MemorySearchStore} FTS5 index.
+ * <p>
+ * The index is brought up to date every {@code analytics.memory-search.refresh-interval-ms} by a
+ * {@link MemoryTailer}, whose watermark is stored with the index. The index file persists across restarts
+ * and is rebuilt when it was built from a different database. Until its first build completes, searches
+ * scan memories with LIKE and rank by term occurrences.
+ */
+@Service
+@Slf4j
+public class MemorySearchService {
+
+    static final String WATERMARK = "memories.updatedAt.watermark";
+    static final String SOURCE = "source.url";
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    // Upper bounds for one search
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_TERMS = 16;
+
+    // Memories indexed per write transaction; memory text can be large
+    private static final int UPSERT_BATCH_SIZE = 200;
+
+    // Characters of context either side of the first match in scanned snippets
+    private static final int SNIPPET_CONTEXT = 60;
+
+    private final UserMemoryRepository userMemoryRepository;
+    private final MemorySearchStore searchStore;
+    private final MemoryTailer tailer;
+
+    @Value("${analytics.memory-search.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.memory-search.reconcile-interval-ms:60000}")
+    private long reconcileIntervalMs = 60000;
+
+    private volatile boolean ready;
+
+    public MemorySearchService(UserMemoryRepository userMemoryRepository, MemorySearchStore searchStore,
+                               @Value("${spring.datasource.url}") String sourceUrl) {
+        this.userMemoryRepository = userMemoryRepository;
+        this.searchStore = searchStore;
+        if (!sourceUrl.equals(searchStore.readState(SOURCE).orElse(null))) {
+            // Memories indexed from another database would be served as this one's; start over
+            searchStore.clear();
+            searchStore.upsert(List.of(), Map.of(SOURCE, sourceUrl));
+        }
+        LocalDateTime watermark = searchStore.readState(WATERMARK).map(LocalDateTime::parse).orElse(null);
+        this.tailer = new MemoryTailer(userMemoryRepository, UPSERT_BATCH_SIZE);
+        this.tailer.reset(watermark);
+        this.ready = watermark != null;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.memory-search.refresh-interval-ms:5000}")
+    @Transactional(readOnly = true)
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int[] read = {0};
+        List<Object[]> batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+        tailer.tail(userMemoryRepository::streamMemoryTextsUpdatedSince, memory -> (LocalDateTime) memory[1],
+                memory -> {
+                    batch.add(memory);
+                    read[0]++;
+                    if (batch.size() == UPSERT_BATCH_SIZE) {
+                        searchStore.upsert(batch, Map.of());
+                        batch.clear();
+                    }
+                },
+                // The watermark only moves once every batch is in, so an interrupted refresh is read again
+                newest -> searchStore.upsert(batch, Map.of(WATERMARK, newest.toString())));
+
+        tailer.reconcile(reconcileIntervalMs, searchStore.documentCount(), searchStore::indexedUserIds,
+                searchStore::removeUsers,
+                missing -> searchStore.upsert(userMemoryRepository.findMemoryTextsByUserIdIn(missing), Map.of()));
+
+        if (!ready) {
+            ready = true;
+            log.info("Built memory search index over {} memories in {} ms", read[0], System.currentTimeMillis() - started);
+        }
+    }
+
+    // Memories containing every word of the query, best match first
+    public List<MemorySearchHit> search(String query, int offset, int limit) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one word");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int start = Math.max(0, offset);
+        if (isReady()) {
+            // Quoted terms are matched as plain tokens, so user input cannot inject FTS5 operators
+            String matchQuery = terms.stream().map(term -> "\"" + term + "\"").collect(Collectors.joining(" "));
+            return searchStore.search(matchQuery, start, pageSize);
+        }
+        return scan(terms, start, pageSize);
+    }
+
+    private List<MemorySearchHit> scan(List<String> terms, int offset, int limit) {
+        // SQLite's LIKE ignores ASCII case; the remaining terms are checked here
+        String longest = terms.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+        List<MemorySearchHit> hits = new ArrayList<>();
+        for (Object[] memory : userMemoryRepository.findMemoryTextsContaining(longest)) {
+            String text = ((String) memory[2]).toLowerCase(Locale.ROOT);
+            long occurrences = 0;
+            for (String term : terms) {
+                long count = occurrences(text, term);
+                if (count == 0) {
+                    occurrences = 0;
+                    break;
+                }
+                occurrences += count;
+            }
+            if (occurrences > 0) {
+                hits.add(new MemorySearchHit((String) memory[0], occurrences, snippet((String) memory[2], text, terms.get(0)),
+                        (LocalDateTime) memory[1]));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(MemorySearchHit::score).reversed().thenComparing(MemorySearchHit::userId));
+        return hits.subList(Math.min(offset, hits.size()), Math.min(offset + limit, hits.size()));
+    }
+
+    private static List<String> terms(String query) {
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = TERM.matcher(query == null ? "" : query);
+        while (matcher.find() && terms.size() < MAX_TERMS) {
+            terms.add(matcher.group().toLowerCase(Locale.ROOT));
+        }
+        return terms;
+    }
+
+    private static long occurrences(String text, String term) {
+        long count = 0;
+        for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + term.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    // Text around the first occurrence of the term, with the occurrence bracketed like FTS5 snippets
+    private static String snippet(String text, String lowerText, String term) {
+        // Lower-casing a few characters changes the length; fall back to the lower-cased text then
+        String source = text.length() == lowerText.length() ? text : lowerText;
+        int at = lowerText.indexOf(term);
+        int from = Math.max(0, at - SNIPPET_CONTEXT);
+        int to = Math.min(source.length(), at + term.length() + SNIPPET_CONTEXT);
+        return (from > 0 ? "..." : "") + source.substring(from, at) + "[" + source.substring(at, at + term.length()) + "]"
+                + source.substring(at + term.length(), to) + (to < source.length() ? "..." : "");
+    }
+}
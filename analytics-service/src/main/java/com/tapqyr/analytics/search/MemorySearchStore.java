@@ -0,0 +1,173 @@
+package com.tapqyr.analytics.search;
+
+import com.tapqyr.analytics.config.SqliteDataSourceConfig;
+import com.tapqyr.analytics.dto.MemorySearchHit;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Full-text index of {@code user_memories.memoryText} in an SQLite FTS5 table, kept in a file owned by
+ * the analytics service like the rollups.
+ * <p>
+ * Each memory is one FTS5 row whose rowid is the doc_id of its {@code memory_docs} row, so a changed
+ * memory is replaced by rowid without scanning the index. Text is tokenized with unicode61 and Porter
+ * stemming, and matches are ranked by FTS5's BM25. As with the rollups, a single pooled writer
+ * serializes updates and read-only connections serve searches concurrently.
+ */
+@Component
+public class MemorySearchStore implements DisposableBean {
+
+    private static final RowMapper<MemorySearchHit> HIT_MAPPER = (rs, rowNum) -> new MemorySearchHit(
+            rs.getString(1), rs.getDouble(2), rs.getString(3), parseUpdatedAt(rs.getString(4)));
+
+    private final HikariDataSource writerDataSource;
+    private final HikariDataSource readerDataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate readerJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemorySearchStore(@Value("${analytics.memory-search.db-path:data/analytics-memory-search.db}") String dbPath,
+                             @Value("${analytics.memory-search.reader-pool-size:4}") int readerPoolSize,
+                             @Value("${analytics.sqlite.busy-timeout-ms:5000}") int busyTimeoutMs,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        File parent = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        String url = "jdbc:sqlite:" + dbPath;
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(busyTimeoutMs);
+        SQLiteDataSource sqliteDataSource = new SQLiteDataSource(config);
+        sqliteDataSource.setUrl(url);
+        HikariConfig writerConfig = new HikariConfig();
+        writerConfig.setDataSource(sqliteDataSource);
+        writerConfig.setPoolName("memory-search-writer");
+        writerConfig.setMaximumPoolSize(1);
+        this.writerDataSource = new HikariDataSource(writerConfig);
+
+        this.jdbcTemplate = new JdbcTemplate(writerDataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(writerDataSource));
+        createSchema();
+
+        this.readerDataSource = SqliteDataSourceConfig.readerPool(url, "memory-search-readers", readerPoolSize, true, busyTimeoutMs);
+        this.readerJdbcTemplate = new JdbcTemplate(readerDataSource);
+
+        meterRegistry.ifAvailable(registry -> {
+            writerDataSource.setMetricRegistry(registry);
+            readerDataSource.setMetricRegistry(registry);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        readerDataSource.close();
+        writerDataSource.close();
+    }
+
+    private void createSchema() {
+        jdbcTemplate.execute("CREATE VIRTUAL TABLE IF NOT EXISTS memory_fts USING fts5(" +
+                "memory_text, tokenize = 'porter unicode61 remove_diacritics 2')");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS memory_docs (" +
+                "doc_id INTEGER PRIMARY KEY, user_id TEXT NOT NULL UNIQUE, updated_at TEXT)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS search_state (name TEXT PRIMARY KEY, value TEXT NOT NULL)");
+    }
+
+    public Optional<String> readState(String name) {
+        List<String> values = jdbcTemplate.queryForList("SELECT value FROM search_state WHERE name = ?", String.class, name);
+        return values.stream().findFirst();
+    }
+
+    /**
+     * Index the given memories, as {userId, updatedAt, memoryText} rows, and record the new state in the
+     * same transaction. Memories whose updatedAt matches the indexed one are skipped.
+     */
+    public void upsert(List<Object[]> memories, Map<String, String> state) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Object[] memory : memories) {
+                String userId = (String) memory[0];
+                String updatedAt = memory[1] == null ? null : memory[1].toString();
+                List<Map<String, Object>> existing = jdbcTemplate.queryForList(
+                        "SELECT doc_id, updated_at FROM memory_docs WHERE user_id = ?", userId);
+                long docId;
+                if (existing.isEmpty()) {
+                    jdbcTemplate.update("INSERT INTO memory_docs (user_id, updated_at) VALUES (?, ?)", userId, updatedAt);
+                    docId = jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class);
+                } else {
+                    if (updatedAt != null && updatedAt.equals(existing.get(0).get("updated_at"))) {
+                        continue;
+                    }
+                    docId = ((Number) existing.get(0).get("doc_id")).longValue();
+                    jdbcTemplate.update("UPDATE memory_docs SET updated_at = ? WHERE doc_id = ?", updatedAt, docId);
+                    jdbcTemplate.update("DELETE FROM memory_fts WHERE rowid = ?", docId);
+                }
+                jdbcTemplate.update("INSERT INTO memory_fts (rowid, memory_text) VALUES (?, ?)",
+                        docId, memory[2] == null ? "" : memory[2]);
+            }
+            state.forEach((name, value) -> jdbcTemplate.update(
+                    "INSERT INTO search_state (name, value) VALUES (?, ?) " +
+                    "ON CONFLICT(name) DO UPDATE SET value = excluded.value", name, value));
+        });
+    }
+
+    // Drop the memories of the given users
+    public void removeUsers(Collection<String> userIds) {
+        List<Object[]> users = userIds.stream().map(userId -> new Object[]{userId}).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("DELETE FROM memory_fts WHERE rowid IN (SELECT doc_id FROM memory_docs WHERE user_id = ?)", users);
+            jdbcTemplate.batchUpdate("DELETE FROM memory_docs WHERE user_id = ?", users);
+        });
+    }
+
+    // Users whose memory is in the index
+    public Set<String> indexedUserIds() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT user_id FROM memory_docs", String.class));
+    }
+
+    // Drop every indexed memory and all state, e.g. when the index was built from another database
+    public void clear() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM memory_fts");
+            jdbcTemplate.update("DELETE FROM memory_docs");
+            jdbcTemplate.update("DELETE FROM search_state");
+        });
+    }
+
+    public long documentCount() {
+        return readerJdbcTemplate.queryForObject("SELECT COUNT(*) FROM memory_docs", Long.class);
+    }
+
+    // One page of memories matching an FTS5 query, best BM25 score first
+    public List<MemorySearchHit> search(String matchQuery, int offset, int limit) {
+        return readerJdbcTemplate.query("SELECT d.user_id, -f.rank, snippet(memory_fts, 0, '[', ']', '...', 16), d.updated_at " +
+                        "FROM memory_fts f JOIN memory_docs d ON d.doc_id = f.rowid " +
+                        "WHERE memory_fts MATCH ? ORDER BY f.rank LIMIT ? OFFSET ?",
+                HIT_MAPPER, matchQuery, limit, offset);
+    }
+
+    private static LocalDateTime parseUpdatedAt(String value) {
+        return value == null ? null : LocalDateTime.parse(value);
+    }
+}
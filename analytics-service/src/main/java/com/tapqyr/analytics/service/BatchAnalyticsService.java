@@ -0,0 +1,136 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.dto.ActivityPatterns;
+import com.tapqyr.analytics.dto.BatchUserAnalytics;
+import com.tapqyr.analytics.dto.EngagementMetrics;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.UserMemoryFlags;
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+import com.tapqyr.analytics.repository.UserProfile;
+import com.tapqyr.analytics.repository.UserRepository;
+import com.tapqyr.analytics.repository.UserTodoActivitySummary;
+import com.tapqyr.analytics.store.AnalyticsStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Activity patterns and engagement metrics for many users at once.
+ * <p>
+ * Users whose results are cached are answered from the cache; the rest are computed with one
+ * grouped query per data source (todo counts, users, memory flags) whatever the batch size,
+ * and their results are cached like the single-user endpoints'. Once the {@link AnalyticsStore} is
+ * loaded, misses are computed from memory instead.
+ */
+@Service
+public class BatchAnalyticsService {
+
+    private final UserAnalyticsService userAnalyticsService;
+    private final TodoRepository todoRepository;
+    private final UserRepository userRepository;
+    private final UserMemoryRepository userMemoryRepository;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final AnalyticsStore analyticsStore;
+
+    @Value("${analytics.batch.max-users:500}")
+    private int maxUsers = 500;
+
+    public BatchAnalyticsService(UserAnalyticsService userAnalyticsService, TodoRepository todoRepository,
+                                 UserRepository userRepository, UserMemoryRepository userMemoryRepository,
+                                 AnalyticsCacheService analyticsCacheService, AnalyticsStore analyticsStore) {
+        this.userAnalyticsService = userAnalyticsService;
+        this.todoRepository = todoRepository;
+        this.userRepository = userRepository;
+        this.userMemoryRepository = userMemoryRepository;
+        this.analyticsCacheService = analyticsCacheService;
+        this.analyticsStore = analyticsStore;
+    }
+
+    // Results keyed by user ID in request order; duplicate IDs are answered once
+    public Map<String, BatchUserAnalytics> getUserAnalytics(Collection<String> requestedUserIds) {
+        Set<String> userIds = new LinkedHashSet<>(requestedUserIds);
+        userIds.remove(null);
+        if (userIds.size() > maxUsers) {
+            throw new IllegalArgumentException("At most " + maxUsers + " user IDs can be requested at once");
+        }
+
+        if (analyticsStore.isReady()) {
+            // Per-user lookups through the cached service methods cost no queries
+            Map<String, BatchUserAnalytics> result = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                result.put(userId, new BatchUserAnalytics(userAnalyticsService.getUserActivityPatterns(userId),
+                        userAnalyticsService.getUserEngagementMetrics(userId)));
+            }
+            return result;
+        }
+
+        Map<String, ActivityPatterns> patterns = new HashMap<>();
+        Map<String, EngagementMetrics> engagement = new HashMap<>();
+        Set<String> missingPatterns = new LinkedHashSet<>();
+        Set<String> missingEngagement = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (analyticsCacheService.lookup(AnalyticsCacheService.ACTIVITY_PATTERNS, userId) instanceof ActivityPatterns cached) {
+                patterns.put(userId, cached);
+            } else {
+                missingPatterns.add(userId);
+            }
+            if (analyticsCacheService.lookup(AnalyticsCacheService.ENGAGEMENT_METRICS, userId) instanceof EngagementMetrics cached) {
+                engagement.put(userId, cached);
+            } else {
+                missingEngagement.add(userId);
+            }
+        }
+
+        // Engagement needs each user's todo count, so both miss sets share the todo query
+        Set<String> needTodoCounts = new LinkedHashSet<>(missingPatterns);
+        needTodoCounts.addAll(missingEngagement);
+        Map<String, UserTodoActivitySummary> summaries = new HashMap<>();
+        if (!needTodoCounts.isEmpty()) {
+            for (UserTodoActivitySummary summary : todoRepository.summarizeByUserIdIn(needTodoCounts)) {
+                summaries.put(summary.getUserId(), summary);
+            }
+        }
+
+        for (String userId : missingPatterns) {
+            UserTodoActivitySummary summary = summaries.get(userId);
+            ActivityPatterns computed = summary == null ? ActivityPatterns.EMPTY : userAnalyticsService.buildActivityPatterns(summary);
+            analyticsCacheService.store(AnalyticsCacheService.ACTIVITY_PATTERNS, userId, computed);
+            patterns.put(userId, computed);
+        }
+
+        if (!missingEngagement.isEmpty()) {
+            Map<String, UserProfile> users = new HashMap<>();
+            for (UserProfile user : userRepository.findProfilesByIdIn(missingEngagement)) {
+                users.put(user.id(), user);
+            }
+            Map<String, UserMemoryFlags> memories = new HashMap<>();
+            if (!users.isEmpty()) {
+                for (UserMemoryFlags memory : userMemoryRepository.findFlagsByUserIdIn(users.keySet())) {
+                    memories.put(memory.userId(), memory);
+                }
+            }
+            for (String userId : missingEngagement) {
+                UserProfile user = users.get(userId);
+                UserTodoActivitySummary summary = summaries.get(userId);
+                EngagementMetrics computed = user == null ? EngagementMetrics.USER_NOT_FOUND
+                        : userAnalyticsService.buildEngagementMetrics(user,
+                                summary == null ? 0 : summary.getTotalCount(), memories.get(userId));
+                analyticsCacheService.store(AnalyticsCacheService.ENGAGEMENT_METRICS, userId, computed);
+                engagement.put(userId, computed);
+            }
+        }
+
+        Map<String, BatchUserAnalytics> result = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            result.put(userId, new BatchUserAnalytics(patterns.get(userId), engagement.get(userId)));
+        }
+        return result;
+    }
+}
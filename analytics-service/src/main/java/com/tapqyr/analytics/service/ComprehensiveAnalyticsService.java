@@ -0,0 +1,156 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.store.AnalyticsStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Builds the comprehensive user analytics response with its sections running concurrently.
+ * <p>
+ * The user's todos are read once into a {@link UserTodoSnapshot} that the activity and weekly
+ * sections share, while engagement's user and memory lookups run alongside that read. Each section
+ * has its own timeout; sections that fail, time out or are rejected by the full section pool are
+ * reported under {@code errors} and the rest of the response is still returned. A section that times
+ * out is cancelled, so it no longer holds or waits for a pool thread. Once the {@link AnalyticsStore} is loaded no snapshot is
+ * read and each section is answered from memory.
+ */
+@Service
+@Slf4j
+public class ComprehensiveAnalyticsService {
+
+    public static final String TASK_ANALYTICS = "taskAnalytics";
+    public static final String ENGAGEMENT_METRICS = "engagementMetrics";
+    public static final String WEEKLY_REPORT = "weeklyReport";
+
+    private final UserAnalyticsService userAnalyticsService;
+    private final TodoRepository todoRepository;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final AnalyticsStore analyticsStore;
+    private final AsyncTaskExecutor executor;
+
+    @Value("${analytics.comprehensive.section-timeout-ms:3000}")
+    private long sectionTimeoutMs = 3000;
+
+    public ComprehensiveAnalyticsService(UserAnalyticsService userAnalyticsService, TodoRepository todoRepository,
+                                         AnalyticsCacheService analyticsCacheService, AnalyticsStore analyticsStore,
+                                         @Qualifier("analyticsSectionExecutor") AsyncTaskExecutor executor) {
+        this.userAnalyticsService = userAnalyticsService;
+        this.todoRepository = todoRepository;
+        this.analyticsCacheService = analyticsCacheService;
+        this.analyticsStore = analyticsStore;
+        this.executor = executor;
+    }
+
+    public Map<String, Object> getUserComprehensiveAnalytics(String userId) {
+        if (analyticsStore.isReady()) {
+            // The service's cached methods read the store, so each section is a cache or memory lookup
+            return assemble(section(() -> userAnalyticsService.getUserActivityPatterns(userId)),
+                    section(() -> userAnalyticsService.getUserEngagementMetrics(userId)),
+                    section(() -> userAnalyticsService.getWeeklyUserReport(userId)));
+        }
+
+        String weeklyKey = AnalyticsCacheService.weeklyReportKey(userId);
+        Object cachedPatterns = analyticsCacheService.lookup(AnalyticsCacheService.ACTIVITY_PATTERNS, userId);
+        Object cachedEngagement = analyticsCacheService.lookup(AnalyticsCacheService.ENGAGEMENT_METRICS, userId);
+        Object cachedWeekly = analyticsCacheService.lookup(AnalyticsCacheService.WEEKLY_REPORTS, weeklyKey);
+
+        CompletableFuture<UserTodoSnapshot> snapshot = new CompletableFuture<>();
+
+        // Engagement's own lookups start first; only its todo count waits for the snapshot
+        CompletableFuture<Object> engagement = cachedEngagement != null
+                ? CompletableFuture.completedFuture(cachedEngagement)
+                : section(() -> cache(AnalyticsCacheService.ENGAGEMENT_METRICS, userId,
+                        userAnalyticsService.getUserEngagementMetrics(userId, () -> snapshot.join().size())));
+
+        // The snapshot is read on the calling thread so pool threads never queue behind it
+        if (cachedPatterns == null || cachedEngagement == null || cachedWeekly == null) {
+            try {
+                snapshot.complete(UserTodoSnapshot.of(todoRepository.findSnapshotRowsByUserId(userId)));
+            } catch (RuntimeException e) {
+                snapshot.completeExceptionally(e);
+            }
+        }
+
+        CompletableFuture<Object> patterns = cachedPatterns != null
+                ? CompletableFuture.completedFuture(cachedPatterns)
+                : section(() -> cache(AnalyticsCacheService.ACTIVITY_PATTERNS, userId,
+                        userAnalyticsService.buildActivityPatterns(snapshot.join().summarize())));
+        CompletableFuture<Object> weekly = cachedWeekly != null
+                ? CompletableFuture.completedFuture(cachedWeekly)
+                : section(() -> cache(AnalyticsCacheService.WEEKLY_REPORTS, weeklyKey,
+                        userAnalyticsService.getWeeklyUserReport(userId, snapshot.join())));
+        return assemble(patterns, engagement, weekly);
+    }
+
+    private Map<String, Object> assemble(CompletableFuture<Object> patterns, CompletableFuture<Object> engagement,
+                                         CompletableFuture<Object> weekly) {
+        Map<String, Object> userAnalytics = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        collect(TASK_ANALYTICS, patterns, userAnalytics, errors);
+        collect(ENGAGEMENT_METRICS, engagement, userAnalytics, errors);
+        collect(WEEKLY_REPORT, weekly, userAnalytics, errors);
+        if (!errors.isEmpty()) {
+            userAnalytics.put("partial", true);
+            userAnalytics.put("errors", errors);
+        }
+        return userAnalytics;
+    }
+
+    private CompletableFuture<Object> section(Supplier<Object> supplier) {
+        CompletableFuture<Object> section = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    section.complete(supplier.get());
+                } catch (Throwable e) {
+                    section.completeExceptionally(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            section.completeExceptionally(e);
+            return section;
+        }
+        // orTimeout only completes the future; cancelling drops a queued task and interrupts a running one
+        section.orTimeout(sectionTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((value, e) -> {
+            if (e instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return section;
+    }
+
+    private Object cache(String cacheName, Object key, Object value) {
+        analyticsCacheService.store(cacheName, key, value);
+        return value;
+    }
+
+    private static void collect(String name, CompletableFuture<Object> section,
+                                Map<String, Object> result, Map<String, String> errors) {
+        try {
+            result.put(name, section.join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException nested ? nested.getCause() : e.getCause();
+            String message = cause instanceof TimeoutException ? "timed out"
+                    : cause instanceof TaskRejectedException ? "rejected: too many concurrent requests"
+                    : String.valueOf(cause.getMessage());
+            log.warn("Comprehensive analytics section {} failed: {}", name, message);
+            errors.put(name, message);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.dto.OverdueSummary;
+import com.tapqyr.analytics.dto.UpcomingTodo;
+import com.tapqyr.analytics.dto.UserOverdueCount;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.store.AnalyticsStore;
+import com.tapqyr.analytics.store.DueTodo;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Overdue and coming-due analytics over open todos. Once the {@link AnalyticsStore} is loaded they are
+ * read from its due-date index, whose cost does not grow with the number of overdue todos; until then
+ * each question is one aggregate query.
+ */
+@Service
+public class OverdueAnalyticsService {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    // Upper bounds for listings
+    private static final int MAX_TOP_USERS = 1000;
+    private static final int MAX_UPCOMING = 1000;
+    private static final int MAX_HOURS_AHEAD = 24 * 366;
+
+    private final TodoRepository todoRepository;
+    private final AnalyticsStore analyticsStore;
+
+    public OverdueAnalyticsService(TodoRepository todoRepository, AnalyticsStore analyticsStore) {
+        this.todoRepository = todoRepository;
+        this.analyticsStore = analyticsStore;
+    }
+
+    public OverdueSummary getOverdueSummary(int topUsers) {
+        long now = System.currentTimeMillis();
+        int limit = Math.max(0, Math.min(topUsers, MAX_TOP_USERS));
+        if (analyticsStore.isReady()) {
+            return analyticsStore.overdueSummary(now, limit);
+        }
+
+        long[] aging = new long[OverdueSummary.AGING_LABELS.length];
+        long total = 0;
+        for (Object[] row : todoRepository.countOverdueByAgingBucket(now)) {
+            long count = ((Number) row[1]).longValue();
+            aging[((Number) row[0]).intValue()] = count;
+            total += count;
+        }
+        List<UserOverdueCount> users = new ArrayList<>();
+        if (limit > 0) {
+            for (Object[] row : todoRepository.findTopOverdueUsers(now, limit)) {
+                users.add(new UserOverdueCount((String) row[0], ((Number) row[1]).longValue()));
+            }
+        }
+        return new OverdueSummary(total, OverdueSummary.aging(aging), users);
+    }
+
+    public UserOverdueCount getUserOverdueCount(String userId) {
+        long now = System.currentTimeMillis();
+        long count = analyticsStore.isReady()
+                ? analyticsStore.overdueCount(userId, now)
+                : todoRepository.countOverdueByUserId(userId, now);
+        return new UserOverdueCount(userId, count);
+    }
+
+    // Open todos due within the next hours, soonest first
+    public List<UpcomingTodo> getUpcomingTodos(int hours, int limit) {
+        long now = System.currentTimeMillis();
+        long until = now + Math.max(0, Math.min(hours, MAX_HOURS_AHEAD)) * HOUR_MILLIS;
+        int pageSize = Math.max(1, Math.min(limit, MAX_UPCOMING));
+
+        List<UpcomingTodo> upcoming = new ArrayList<>();
+        if (!analyticsStore.isReady()) {
+            for (Object[] row : todoRepository.findUpcomingDue(now, until, pageSize)) {
+                upcoming.add(new UpcomingTodo((String) row[0], (String) row[1], (String) row[2],
+                        toLocalDateTime(((Number) row[3]).longValue())));
+            }
+            return upcoming;
+        }
+
+        List<DueTodo> due = analyticsStore.upcomingDue(now, until, pageSize);
+        if (due.isEmpty()) {
+            return upcoming;
+        }
+        // The store keeps no text columns; fetch ids and titles of this page only
+        List<Long> rowIds = new ArrayList<>(due.size());
+        for (DueTodo todo : due) {
+            rowIds.add(todo.rowId());
+        }
+        Map<Long, Object[]> details = new HashMap<>();
+        for (Object[] row : todoRepository.findIdAndTitleByRowIdIn(rowIds)) {
+            details.put(((Number) row[0]).longValue(), row);
+        }
+        for (DueTodo todo : due) {
+            Object[] row = details.get(todo.rowId());
+            // Deleted since the store last polled
+            if (row != null) {
+                upcoming.add(new UpcomingTodo((String) row[1], todo.userId(), (String) row[2],
+                        toLocalDateTime(todo.dueDate())));
+            }
+        }
+        return upcoming;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
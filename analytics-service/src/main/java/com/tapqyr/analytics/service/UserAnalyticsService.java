@@ -1,28 +1,57 @@
 package com.tapqyr.analytics.service;
 
-import com.tapqyr.analytics.model.Todo;
-import com.tapqyr.analytics.model.User;
-import com.tapqyr.analytics.model.UserMemory;
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+import com.tapqyr.analytics.dto.ActivityPatterns;
+import com.tapqyr.analytics.dto.EngagementMetrics;
+import com.tapqyr.analytics.dto.Leaderboard;
+import com.tapqyr.analytics.dto.LeaderboardCursor;
+import com.tapqyr.analytics.dto.LeaderboardMetric;
+import com.tapqyr.analytics.dto.SimilarUser;
+import com.tapqyr.analytics.dto.TodoAnalytics;
+import com.tapqyr.analytics.dto.WeeklyReport;
+import com.tapqyr.analytics.repository.TodoActivitySummary;
+import com.tapqyr.analytics.repository.TodoCountSummary;
 import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.UserCompletionRate;
+import com.tapqyr.analytics.repository.UserMemoryFlags;
 import com.tapqyr.analytics.repository.UserMemoryRepository;
+import com.tapqyr.analytics.repository.UserProfile;
 import com.tapqyr.analytics.repository.UserRepository;
+import com.tapqyr.analytics.repository.UserTodoTotals;
+import com.tapqyr.analytics.rollup.TodoCounts;
+import com.tapqyr.analytics.rollup.TodoRollupService;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+import com.tapqyr.analytics.similarity.UserSimilarityService;
+import com.tapqyr.analytics.store.ActivityCounters;
+import com.tapqyr.analytics.store.ActivityEvent;
+import com.tapqyr.analytics.store.ActivityHistogram;
+import com.tapqyr.analytics.store.AnalyticsStore;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -31,11 +60,35 @@ public class UserAnalyticsService {
     private final UserRepository userRepository;
     private final TodoRepository todoRepository;
     private final UserMemoryRepository userMemoryRepository;
+    private final UserSimilarityService userSimilarityService;
+    private final TodoRollupService todoRollupService;
+    private final AnalyticsStore analyticsStore;
+    private final ActivityCounters activityCounters;
     
-    public UserAnalyticsService(UserRepository userRepository, TodoRepository todoRepository, UserMemoryRepository userMemoryRepository) {
+    // Minimum score for a user to count as similar
+    private static final double SIMILARITY_THRESHOLD = 0.5;
+    
+    // Upper bound for keyset-paginated listings
+    private static final int MAX_PAGE_SIZE = 1000;
+    
+    // Activity count windows such as 15m, 1h or 90d
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,6})([mhd])");
+    private static final int MAX_WINDOWS = 16;
+    
+    @Value("${analytics.similarity.index-enabled:true}")
+    private boolean similarityIndexEnabled = true;
+    
+    public UserAnalyticsService(UserRepository userRepository, TodoRepository todoRepository,
+                                UserMemoryRepository userMemoryRepository, UserSimilarityService userSimilarityService,
+                                TodoRollupService todoRollupService, AnalyticsStore analyticsStore,
+                                ActivityCounters activityCounters) {
         this.userRepository = userRepository;
         this.todoRepository = todoRepository;
         this.userMemoryRepository = userMemoryRepository;
+        this.userSimilarityService = userSimilarityService;
+        this.todoRollupService = todoRollupService;
+        this.analyticsStore = analyticsStore;
+        this.activityCounters = activityCounters;
     }
 
     // Get user growth metrics (daily, weekly, monthly)
@@ -43,424 +96,454 @@ public class UserAnalyticsService {
         Map<String, Long> metrics = new HashMap<>();
         
         LocalDateTime now = LocalDateTime.now();
+        boolean fromCounters = activityCounters.isReady();
         
         // Daily - users created in the last 24 hours
         LocalDateTime yesterday = now.minus(1, ChronoUnit.DAYS);
-        Long dailyNewUsers = userRepository.countByCreatedAtBetween(yesterday, now);
+        Long dailyNewUsers = fromCounters ? activityCounters.count(ActivityEvent.SIGNUP, Duration.ofDays(1))
+                : userRepository.countByCreatedAtBetween(yesterday, now);
         metrics.put("dailyNewUsers", dailyNewUsers);
         
         // Weekly - users created in the last 7 days
         LocalDateTime lastWeek = now.minus(7, ChronoUnit.DAYS);
-        Long weeklyNewUsers = userRepository.countByCreatedAtBetween(lastWeek, now);
+        Long weeklyNewUsers = fromCounters ? activityCounters.count(ActivityEvent.SIGNUP, Duration.ofDays(7))
+                : userRepository.countByCreatedAtBetween(lastWeek, now);
         metrics.put("weeklyNewUsers", weeklyNewUsers);
         
         // Monthly - users created in the last 30 days
         LocalDateTime lastMonth = now.minus(30, ChronoUnit.DAYS);
-        Long monthlyNewUsers = userRepository.countByCreatedAtBetween(lastMonth, now);
+        Long monthlyNewUsers = fromCounters ? activityCounters.count(ActivityEvent.SIGNUP, Duration.ofDays(30))
+                : userRepository.countByCreatedAtBetween(lastMonth, now);
         metrics.put("monthlyNewUsers", monthlyNewUsers);
         
         // Total users
-        Long totalUsers = userRepository.count();
+        Long totalUsers = analyticsStore.isReady() ? analyticsStore.userCount() : userRepository.count();
         metrics.put("totalUsers", totalUsers);
         
         return metrics;
     }
     
-    // Get todo completion rate metrics by user
-    public List<Map<String, Object>> getTodoCompletionRateByUser() {
-        List<Object[]> completionRates = todoRepository.findCompletionRateByUser();
+    /**
+     * Signups, logins, todo creations and completions in each trailing window (e.g. 1h, 7d, 90d), keyed by
+     * window as given. Answered from the sliding-window counters once seeded; until then from SQLite, which
+     * has no completion times, so todosCompleted is left out.
+     */
+    public Map<String, Map<String, Long>> getActivityCounts(List<String> windows) {
+        if (windows.isEmpty() || windows.size() > MAX_WINDOWS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_WINDOWS + " windows are required");
+        }
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (String label : windows) {
+            Duration window = parseWindow(label);
+            if (window.compareTo(activityCounters.retention()) > 0) {
+                throw new IllegalArgumentException("Windows are limited to " + activityCounters.retention().toDays() + " days");
+            }
+            Map<String, Long> windowCounts = new LinkedHashMap<>();
+            if (activityCounters.isReady()) {
+                for (ActivityEvent event : ActivityEvent.values()) {
+                    windowCounts.put(event.key(), activityCounters.count(event, window));
+                }
+            } else {
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime start = now.minus(window);
+                windowCounts.put(ActivityEvent.SIGNUP.key(), userRepository.countByCreatedAtBetween(start, now));
+                windowCounts.put(ActivityEvent.LOGIN.key(), userRepository.countByLastLoginBetween(start, now));
+                windowCounts.put(ActivityEvent.TODO_CREATED.key(),
+                        todoRepository.countCreatedBetween(toMillis(start), toMillis(now)));
+            }
+            counts.put(label, windowCounts);
+        }
+        return counts;
+    }
+    
+    private static Duration parseWindow(String label) {
+        Matcher matcher = WINDOW.matcher(label == null ? "" : label.trim());
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new IllegalArgumentException("Invalid window: " + label + " (expected e.g. 15m, 1h or 7d)");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> Duration.ofDays(amount);
+        };
+    }
+    
+    // Every user's completion rate in one response, plus a null-userId row for todos without a user, as the
+    // endpoint answered before it was paginated
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAllTodoCompletionRates() {
         List<Map<String, Object>> result = new ArrayList<>();
-        
-        for (Object[] rate : completionRates) {
-            String userId = (String) rate[0];
-            Long completedCount = (Long) rate[1];
-            Long totalCount = (Long) rate[2];
-            
-            Double completionRate = totalCount > 0 ? (double) completedCount / totalCount : 0.0;
-            
-            Map<String, Object> userCompletionData = new HashMap<>();
-            userCompletionData.put("userId", userId);
-            userCompletionData.put("completedCount", completedCount);
-            userCompletionData.put("totalCount", totalCount);
-            userCompletionData.put("completionRate", completionRate);
-            
-            // Get user details
-            Optional<User> userOpt = userRepository.findById(userId);
-            userOpt.ifPresent(user -> {
-                userCompletionData.put("userName", user.getName());
-                userCompletionData.put("userEmail", user.getEmail());
-            });
-            
-            result.add(userCompletionData);
+        streamTodoCompletionRates(null, result::add);
+        todoRepository.findCompletionRatesWithoutUser().forEach(rate -> result.add(toCompletionRateMap(rate)));
+        return result;
+    }
+    
+    // Get todo completion rate metrics by user, one keyset page at a time (pass the last userId as "after")
+    public List<Map<String, Object>> getTodoCompletionRateByUser(String after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<UserCompletionRate> completionRates = analyticsStore.isReady()
+                ? analyticsStore.completionRatesAfter(after, pageSize)
+                : todoRepository.findCompletionRatesAfter(after == null ? "" : after, Limit.of(pageSize));
+        List<Map<String, Object>> result = new ArrayList<>(completionRates.size());
+        
+        for (UserCompletionRate rate : completionRates) {
+            result.add(toCompletionRateMap(rate));
         }
         
         return result;
     }
     
-    // Get user activity patterns (e.g., most active days/times)
-    public Map<String, Object> getUserActivityPatterns(String userId) {
-        Map<String, Object> patterns = new HashMap<>();
-        
-        // Get all todos for this user
-        List<Todo> userTodos = todoRepository.findByUserId(userId);
-        
-        if (userTodos.isEmpty()) {
-            patterns.put("todoCount", 0);
-            return patterns;
+    // One page of users ranked by todo count, completion rate or AI share; pass the previous page's nextCursor
+    public Leaderboard getLeaderboard(String sortBy, String cursor, int limit) {
+        LeaderboardMetric metric = LeaderboardMetric.of(sortBy);
+        LeaderboardCursor after = cursor == null || cursor.isEmpty() ? metric.first() : LeaderboardCursor.parse(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        
+        List<UserTodoTotals> page;
+        if (analyticsStore.isReady()) {
+            page = analyticsStore.leaderboard(metric, after, pageSize);
+        } else {
+            page = switch (metric) {
+                case TODO_COUNT -> userRepository.findUsersByTodoCount(after.numerator(), after.denominator(),
+                        after.userId(), Limit.of(pageSize));
+                case COMPLETION_RATE -> userRepository.findUsersByCompletionRate(after.numerator(), after.denominator(),
+                        after.userId(), Limit.of(pageSize));
+                case AI_SHARE -> userRepository.findUsersByAiShare(after.numerator(), after.denominator(),
+                        after.userId(), Limit.of(pageSize));
+            };
         }
         
-        patterns.put("todoCount", userTodos.size());
-        
-        // Analyze todo creation patterns by day of week
-        Map<DayOfWeek, Long> todosByDayOfWeek = userTodos.stream()
-                .collect(Collectors.groupingBy(
-                        todo -> todo.getCreatedAt().getDayOfWeek(),
-                        Collectors.counting()
-                ));
-        patterns.put("todosByDayOfWeek", todosByDayOfWeek);
-        
-        // Find most active day
-        Map.Entry<DayOfWeek, Long> mostActiveDay = todosByDayOfWeek.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .orElse(null);
-        
-        if (mostActiveDay != null) {
-            patterns.put("mostActiveDay", mostActiveDay.getKey());
-            patterns.put("mostActiveDayCount", mostActiveDay.getValue());
+        List<Leaderboard.Entry> entries = new ArrayList<>(page.size());
+        for (UserTodoTotals totals : page) {
+            entries.add(Leaderboard.Entry.of(totals));
         }
-        
-        // Calculate completion rate
-        long completedCount = userTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getCompleted())).count();
-        double completionRate = (double) completedCount / userTodos.size();
-        patterns.put("completionRate", completionRate);
-        
-        // Analyze due date patterns
-        Map<String, Long> dueDatePatterns = new HashMap<>();
-        long todosWithDueDate = userTodos.stream().filter(todo -> todo.getDueDate() != null).count();
-        dueDatePatterns.put("withDueDate", todosWithDueDate);
-        dueDatePatterns.put("withoutDueDate", userTodos.size() - todosWithDueDate);
-        patterns.put("dueDatePatterns", dueDatePatterns);
-        
-        // Analyze priority distribution
-        Map<String, Long> priorityDistribution = userTodos.stream()
-                .collect(Collectors.groupingBy(
-                        todo -> todo.getPriority(),
-                        Collectors.counting()
-                ));
-        patterns.put("priorityDistribution", priorityDistribution);
-        
-        // Get AI generated todo stats
-        long aiGeneratedCount = userTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getIsAIGenerated())).count();
-        patterns.put("aiGeneratedCount", aiGeneratedCount);
-        patterns.put("aiGeneratedPercentage", (double) aiGeneratedCount / userTodos.size());
-        
-        return patterns;
+        String nextCursor = page.size() < pageSize ? null
+                : LeaderboardCursor.after(metric, page.get(page.size() - 1)).encode();
+        return new Leaderboard(metric, entries, nextCursor);
+    }
+    
+    // Stream completion rates for every user after the given ID; rows are handed to the sink as they are read
+    @Transactional(readOnly = true)
+    public void streamTodoCompletionRates(String after, Consumer<Map<String, Object>> sink) {
+        if (analyticsStore.isReady()) {
+            // One bounded page at a time; each page is copied under the store's read lock and written outside it
+            String last = after;
+            List<UserCompletionRate> page;
+            do {
+                page = analyticsStore.completionRatesAfter(last, MAX_PAGE_SIZE);
+                page.forEach(rate -> sink.accept(toCompletionRateMap(rate)));
+                if (!page.isEmpty()) {
+                    last = page.get(page.size() - 1).userId();
+                }
+            } while (page.size() == MAX_PAGE_SIZE);
+            return;
+        }
+        try (Stream<UserCompletionRate> completionRates = todoRepository.streamCompletionRatesAfter(after == null ? "" : after)) {
+            completionRates.forEach(rate -> sink.accept(toCompletionRateMap(rate)));
+        }
+    }
+    
+    private Map<String, Object> toCompletionRateMap(UserCompletionRate rate) {
+        Map<String, Object> userCompletionData = new HashMap<>();
+        userCompletionData.put("userId", rate.userId());
+        userCompletionData.put("completedCount", rate.completedCount());
+        userCompletionData.put("totalCount", rate.totalCount());
+        userCompletionData.put("completionRate", rate.completionRate());
+        
+        // Users deleted since their todos were created have no joined details
+        if (rate.userEmail() != null) {
+            userCompletionData.put("userName", rate.userName());
+            userCompletionData.put("userEmail", rate.userEmail());
+        }
+        return userCompletionData;
+    }
+    
+    // Get user activity patterns (e.g., most active days/times)
+    @Cacheable(cacheNames = AnalyticsCacheService.ACTIVITY_PATTERNS, key = "#userId")
+    public ActivityPatterns getUserActivityPatterns(String userId) {
+        if (analyticsStore.isReady()) {
+            return buildActivityPatterns(analyticsStore.summarizeUser(userId));
+        }
+        // All counts come from one aggregate row instead of the user's todo entities
+        return buildActivityPatterns(todoRepository.summarizeByUserId(userId));
+    }
+    
+    // Activity patterns from already aggregated counts
+    public ActivityPatterns buildActivityPatterns(TodoActivitySummary summary) {
+        return ActivityPatterns.of(summary);
+    }
+    
+    // Hour-of-week and day-of-year creation histograms of the user's todos
+    public ActivityHeatmap getUserActivityHeatmap(String userId) {
+        if (analyticsStore.isReady()) {
+            return analyticsStore.userHeatmap(userId);
+        }
+        return toHeatmap(todoRepository.findHeatmapCountsByUserId(userId));
+    }
+    
+    // The same histograms over every todo
+    public ActivityHeatmap getActivityHeatmap() {
+        if (analyticsStore.isReady()) {
+            return analyticsStore.heatmap();
+        }
+        return toHeatmap(todoRepository.findHeatmapCounts());
+    }
+    
+    // Rows of weekday (0 = Sunday), hour, day of the year (from 1) and count
+    private static ActivityHeatmap toHeatmap(List<Object[]> rows) {
+        ActivityHistogram histogram = new ActivityHistogram();
+        for (Object[] row : rows) {
+            DayOfWeek day = DayOfWeek.SUNDAY.plus(((Number) row[0]).intValue());
+            histogram.add(ActivityHeatmap.hourOfWeek(day, ((Number) row[1]).intValue()),
+                    ((Number) row[2]).intValue() - 1, ((Number) row[3]).intValue());
+        }
+        return histogram.toHeatmap();
     }
     
     // Get user engagement metrics
-    public Map<String, Object> getUserEngagementMetrics(String userId) {
-        Map<String, Object> metrics = new HashMap<>();
-        
-        Optional<User> userOpt = userRepository.findById(userId);
+    @Cacheable(cacheNames = AnalyticsCacheService.ENGAGEMENT_METRICS, key = "#userId")
+    public EngagementMetrics getUserEngagementMetrics(String userId) {
+        if (analyticsStore.isReady()) {
+            UserProfile profile = analyticsStore.userProfile(userId);
+            return profile == null ? EngagementMetrics.USER_NOT_FOUND
+                    : buildEngagementMetrics(profile, analyticsStore.todoCount(userId), analyticsStore.memoryFlags(userId));
+        }
+        return getUserEngagementMetrics(userId, () -> todoRepository.countByUserId(userId));
+    }
+    
+    // Engagement metrics with the todo count supplied by the caller, e.g. from an already loaded snapshot
+    public EngagementMetrics getUserEngagementMetrics(String userId, LongSupplier totalTodosSupplier) {
+        // Profile projection only; the user's tokens and free-text goals are never loaded
+        Optional<UserProfile> userOpt = userRepository.findProfileById(userId);
         if (userOpt.isEmpty()) {
-            return metrics;
+            return EngagementMetrics.USER_NOT_FOUND;
         }
         
-        User user = userOpt.get();
+        // Todo activity
+        long totalTodos = totalTodosSupplier.getAsLong();
         
-        // Last login time
-        metrics.put("lastLogin", user.getLastLogin());
+        // Get user memory data; only which sections are populated matters
+        UserMemoryFlags memory = userMemoryRepository.findFlagsByUserIdIn(List.of(userId)).stream()
+                .findFirst()
+                .orElse(null);
         
+        return buildEngagementMetrics(userOpt.get(), totalTodos, memory);
+    }
+    
+    // Engagement metrics from already loaded data; memory is null when the user has none
+    public EngagementMetrics buildEngagementMetrics(UserProfile user, long totalTodos, UserMemoryFlags memory) {
         // Days since registration
-        if (user.getCreatedAt() != null) {
-            long daysSinceRegistration = ChronoUnit.DAYS.between(user.getCreatedAt().toLocalDate(), LocalDate.now());
-            metrics.put("daysSinceRegistration", daysSinceRegistration);
-        }
-        
-        // Onboarding status
-        metrics.put("onboardingComplete", user.getOnboardingComplete());
+        long daysSinceRegistration = user.createdAt() == null ? EngagementMetrics.UNKNOWN
+                : ChronoUnit.DAYS.between(user.createdAt().toLocalDate(), LocalDate.now());
         
         // Profile completeness (based on optional fields filled)
         int profileFields = 0;
         int filledFields = 0;
         
-        if (user.getName() != null) filledFields++;
+        if (user.name() != null) filledFields++;
         profileFields++;
         
-        if (user.getWorkDescription() != null) filledFields++;
+        if (user.hasWorkDescription()) filledFields++;
         profileFields++;
         
-        if (user.getShortTermGoals() != null) filledFields++;
+        if (user.hasShortTermGoals()) filledFields++;
         profileFields++;
         
-        if (user.getLongTermGoals() != null) filledFields++;
+        if (user.hasLongTermGoals()) filledFields++;
         profileFields++;
         
-        if (user.getOtherContext() != null) filledFields++;
+        if (user.hasOtherContext()) filledFields++;
         profileFields++;
         
         double profileCompleteness = (double) filledFields / profileFields;
-        metrics.put("profileCompleteness", profileCompleteness);
         
-        // Todo activity
-        long totalTodos = todoRepository.countByUserId(userId);
-        metrics.put("totalTodos", totalTodos);
-        
-        // Get user memory data
-        Optional<UserMemory> memoryOpt = userMemoryRepository.findByUserId(userId);
-        if (memoryOpt.isPresent()) {
-            UserMemory memory = memoryOpt.get();
-            metrics.put("hasMemory", true);
-            metrics.put("memoryLastUpdated", memory.getUpdatedAt());
-            
-            // Check if memory fields are populated
-            boolean hasTaskPreferences = memory.getTaskPreferences() != null;
-            boolean hasWorkPatterns = memory.getWorkPatterns() != null;
-            boolean hasInteractionHistory = memory.getInteractionHistory() != null;
-            boolean hasUserPersona = memory.getUserPersona() != null;
-            
-            metrics.put("hasTaskPreferences", hasTaskPreferences);
-            metrics.put("hasWorkPatterns", hasWorkPatterns);
-            metrics.put("hasInteractionHistory", hasInteractionHistory);
-            metrics.put("hasUserPersona", hasUserPersona);
-        } else {
-            metrics.put("hasMemory", false);
+        if (memory == null) {
+            return new EngagementMetrics(true, user.lastLogin(), daysSinceRegistration, user.onboardingComplete(),
+                    profileCompleteness, totalTodos, false, null, false, false, false, false);
         }
-        
-        return metrics;
+        return new EngagementMetrics(true, user.lastLogin(), daysSinceRegistration, user.onboardingComplete(),
+                profileCompleteness, totalTodos, true, memory.updatedAt(), memory.hasTaskPreferences(),
+                memory.hasWorkPatterns(), memory.hasInteractionHistory(), memory.hasUserPersona());
     }
     
     // Get todo analytics for all users in a given time period
-    public Map<String, Object> getTodoAnalytics(LocalDateTime startDate, LocalDateTime endDate) {
-        Map<String, Object> analytics = new HashMap<>();
-        
-        // Get todos created in date range
-        List<Todo> todos = todoRepository.findByCreatedAtBetween(startDate, endDate);
-        
-        if (todos.isEmpty()) {
-            analytics.put("todoCount", 0);
-            return analytics;
+    public TodoAnalytics getTodoAnalytics(LocalDateTime startDate, LocalDateTime endDate) {
+        if (analyticsStore.isReady()) {
+            return endDate.isBefore(startDate) ? new TodoAnalytics(TodoCounts.ZERO)
+                    : new TodoAnalytics(analyticsStore.countCreatedBetween(toMillis(startDate), toMillis(endDate)));
         }
-        
-        analytics.put("todoCount", todos.size());
-        
-        // Completion rate in period
-        long completedCount = todos.stream().filter(todo -> Boolean.TRUE.equals(todo.getCompleted())).count();
-        double completionRate = (double) completedCount / todos.size();
-        analytics.put("completionRate", completionRate);
-        
-        // Priority distribution
-        Map<String, Long> priorityDistribution = todos.stream()
-                .collect(Collectors.groupingBy(
-                        todo -> todo.getPriority(),
-                        Collectors.counting()
-                ));
-        analytics.put("priorityDistribution", priorityDistribution);
-        
-        // AI generated stats
-        long aiGeneratedCount = todos.stream().filter(todo -> Boolean.TRUE.equals(todo.getIsAIGenerated())).count();
-        analytics.put("aiGeneratedCount", aiGeneratedCount);
-        analytics.put("aiGeneratedPercentage", (double) aiGeneratedCount / todos.size());
-        
-        // Due date analysis
-        long withDueDate = todos.stream().filter(todo -> todo.getDueDate() != null).count();
-        analytics.put("withDueDate", withDueDate);
-        analytics.put("withoutDueDate", todos.size() - withDueDate);
-        
-        return analytics;
+        // Whole days come from the daily rollups, partial days from a live aggregate query
+        return new TodoAnalytics(todoRollupService.countCreatedBetween(startDate, endDate));
     }
     
     // Get weekly report for a specific user
-    public Map<String, Object> getWeeklyUserReport(String userId) {
-        Map<String, Object> report = new HashMap<>();
-        
-        // Current week start (Monday) and end (Sunday)
-        LocalDate today = LocalDate.now();
-        LocalDate startOfWeek = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-        LocalDate endOfWeek = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
-        
-        LocalDateTime weekStart = startOfWeek.atStartOfDay();
-        LocalDateTime weekEnd = endOfWeek.atTime(LocalTime.MAX);
-        
-        // Get user's todos for the week
-        List<Todo> weeklyTodos = todoRepository.findByUserIdAndCreatedAtBetween(userId, weekStart, weekEnd);
-        
-        report.put("userId", userId);
-        report.put("weekStart", startOfWeek);
-        report.put("weekEnd", endOfWeek);
-        report.put("totalTodosCreated", weeklyTodos.size());
-        
-        // Completion stats
-        long completedCount = weeklyTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getCompleted())).count();
-        report.put("completedTodos", completedCount);
-        report.put("completionRate", weeklyTodos.isEmpty() ? 0 : (double) completedCount / weeklyTodos.size());
-        
-        // Priority breakdown
-        Map<String, Long> priorityBreakdown = weeklyTodos.stream()
-                .collect(Collectors.groupingBy(
-                        todo -> todo.getPriority(),
-                        Collectors.counting()
-                ));
-        report.put("priorityBreakdown", priorityBreakdown);
-        
-        // AI generation stats
-        long aiGeneratedCount = weeklyTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getIsAIGenerated())).count();
-        report.put("aiGeneratedCount", aiGeneratedCount);
-        report.put("aiGeneratedPercentage", weeklyTodos.isEmpty() ? 0 : (double) aiGeneratedCount / weeklyTodos.size());
-        
-        // Due date stats
-        long withDueDate = weeklyTodos.stream().filter(todo -> todo.getDueDate() != null).count();
-        report.put("withDueDate", withDueDate);
-        report.put("withoutDueDate", weeklyTodos.size() - withDueDate);
-        
-        // Get all-time user stats for comparison
-        List<Todo> allTodos = todoRepository.findByUserId(userId);
-        
-        if (!allTodos.isEmpty()) {
-            long allTimeCompleted = allTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getCompleted())).count();
-            double allTimeCompletionRate = (double) allTimeCompleted / allTodos.size();
-            
-            // Compare weekly to all-time
-            double completionRateDiff = 
-                    (weeklyTodos.isEmpty() ? 0 : (double) completedCount / weeklyTodos.size()) - allTimeCompletionRate;
-            report.put("completionRateChangeFromAverage", completionRateDiff);
-            
-            // Week-over-week comparison (previous week)
-            LocalDateTime prevWeekStart = weekStart.minus(7, ChronoUnit.DAYS);
-            LocalDateTime prevWeekEnd = weekEnd.minus(7, ChronoUnit.DAYS);
-            
-            List<Todo> prevWeekTodos = todoRepository.findByUserIdAndCreatedAtBetween(
-                    userId, prevWeekStart, prevWeekEnd);
-            
-            report.put("prevWeekTodoCount", prevWeekTodos.size());
-            report.put("todoCountChangeFromPrevWeek", weeklyTodos.size() - prevWeekTodos.size());
-            
-            long prevWeekCompleted = prevWeekTodos.stream().filter(todo -> Boolean.TRUE.equals(todo.getCompleted())).count();
-            double prevWeekCompletionRate = prevWeekTodos.isEmpty() ? 0 : (double) prevWeekCompleted / prevWeekTodos.size();
-            
-            report.put("prevWeekCompletionRate", prevWeekCompletionRate);
-            report.put("completionRateChangeFromPrevWeek", 
-                    (weeklyTodos.isEmpty() ? 0 : (double) completedCount / weeklyTodos.size()) - prevWeekCompletionRate);
+    @Cacheable(cacheNames = AnalyticsCacheService.WEEKLY_REPORTS,
+            key = "T(com.tapqyr.analytics.cache.AnalyticsCacheService).weeklyReportKey(#userId)")
+    public WeeklyReport getWeeklyUserReport(String userId) {
+        return computeWeeklyUserReport(userId, currentWeekStart());
+    }
+    
+    // Weekly report for any week, computed on demand; all-time counts stop at the end of that week
+    public WeeklyReport computeWeeklyUserReport(String userId, LocalDate startOfWeek) {
+        long[] week = weekBounds(startOfWeek);
+        long[] prevWeek = weekBounds(startOfWeek.minusWeeks(1));
+        
+        if (analyticsStore.isReady()) {
+            return buildWeeklyReport(userId, startOfWeek,
+                    analyticsStore.summarizeUserBetween(userId, week[0], week[1]),
+                    analyticsStore.summarizeUserBetween(userId, Long.MIN_VALUE, week[1]),
+                    analyticsStore.summarizeUserBetween(userId, prevWeek[0], prevWeek[1]));
+        }
+        return buildWeeklyReport(userId, startOfWeek,
+                todoRepository.summarizeByUserIdCreatedBetween(userId, week[0], week[1]),
+                todoRepository.summarizeByUserIdCreatedBetween(userId, Long.MIN_VALUE, week[1]),
+                todoRepository.summarizeByUserIdCreatedBetween(userId, prevWeek[0], prevWeek[1]));
+    }
+    
+    // Weekly report computed from a snapshot of all the user's todos
+    public WeeklyReport getWeeklyUserReport(String userId, UserTodoSnapshot snapshot) {
+        LocalDate startOfWeek = currentWeekStart();
+        long[] week = weekBounds(startOfWeek);
+        long[] prevWeek = weekBounds(startOfWeek.minusWeeks(1));
+        
+        return buildWeeklyReport(userId, startOfWeek,
+                snapshot.summarizeBetween(week[0], week[1]),
+                snapshot.summarize(),
+                snapshot.summarizeBetween(prevWeek[0], prevWeek[1]));
+    }
+    
+    // Current week start (Monday)
+    static LocalDate currentWeekStart() {
+        return LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+    
+    // Inclusive epoch-millisecond bounds from Monday 00:00 to the end of Sunday
+    static long[] weekBounds(LocalDate startOfWeek) {
+        ZoneId zone = ZoneId.systemDefault();
+        long start = startOfWeek.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = startOfWeek.plusWeeks(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+        return new long[]{start, end};
+    }
+    
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    private WeeklyReport buildWeeklyReport(String userId, LocalDate startOfWeek, TodoCountSummary weekly,
+                                           TodoCountSummary allTime, TodoCountSummary previousWeek) {
+        return new WeeklyReport(userId, startOfWeek, TodoCounts.of(weekly), TodoCounts.of(previousWeek), TodoCounts.of(allTime));
+    }
+    
+    // Find the top similar users based on activity patterns
+    public List<SimilarUser> findSimilarUsers(String userId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (!similarityIndexEnabled) {
+            List<SimilarUser> similarUsers = findSimilarUsersByFullScan(userId);
+            return similarUsers.size() > pageSize ? new ArrayList<>(similarUsers.subList(0, pageSize)) : similarUsers;
         }
         
-        return report;
+        List<SimilarUser> similarUsers = new ArrayList<>();
+        streamSimilarUsers(userId, pageSize, similarUsers::add);
+        return similarUsers;
+    }
+    
+    // Hand the top similar users to the sink in descending score order
+    public void streamSimilarUsers(String userId, int limit, Consumer<SimilarUser> sink) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (!similarityIndexEnabled) {
+            findSimilarUsersByFullScan(userId).stream().limit(pageSize).forEach(sink);
+            return;
+        }
+        
+        for (UserSimilarityIndex.Match match : userSimilarityService.findSimilarUsers(userId, pageSize, SIMILARITY_THRESHOLD)) {
+            sink.accept(new SimilarUser(match.userId(), match.userName(), match.score(), match.sharedMostActiveDay()));
+        }
     }
     
-    // Find similar users based on activity patterns
-    public List<Map<String, Object>> findSimilarUsers(String userId) {
+    // Reference implementation: compares the user against every other user's freshly computed patterns
+    List<SimilarUser> findSimilarUsersByFullScan(String userId) {
         // Get the user's activity patterns
-        Map<String, Object> userPatterns = getUserActivityPatterns(userId);
+        ActivityPatterns userPatterns = getUserActivityPatterns(userId);
         
-        // Get all users
-        List<User> allUsers = userRepository.findAll();
-        List<Map<String, Object>> similarUsers = new ArrayList<>();
+        // Get all users' IDs and names
+        List<Object[]> allUsers = userRepository.findAllIdAndName();
+        List<SimilarUser> similarUsers = new ArrayList<>();
         
-        for (User otherUser : allUsers) {
+        for (Object[] otherUser : allUsers) {
+            String otherUserId = (String) otherUser[0];
             // Skip the same user
-            if (otherUser.getId().equals(userId)) {
+            if (otherUserId.equals(userId)) {
                 continue;
             }
             
             // Get this user's patterns
-            Map<String, Object> otherPatterns = getUserActivityPatterns(otherUser.getId());
+            ActivityPatterns otherPatterns = getUserActivityPatterns(otherUserId);
             
             // Calculate similarity score
             double similarityScore = calculateSimilarityScore(userPatterns, otherPatterns);
             
-            if (similarityScore > 0.5) { // Threshold for similarity
-                Map<String, Object> similarUserData = new HashMap<>();
-                similarUserData.put("userId", otherUser.getId());
-                similarUserData.put("userName", otherUser.getName());
-                similarUserData.put("similarityScore", similarityScore);
-                
-                // Add shared patterns
-                Map<String, Object> sharedPatterns = new HashMap<>();
-                
+            if (similarityScore > SIMILARITY_THRESHOLD) {
                 // Check for shared most active day
-                if (userPatterns.get("mostActiveDay") != null && 
-                        userPatterns.get("mostActiveDay").equals(otherPatterns.get("mostActiveDay"))) {
-                    sharedPatterns.put("sharedMostActiveDay", userPatterns.get("mostActiveDay"));
-                }
-                
-                similarUserData.put("sharedPatterns", sharedPatterns);
-                similarUsers.add(similarUserData);
+                DayOfWeek mostActiveDay = userPatterns.mostActiveDay();
+                DayOfWeek sharedMostActiveDay = mostActiveDay != null && mostActiveDay == otherPatterns.mostActiveDay()
+                        ? mostActiveDay : null;
+                similarUsers.add(new SimilarUser(otherUserId, (String) otherUser[1], similarityScore, sharedMostActiveDay));
             }
         }
         
         // Sort by similarity score (descending)
-        similarUsers.sort((a, b) -> Double.compare(
-                (Double) b.get("similarityScore"),
-                (Double) a.get("similarityScore")
-        ));
+        similarUsers.sort((a, b) -> Double.compare(b.similarityScore(), a.similarityScore()));
         
         return similarUsers;
     }
     
-    // Helper to calculate similarity between users
-    private double calculateSimilarityScore(Map<String, Object> user1Patterns, Map<String, Object> user2Patterns) {
+    // Helper to calculate similarity between users; users without todos have nothing to compare
+    static double calculateSimilarityScore(ActivityPatterns user1Patterns, ActivityPatterns user2Patterns) {
+        if (user1Patterns.isEmpty() || user2Patterns.isEmpty()) {
+            return 0.0;
+        }
         double score = 0.0;
         double maxScore = 0.0;
         
-        // Compare completion rates
-        if (user1Patterns.containsKey("completionRate") && user2Patterns.containsKey("completionRate")) {
-            double rate1 = (Double) user1Patterns.get("completionRate");
-            double rate2 = (Double) user2Patterns.get("completionRate");
-            double rateDiff = Math.abs(rate1 - rate2);
-            
-            // Score higher for more similar rates
-            score += (1.0 - rateDiff) * 3.0; // Weight of 3
-            maxScore += 3.0;
-        }
+        // Compare completion rates; score higher for more similar rates
+        double rateDiff = Math.abs(user1Patterns.completionRate() - user2Patterns.completionRate());
+        score += (1.0 - rateDiff) * 3.0; // Weight of 3
+        maxScore += 3.0;
         
         // Compare most active day
-        if (user1Patterns.containsKey("mostActiveDay") && user2Patterns.containsKey("mostActiveDay")) {
-            if (user1Patterns.get("mostActiveDay").equals(user2Patterns.get("mostActiveDay"))) {
-                score += 2.0; // Exact match
-            }
-            maxScore += 2.0;
+        if (user1Patterns.mostActiveDay() == user2Patterns.mostActiveDay()) {
+            score += 2.0; // Exact match
         }
-        
-        // Compare priority distributions
-        if (user1Patterns.containsKey("priorityDistribution") && user2Patterns.containsKey("priorityDistribution")) {
-            Map<String, Long> dist1 = (Map<String, Long>) user1Patterns.get("priorityDistribution");
-            Map<String, Long> dist2 = (Map<String, Long>) user2Patterns.get("priorityDistribution");
-            
-            Set<String> allPriorities = new HashSet<>(dist1.keySet());
-            allPriorities.addAll(dist2.keySet());
-            
-            double priorityScore = 0.0;
-            for (String priority : allPriorities) {
-                long count1 = dist1.getOrDefault(priority, 0L);
-                long count2 = dist2.getOrDefault(priority, 0L);
-                
-                // Calculate percentage of each priority
-                double total1 = user1Patterns.containsKey("todoCount") ? (Integer) user1Patterns.get("todoCount") : 1;
-                double total2 = user2Patterns.containsKey("todoCount") ? (Integer) user2Patterns.get("todoCount") : 1;
-                
-                double pct1 = count1 / total1;
-                double pct2 = count2 / total2;
-                
-                priorityScore += (1.0 - Math.abs(pct1 - pct2));
-            }
-            
-            if (!allPriorities.isEmpty()) {
-                priorityScore = priorityScore / allPriorities.size() * 2.5; // Weight of 2.5
-                score += priorityScore;
-                maxScore += 2.5;
+        maxScore += 2.0;
+        
+        // Compare priority distributions over the priorities either user has used
+        TodoCounts counts1 = user1Patterns.counts();
+        TodoCounts counts2 = user2Patterns.counts();
+        double total1 = user1Patterns.todoCount();
+        double total2 = user2Patterns.todoCount();
+        double priorityScore = 0.0;
+        int usedPriorities = 0;
+        for (String priority : UserSimilarityIndex.PRIORITIES) {
+            long count1 = counts1.countForPriority(priority);
+            long count2 = counts2.countForPriority(priority);
+            if (count1 == 0 && count2 == 0) {
+                continue;
             }
+            priorityScore += (1.0 - Math.abs(count1 / total1 - count2 / total2));
+            usedPriorities++;
+        }
+        if (usedPriorities > 0) {
+            score += priorityScore / usedPriorities * 2.5; // Weight of 2.5
+            maxScore += 2.5;
         }
         
         // Compare AI generated percentage
-        if (user1Patterns.containsKey("aiGeneratedPercentage") && user2Patterns.containsKey("aiGeneratedPercentage")) {
-            double pct1 = (Double) user1Patterns.get("aiGeneratedPercentage");
-            double pct2 = (Double) user2Patterns.get("aiGeneratedPercentage");
-            double pctDiff = Math.abs(pct1 - pct2);
-            
-            score += (1.0 - pctDiff) * 1.5; // Weight of 1.5
-            maxScore += 1.5;
-        }
+        double pctDiff = Math.abs(user1Patterns.aiGeneratedPercentage() - user2Patterns.aiGeneratedPercentage());
+        score += (1.0 - pctDiff) * 1.5; // Weight of 1.5
+        maxScore += 1.5;
         
         // Return normalized score
-        return maxScore > 0 ? score / maxScore : 0.0;
+        return score / maxScore;
     }
-} 
\ No newline at end of file
+}
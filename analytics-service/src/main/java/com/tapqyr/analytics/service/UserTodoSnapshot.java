@@ -0,0 +1,75 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.repository.TodoActivitySummary;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+import com.tapqyr.analytics.store.ActivityCounts;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * One user's todos loaded once as primitive columns, so several analytics sections can be
+ * computed from the same read without holding {@code Todo} entities.
+ */
+public final class UserTodoSnapshot {
+
+    private final int size;
+    private final long[] createdAt;
+    private final byte[] dayOfWeek;
+    private final byte[] priority;
+    private final boolean[] completed;
+    private final boolean[] aiGenerated;
+    private final boolean[] hasDueDate;
+
+    private UserTodoSnapshot(int size) {
+        this.size = size;
+        this.createdAt = new long[size];
+        this.dayOfWeek = new byte[size];
+        this.priority = new byte[size];
+        this.completed = new boolean[size];
+        this.aiGenerated = new boolean[size];
+        this.hasDueDate = new boolean[size];
+    }
+
+    // Rows from TodoRepository.findSnapshotRowsByUserId
+    public static UserTodoSnapshot of(List<Object[]> rows) {
+        ZoneId zone = ZoneId.systemDefault();
+        UserTodoSnapshot snapshot = new UserTodoSnapshot(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            long created = ((Number) row[0]).longValue();
+            snapshot.createdAt[i] = created;
+            snapshot.dayOfWeek[i] = (byte) Instant.ofEpochMilli(created).atZone(zone).getDayOfWeek().ordinal();
+            snapshot.completed[i] = isTrue(row[1]);
+            snapshot.priority[i] = (byte) UserSimilarityIndex.priorityIndex((String) row[2]);
+            snapshot.aiGenerated[i] = isTrue(row[3]);
+            snapshot.hasDueDate[i] = isTrue(row[4]);
+        }
+        return snapshot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TodoActivitySummary summarize() {
+        return summarizeBetween(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Counts for todos created in the inclusive epoch-millisecond range
+    public TodoActivitySummary summarizeBetween(long startMillis, long endMillis) {
+        ActivityCounts counts = new ActivityCounts();
+        for (int i = 0; i < size; i++) {
+            long created = createdAt[i];
+            if (created < startMillis || created > endMillis) continue;
+            counts.add(completed[i], aiGenerated[i], hasDueDate[i], priority[i], dayOfWeek[i]);
+        }
+        return counts;
+    }
+
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean b) return b;
+        return value instanceof Number n && n.intValue() != 0;
+    }
+}
@@ -0,0 +1,148 @@
+package com.tapqyr.analytics.service;
+
+import com.tapqyr.analytics.dto.WeeklyReport;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.WeeklyTodoCountSummary;
+import com.tapqyr.analytics.rollup.TodoCounts;
+import com.tapqyr.analytics.rollup.TodoRollupStore;
+import com.tapqyr.analytics.rollup.UserWeekCounts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputes every user's weekly report once a week has ended, for the Monday digest.
+ * <p>
+ * All users' reports for a week come from one grouped query over the todos created through the end
+ * of that week, split by user into the week, the week before and everything older, and are stored
+ * in the rollup file. Reports for precomputed weeks are served from those snapshots; the current,
+ * partial week and weeks without snapshots are computed on demand by {@link UserAnalyticsService}.
+ * Snapshots are not updated afterwards, so later completions of a week's todos are not reflected.
+ */
+@Service
+@Slf4j
+public class WeeklyReportService {
+
+    // Upper bound for one page of snapshots
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final TodoRepository todoRepository;
+    private final TodoRollupStore rollupStore;
+    private final UserAnalyticsService userAnalyticsService;
+
+    private final Set<LocalDate> precomputedWeeks = ConcurrentHashMap.newKeySet();
+
+    @Value("${analytics.weekly-report.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.weekly-report.retention-weeks:12}")
+    private int retentionWeeks = 12;
+
+    public WeeklyReportService(TodoRepository todoRepository, TodoRollupStore rollupStore,
+                               UserAnalyticsService userAnalyticsService) {
+        this.todoRepository = todoRepository;
+        this.rollupStore = rollupStore;
+        this.userAnalyticsService = userAnalyticsService;
+        this.precomputedWeeks.addAll(rollupStore.findWeeklyReportWeeks());
+    }
+
+    // Precompute the last completed week once, starting as soon as the scheduler does; later checks in the
+    // same week do nothing
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.weekly-report.check-interval-ms:300000}")
+    public synchronized void precomputeLastWeek() {
+        if (enabled && !precomputedWeeks.contains(lastCompletedWeek())) {
+            precompute(lastCompletedWeek());
+        }
+    }
+
+    // Compute and store every user's report for the week starting on the given Monday
+    public synchronized void precompute(LocalDate weekStart) {
+        long started = System.currentTimeMillis();
+        long[] week = UserAnalyticsService.weekBounds(weekStart);
+        long previousWeekStart = UserAnalyticsService.weekBounds(weekStart.minusWeeks(1))[0];
+
+        Map<String, TodoCounts[]> byUser = new TreeMap<>();
+        for (WeeklyTodoCountSummary row : todoRepository.summarizeWeeklyByUser(previousWeekStart, week[0], week[1])) {
+            TodoCounts[] periods = byUser.computeIfAbsent(row.getUserId(),
+                    id -> new TodoCounts[]{TodoCounts.ZERO, TodoCounts.ZERO, TodoCounts.ZERO});
+            periods[row.getPeriod()] = TodoCounts.of(row);
+        }
+        List<UserWeekCounts> reports = new ArrayList<>(byUser.size());
+        byUser.forEach((userId, periods) -> reports.add(new UserWeekCounts(userId, periods[0], periods[1],
+                periods[0].plus(periods[1]).plus(periods[2]))));
+
+        LocalDate dropBefore = weekStart.minusWeeks(Math.max(1, retentionWeeks) - 1L);
+        rollupStore.replaceWeeklyReports(weekStart, reports, dropBefore);
+        precomputedWeeks.removeIf(day -> day.isBefore(dropBefore));
+        precomputedWeeks.add(weekStart);
+
+        log.info("Precomputed weekly reports for the week of {} ({} users) in {} ms",
+                weekStart, reports.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * A user's report for the week containing {@code day}, or the current week when null. Precomputed
+     * weeks are read from their snapshot, anything else is computed on demand.
+     */
+    public WeeklyReport getWeeklyReport(String userId, LocalDate day) {
+        LocalDate currentWeek = UserAnalyticsService.currentWeekStart();
+        LocalDate weekStart = day == null ? currentWeek : weekStartOf(day);
+        if (weekStart.isAfter(currentWeek)) {
+            throw new IllegalArgumentException("Week must not be in the future");
+        }
+        if (weekStart.equals(currentWeek)) {
+            return userAnalyticsService.getWeeklyUserReport(userId);
+        }
+        if (!precomputedWeeks.contains(weekStart)) {
+            return userAnalyticsService.computeWeeklyUserReport(userId, weekStart);
+        }
+        return rollupStore.findWeeklyReport(weekStart, userId)
+                .map(counts -> toReport(weekStart, counts))
+                .orElseGet(() -> new WeeklyReport(userId, weekStart, TodoCounts.ZERO, TodoCounts.ZERO, TodoCounts.ZERO));
+    }
+
+    /**
+     * One keyset page of precomputed reports for the week containing {@code day} (by default the last
+     * completed week), ordered by user ID; pass the last userId as {@code after} for the next page.
+     * Only users with todos created through the end of that week are listed. Throws
+     * {@link IllegalStateException} while the last completed week is still being precomputed.
+     */
+    public List<WeeklyReport> getWeeklyReports(LocalDate day, String after, int limit) {
+        LocalDate weekStart = day == null ? lastCompletedWeek() : weekStartOf(day);
+        if (!precomputedWeeks.contains(weekStart)) {
+            if (!enabled || !weekStart.equals(lastCompletedWeek())) {
+                throw new IllegalArgumentException("No precomputed weekly reports for the week of " + weekStart);
+            }
+            // The scheduled run has not finished since startup or the week rolled over; a full precompute
+            // is too slow for a request thread
+            throw new IllegalStateException("Weekly reports for the week of " + weekStart + " are being precomputed");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return rollupStore.findWeeklyReportsAfter(weekStart, after == null ? "" : after, pageSize).stream()
+                .map(counts -> toReport(weekStart, counts))
+                .toList();
+    }
+
+    private static WeeklyReport toReport(LocalDate weekStart, UserWeekCounts counts) {
+        return new WeeklyReport(counts.userId(), weekStart, counts.week(), counts.previousWeek(), counts.allTime());
+    }
+
+    private static LocalDate lastCompletedWeek() {
+        return UserAnalyticsService.currentWeekStart().minusWeeks(1);
+    }
+
+    private static LocalDate weekStartOf(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
@@ -0,0 +1,402 @@
+package com.tapqyr.analytics.similarity;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory similarity index over per-user activity feature vectors.
+ * <p>
+ * Each user is stored as a fixed-width {@code double} vector holding the same inputs
+ * {@code UserAnalyticsService.calculateSimilarityScore} compares: completion rate, a one-hot
+ * most-active-day, low/medium/high priority shares and the AI-generated share. The raw counters
+ * behind each vector are kept as well, so todo changes are applied as deltas instead of reloads.
+ * <p>
+ * Users are bucketed into a grid keyed on most-active-day, completion rate and AI share. Top-K
+ * queries visit cells in descending order of their best achievable score and stop as soon as no
+ * remaining cell can beat the current K-th result.
+ */
+public class UserSimilarityIndex {
+
+    // Vector layout
+    public static final int COMPLETION_RATE = 0;
+    public static final int DAY_OFFSET = 1;
+    public static final int PRIORITY_OFFSET = 8;
+    public static final int AI_SHARE = 11;
+    public static final int DIMENSIONS = 12;
+
+    public static final String[] PRIORITIES = {"low", "medium", "high"};
+
+    // Weights used by calculateSimilarityScore
+    private static final double COMPLETION_WEIGHT = 3.0;
+    private static final double DAY_WEIGHT = 2.0;
+    private static final double PRIORITY_WEIGHT = 2.5;
+    private static final double AI_WEIGHT = 1.5;
+    private static final double MAX_SCORE = COMPLETION_WEIGHT + DAY_WEIGHT + PRIORITY_WEIGHT + AI_WEIGHT;
+
+    private static final int DAYS = 7;
+    private static final int BINS = 10;
+    private static final int CELLS = DAYS * BINS * BINS;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotsByUserId = new HashMap<>();
+
+    private int size;
+    private String[] userIds = new String[INITIAL_CAPACITY];
+    private String[] userNames = new String[INITIAL_CAPACITY];
+
+    // Raw counters per slot
+    private int[] totals = new int[INITIAL_CAPACITY];
+    private int[] completedCounts = new int[INITIAL_CAPACITY];
+    private int[] aiGeneratedCounts = new int[INITIAL_CAPACITY];
+    private int[] dayCounts = new int[INITIAL_CAPACITY * DAYS];
+    private int[] priorityCounts = new int[INITIAL_CAPACITY * PRIORITIES.length];
+
+    // Derived vectors and grid placement per slot
+    private double[] vectors = new double[INITIAL_CAPACITY * DIMENSIONS];
+    private int[] mostActiveDays = new int[INITIAL_CAPACITY];
+    private int[] cellOf = new int[INITIAL_CAPACITY];
+    private int[] positionInCell = new int[INITIAL_CAPACITY];
+
+    private final int[][] cellMembers = new int[CELLS][];
+    private final int[] cellSizes = new int[CELLS];
+
+    public record Match(String userId, String userName, double score, DayOfWeek sharedMostActiveDay) {
+    }
+
+    public UserSimilarityIndex() {
+        Arrays.fill(cellOf, -1);
+    }
+
+    // Register a user (or refresh their display name) without touching their counters
+    public void putUser(String userId, String userName) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotFor(userId);
+            userNames[slot] = userName;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean containsUser(String userId) {
+        lock.readLock().lock();
+        try {
+            return slotsByUserId.containsKey(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a todo count delta for a user. A positive {@code count} records created todos, a
+     * negative one removes them.
+     */
+    public void addTodos(String userId, DayOfWeek createdOn, String priority,
+                         boolean completed, boolean aiGenerated, int count) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotFor(userId);
+            totals[slot] += count;
+            if (completed) completedCounts[slot] += count;
+            if (aiGenerated) aiGeneratedCounts[slot] += count;
+            dayCounts[slot * DAYS + createdOn.ordinal()] += count;
+            int priorityIndex = priorityIndex(priority);
+            if (priorityIndex >= 0) priorityCounts[slot * PRIORITIES.length + priorityIndex] += count;
+            reindex(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drop all of a user's todo counters, e.g. before their current todos are added again
+    public void removeTodos(String userId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsByUserId.get(userId);
+            if (slot == null) {
+                return;
+            }
+            totals[slot] = 0;
+            completedCounts[slot] = 0;
+            aiGeneratedCounts[slot] = 0;
+            Arrays.fill(dayCounts, slot * DAYS, (slot + 1) * DAYS, 0);
+            Arrays.fill(priorityCounts, slot * PRIORITIES.length, (slot + 1) * PRIORITIES.length, 0);
+            reindex(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Apply a completion toggle on an existing todo
+    public void setCompleted(String userId, boolean completed) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsByUserId.get(userId);
+            if (slot == null) {
+                return;
+            }
+            completedCounts[slot] += completed ? 1 : -1;
+            reindex(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copy of a user's feature vector, or null when the user has no todos
+    public double[] vectorOf(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsByUserId.get(userId);
+            if (slot == null || totals[slot] <= 0) {
+                return null;
+            }
+            return Arrays.copyOfRange(vectors, slot * DIMENSIONS, (slot + 1) * DIMENSIONS);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top-K most similar users to {@code userId} with a score strictly above {@code minScore},
+     * ordered by descending score.
+     */
+    public List<Match> topK(String userId, int k, double minScore) {
+        lock.readLock().lock();
+        try {
+            Integer querySlot = slotsByUserId.get(userId);
+            if (querySlot == null || totals[querySlot] <= 0 || k <= 0) {
+                return List.of();
+            }
+            int q = querySlot;
+            int queryBase = q * DIMENSIONS;
+            double queryCompletion = vectors[queryBase + COMPLETION_RATE];
+            double queryAi = vectors[queryBase + AI_SHARE];
+            int queryDay = mostActiveDays[q];
+
+            // Upper bound of the achievable score for every non-empty cell
+            int[] candidates = new int[CELLS];
+            double[] bounds = new double[CELLS];
+            int candidateCount = 0;
+            for (int cell = 0; cell < CELLS; cell++) {
+                if (cellSizes[cell] == 0) continue;
+                int day = cell / (BINS * BINS);
+                int completionBin = (cell / BINS) % BINS;
+                int aiBin = cell % BINS;
+                double bound = COMPLETION_WEIGHT * (1.0 - distanceToBin(queryCompletion, completionBin))
+                        + (day == queryDay ? DAY_WEIGHT : 0.0)
+                        + PRIORITY_WEIGHT
+                        + AI_WEIGHT * (1.0 - distanceToBin(queryAi, aiBin));
+                bounds[cell] = bound / MAX_SCORE;
+                candidates[candidateCount++] = cell;
+            }
+            Integer[] order = new Integer[candidateCount];
+            for (int i = 0; i < candidateCount; i++) order[i] = candidates[i];
+            Arrays.sort(order, (a, b) -> Double.compare(bounds[b], bounds[a]));
+
+            // Min-heap of the best K slots seen so far
+            PriorityQueue<double[]> best = new PriorityQueue<>(Math.max(1, Math.min(k, size)),
+                    (a, b) -> Double.compare(a[0], b[0]));
+            for (int cell : order) {
+                double bound = bounds[cell];
+                if (bound <= minScore) break;
+                if (best.size() == k && best.peek()[0] >= bound) break;
+
+                int[] members = cellMembers[cell];
+                for (int i = 0, n = cellSizes[cell]; i < n; i++) {
+                    int slot = members[i];
+                    if (slot == q) continue;
+                    double score = score(q, slot);
+                    if (score <= minScore) continue;
+                    if (best.size() < k) {
+                        best.add(new double[]{score, slot});
+                    } else if (score > best.peek()[0]) {
+                        best.poll();
+                        best.add(new double[]{score, slot});
+                    }
+                }
+            }
+
+            List<Match> matches = new ArrayList<>(best.size());
+            for (double[] entry : best) {
+                int slot = (int) entry[1];
+                DayOfWeek shared = mostActiveDays[slot] == queryDay ? DayOfWeek.of(queryDay + 1) : null;
+                matches.add(new Match(userIds[slot], userNames[slot], entry[0], shared));
+            }
+            matches.sort((a, b) -> Double.compare(b.score(), a.score()));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Primitive-vector equivalent of {@code UserAnalyticsService.calculateSimilarityScore} for two
+     * users that both have todos.
+     */
+    public static double score(double[] a, int aBase, double[] b, int bBase) {
+        double score = COMPLETION_WEIGHT * (1.0 - Math.abs(a[aBase + COMPLETION_RATE] - b[bBase + COMPLETION_RATE]));
+
+        for (int d = 0; d < DAYS; d++) {
+            if (a[aBase + DAY_OFFSET + d] > 0 && b[bBase + DAY_OFFSET + d] > 0) {
+                score += DAY_WEIGHT;
+                break;
+            }
+        }
+
+        // Average over priorities used by at least one of the two users
+        double priorityScore = 0.0;
+        int priorities = 0;
+        for (int p = 0; p < PRIORITIES.length; p++) {
+            double share1 = a[aBase + PRIORITY_OFFSET + p];
+            double share2 = b[bBase + PRIORITY_OFFSET + p];
+            if (share1 > 0 || share2 > 0) {
+                priorityScore += 1.0 - Math.abs(share1 - share2);
+                priorities++;
+            }
+        }
+        if (priorities > 0) {
+            score += priorityScore / priorities * PRIORITY_WEIGHT;
+        }
+
+        score += AI_WEIGHT * (1.0 - Math.abs(a[aBase + AI_SHARE] - b[bBase + AI_SHARE]));
+        return score / MAX_SCORE;
+    }
+
+    public static int priorityIndex(String priority) {
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            if (PRIORITIES[i].equals(priority)) return i;
+        }
+        return -1;
+    }
+
+    private double score(int slotA, int slotB) {
+        return score(vectors, slotA * DIMENSIONS, vectors, slotB * DIMENSIONS);
+    }
+
+    // Distance from a value in [0, 1] to the closest point of a grid bin
+    private static double distanceToBin(double value, int bin) {
+        double low = (double) bin / BINS;
+        double high = (double) (bin + 1) / BINS;
+        if (value < low) return low - value;
+        if (value > high) return value - high;
+        return 0.0;
+    }
+
+    private static int bin(double value) {
+        return Math.max(0, Math.min(BINS - 1, (int) (value * BINS)));
+    }
+
+    private int slotFor(String userId) {
+        Integer existing = slotsByUserId.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == userIds.length) {
+            grow();
+        }
+        int slot = size++;
+        userIds[slot] = userId;
+        slotsByUserId.put(userId, slot);
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = userIds.length * 2;
+        userIds = Arrays.copyOf(userIds, capacity);
+        userNames = Arrays.copyOf(userNames, capacity);
+        totals = Arrays.copyOf(totals, capacity);
+        completedCounts = Arrays.copyOf(completedCounts, capacity);
+        aiGeneratedCounts = Arrays.copyOf(aiGeneratedCounts, capacity);
+        dayCounts = Arrays.copyOf(dayCounts, capacity * DAYS);
+        priorityCounts = Arrays.copyOf(priorityCounts, capacity * PRIORITIES.length);
+        vectors = Arrays.copyOf(vectors, capacity * DIMENSIONS);
+        mostActiveDays = Arrays.copyOf(mostActiveDays, capacity);
+        positionInCell = Arrays.copyOf(positionInCell, capacity);
+        int previous = cellOf.length;
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        Arrays.fill(cellOf, previous, capacity, -1);
+    }
+
+    // Recompute a slot's vector from its counters and move it to the matching grid cell
+    private void reindex(int slot) {
+        int base = slot * DIMENSIONS;
+        Arrays.fill(vectors, base, base + DIMENSIONS, 0.0);
+
+        int total = totals[slot];
+        if (total <= 0) {
+            removeFromCell(slot);
+            return;
+        }
+
+        vectors[base + COMPLETION_RATE] = (double) completedCounts[slot] / total;
+        vectors[base + AI_SHARE] = (double) aiGeneratedCounts[slot] / total;
+        for (int p = 0; p < PRIORITIES.length; p++) {
+            vectors[base + PRIORITY_OFFSET + p] = (double) priorityCounts[slot * PRIORITIES.length + p] / total;
+        }
+
+        // Ties resolve to the earliest day of the week
+        int mostActive = 0;
+        for (int d = 1; d < DAYS; d++) {
+            if (dayCounts[slot * DAYS + d] > dayCounts[slot * DAYS + mostActive]) mostActive = d;
+        }
+        mostActiveDays[slot] = mostActive;
+        vectors[base + DAY_OFFSET + mostActive] = 1.0;
+
+        int cell = mostActive * BINS * BINS
+                + bin(vectors[base + COMPLETION_RATE]) * BINS
+                + bin(vectors[base + AI_SHARE]);
+        if (cellOf[slot] == cell) {
+            return;
+        }
+        removeFromCell(slot);
+        addToCell(slot, cell);
+    }
+
+    private void addToCell(int slot, int cell) {
+        int[] members = cellMembers[cell];
+        if (members == null) {
+            members = new int[8];
+            cellMembers[cell] = members;
+        } else if (cellSizes[cell] == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            cellMembers[cell] = members;
+        }
+        int position = cellSizes[cell]++;
+        members[position] = slot;
+        positionInCell[slot] = position;
+        cellOf[slot] = cell;
+    }
+
+    // Swap-remove so cells stay dense
+    private void removeFromCell(int slot) {
+        int cell = cellOf[slot];
+        if (cell < 0) {
+            return;
+        }
+        int[] members = cellMembers[cell];
+        int position = positionInCell[slot];
+        int last = --cellSizes[cell];
+        if (position != last) {
+            int moved = members[last];
+            members[position] = moved;
+            positionInCell[moved] = position;
+        }
+        cellOf[slot] = -1;
+    }
+}
@@ -0,0 +1,221 @@
+package com.tapqyr.analytics.similarity;
+
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.UserProfile;
+import com.tapqyr.analytics.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Owns the {@link UserSimilarityIndex}: builds it from one grouped query and keeps it current.
+ * <p>
+ * With the analytics store enabled, {@code ChangeIngestionService} feeds the index: it builds a fresh one
+ * from its full load, then applies the new todos, reloaded users and profile changes each poll finds, so
+ * completions and deletions arrive with the next checksum reconcile. Otherwise new todos are polled here
+ * and a periodic rebuild picks up completions and deletions (the todos table has no updatedAt column to
+ * tail). Nothing runs while {@code analytics.similarity.index-enabled} is off.
+ */
+@Service
+@Slf4j
+public class UserSimilarityService {
+
+    private final TodoRepository todoRepository;
+    private final UserRepository userRepository;
+
+    @Value("${analytics.similarity.index-enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.store.enabled:true}")
+    private boolean storeFed = true;
+
+    private volatile UserSimilarityIndex index;
+    private volatile long watermark = Long.MIN_VALUE;
+
+    public UserSimilarityService(TodoRepository todoRepository, UserRepository userRepository) {
+        this.todoRepository = todoRepository;
+        this.userRepository = userRepository;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<UserSimilarityIndex.Match> findSimilarUsers(String userId, int limit, double minScore) {
+        return currentIndex().topK(userId, limit, minScore);
+    }
+
+    public UserSimilarityIndex currentIndex() {
+        UserSimilarityIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    build();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    // Full rebuild from aggregate counts; a store-fed index is only built here until the store's load replaces it
+    @Scheduled(fixedDelayString = "${analytics.similarity.rebuild-interval-ms:300000}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        if (enabled && (!storeFed || index == null)) {
+            build();
+        }
+    }
+
+    // Apply todos created since the last build or poll as incremental deltas
+    @Scheduled(fixedDelayString = "${analytics.similarity.poll-interval-ms:10000}",
+            initialDelayString = "${analytics.similarity.poll-interval-ms:10000}")
+    @Transactional(readOnly = true)
+    public synchronized void pollNewTodos() {
+        UserSimilarityIndex current = index;
+        if (!enabled || storeFed || current == null) {
+            return;
+        }
+
+        List<Object[]> rows = todoRepository.findFeatureRowsCreatedAfter(watermark);
+        Set<String> newUsers = new HashSet<>();
+        long newest = watermark;
+        for (Object[] row : rows) {
+            String userId = (String) row[0];
+            long createdAt = ((Number) row[1]).longValue();
+            if (!current.containsUser(userId)) {
+                newUsers.add(userId);
+            }
+            addTodo(current, userId, createdAt, (String) row[2], isTrue(row[3]), isTrue(row[4]));
+            newest = Math.max(newest, createdAt);
+        }
+        putNames(current, newUsers);
+        watermark = newest;
+    }
+
+    // Store-fed updates from ChangeIngestionService; todo rows are in TodoRepository.INGEST_COLUMNS layout
+
+    // Index built from the store's full load, with the loaded profiles' names; replaces the current index
+    public synchronized void install(UserSimilarityIndex loaded, Collection<UserProfile> profiles) {
+        if (!enabled) {
+            return;
+        }
+        for (UserProfile profile : profiles) {
+            if (loaded.containsUser(profile.id())) {
+                loaded.putUser(profile.id(), profile.name());
+            }
+        }
+        index = loaded;
+        log.debug("Installed similarity index with {} users from the analytics store load", loaded.size());
+    }
+
+    public static void addTodoRows(UserSimilarityIndex target, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                addTodo(target, (String) row[1], ((Number) row[2]).longValue(), (String) row[4],
+                        isTrue(row[5]), isTrue(row[6]));
+            }
+        }
+    }
+
+    public void applyNewTodos(List<Object[]> rows) {
+        UserSimilarityIndex current = index;
+        if (!enabled || !storeFed || current == null || rows.isEmpty()) {
+            return;
+        }
+        Set<String> newUsers = new HashSet<>();
+        for (Object[] row : rows) {
+            if (row[1] != null && !current.containsUser((String) row[1])) {
+                newUsers.add((String) row[1]);
+            }
+        }
+        addTodoRows(current, rows);
+        putNames(current, newUsers);
+    }
+
+    // The users' todos were reloaded; rows are all of their current todos
+    public void applyReplacedTodos(Collection<String> userIds, List<Object[]> rows) {
+        UserSimilarityIndex current = index;
+        if (!enabled || !storeFed || current == null) {
+            return;
+        }
+        for (String userId : userIds) {
+            if (userId != null) {
+                current.removeTodos(userId);
+            }
+        }
+        applyNewTodos(rows);
+    }
+
+    public void applyCompletion(String userId) {
+        UserSimilarityIndex current = index;
+        if (enabled && storeFed && current != null) {
+            current.setCompleted(userId, true);
+        }
+    }
+
+    public void applyProfiles(Collection<UserProfile> profiles) {
+        UserSimilarityIndex current = index;
+        if (!enabled || !storeFed || current == null) {
+            return;
+        }
+        for (UserProfile profile : profiles) {
+            if (current.containsUser(profile.id())) {
+                current.putUser(profile.id(), profile.name());
+            }
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        UserSimilarityIndex fresh = new UserSimilarityIndex();
+        long newest = Long.MIN_VALUE;
+
+        for (Object[] row : todoRepository.findFeatureCountsByUser()) {
+            String userId = (String) row[0];
+            DayOfWeek day = DayOfWeek.of(((Number) row[1]).intValue() == 0 ? 7 : ((Number) row[1]).intValue());
+            fresh.addTodos(userId, day, (String) row[2], isTrue(row[3]), isTrue(row[4]), ((Number) row[5]).intValue());
+            newest = Math.max(newest, ((Number) row[6]).longValue());
+        }
+        for (Object[] row : userRepository.findAllIdAndName()) {
+            String userId = (String) row[0];
+            if (fresh.containsUser(userId)) {
+                fresh.putUser(userId, (String) row[1]);
+            }
+        }
+
+        index = fresh;
+        watermark = newest;
+        log.debug("Rebuilt similarity index with {} users in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    private void putNames(UserSimilarityIndex target, Set<String> userIds) {
+        if (!userIds.isEmpty()) {
+            for (Object[] row : userRepository.findIdAndNameByIdIn(userIds)) {
+                target.putUser((String) row[0], (String) row[1]);
+            }
+        }
+    }
+
+    private static void addTodo(UserSimilarityIndex target, String userId, long createdAtMillis,
+                                String priority, boolean completed, boolean aiGenerated) {
+        DayOfWeek day = Instant.ofEpochMilli(createdAtMillis).atZone(ZoneId.systemDefault()).getDayOfWeek();
+        target.addTodos(userId, day, priority, completed, aiGenerated, 1);
+    }
+
+    // SQLite returns booleans as 0/1 integers
+    private static boolean isTrue(Object value) {
+        if (value instanceof Boolean b) return b;
+        return value instanceof Number n && n.intValue() != 0;
+    }
+}
@@ -0,0 +1,221 @@
+package com.tapqyr.analytics.sketch;
+
+import com.tapqyr.analytics.dto.ActiveUsers;
+import com.tapqyr.analytics.dto.Quantiles;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.store.AnalyticsStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.hll.Union;
+import org.apache.datasketches.kll.KllDoublesSketch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Answers global distribution questions from mergeable sketches instead of scanning todos.
+ * <p>
+ * Each local day keeps a HyperLogLog sketch of the users who created todos that day and a KLL sketch
+ * of those todos' due-date slack (hours from creation to due date), so any range of days is a merge
+ * of small sketches. A refresh rebuilds the days touched by todos created past the watermark plus a
+ * trailing window, like the daily rollups, since the todos table has no updatedAt column to tail.
+ * Exact answers, computed in SQLite, are used when sketches are disabled, not yet built, or explicitly
+ * requested.
+ * <p>
+ * Todos per user need no sketch: the {@link AnalyticsStore} already keeps every user's count, so they are
+ * answered exactly from those, sorted again only after todos change. Until the store is loaded they are
+ * counted in SQLite per request.
+ */
+@Service
+@Slf4j
+public class GlobalSketchService {
+
+    private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+    // Two standard deviations, roughly a 95% confidence interval
+    private static final int CONFIDENCE_STD_DEVS = 2;
+
+    private final TodoRepository todoRepository;
+    private final AnalyticsStore analyticsStore;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ConcurrentSkipListMap<LocalDate, DaySketches> days = new ConcurrentSkipListMap<>();
+    private volatile boolean ready;
+    private long watermark = Long.MIN_VALUE;
+
+    // The store's todo counts per user, sorted, as of storeVersion; guarded by its own lock so requests
+    // do not wait for a refresh
+    private final Object todosPerUserLock = new Object();
+    private double[] todosPerUser;
+    private long storeVersion = -1;
+
+    @Value("${analytics.sketch.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.sketch.recheck-days:30}")
+    private int recheckDays = 30;
+
+    // log2 of HLL buckets; 12 gives about 1.6% relative error
+    @Value("${analytics.sketch.hll-lg-k:12}")
+    private int hllLgK = 12;
+
+    // KLL accuracy parameter; 200 gives about 1.3% rank error
+    @Value("${analytics.sketch.kll-k:200}")
+    private int kllK = 200;
+
+    public GlobalSketchService(TodoRepository todoRepository, AnalyticsStore analyticsStore) {
+        this.todoRepository = todoRepository;
+        this.analyticsStore = analyticsStore;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.sketch.refresh-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        LocalDate today = LocalDate.now(zone);
+        Long newestCreatedAt = todoRepository.findMaxCreatedAt();
+
+        LocalDate from;
+        if (!isReady()) {
+            // First build covers the whole history
+            Long oldest = todoRepository.findMinCreatedAtAfter(Long.MIN_VALUE);
+            from = oldest == null ? today : toLocalDate(oldest);
+        } else {
+            from = today.minusDays(recheckDays);
+            Long oldestTouched = todoRepository.findMinCreatedAtAfter(watermark);
+            if (oldestTouched != null && toLocalDate(oldestTouched).isBefore(from)) {
+                from = toLocalDate(oldestTouched);
+            }
+        }
+
+        Map<LocalDate, DaySketches> rebuilt = new HashMap<>();
+        try (Stream<Object[]> rows = todoRepository.streamSketchRowsCreatedSince(toMillis(from))) {
+            rows.forEach(row -> {
+                long createdAt = ((Number) row[1]).longValue();
+                DaySketches day = rebuilt.computeIfAbsent(toLocalDate(createdAt), d -> new DaySketches(hllLgK, kllK));
+                day.users.update((String) row[0]);
+                if (row[2] != null) {
+                    day.slackHours.update((((Number) row[2]).longValue() - createdAt) / MILLIS_PER_HOUR);
+                }
+            });
+        }
+        days.putAll(rebuilt);
+        // Days in the window whose todos were all deleted
+        days.tailMap(from, true).keySet().removeIf(day -> !rebuilt.containsKey(day));
+
+        ready = true;
+        watermark = newestCreatedAt == null ? Long.MIN_VALUE : newestCreatedAt;
+
+        log.debug("Refreshed global sketches from {} ({} days) in {} ms",
+                from, rebuilt.size(), System.currentTimeMillis() - started);
+    }
+
+    // Distinct users who created todos between the local days, inclusive
+    public ActiveUsers activeUsers(LocalDate from, LocalDate to, boolean exact) {
+        if (exact || !enabled || !isReady()) {
+            return ActiveUsers.exact(from, to,
+                    todoRepository.countDistinctUsersCreatedBetween(toMillis(from), endOfDayMillis(to)));
+        }
+        Union union = new Union(hllLgK);
+        for (DaySketches day : days.subMap(from, true, to, true).values()) {
+            union.update(day.users);
+        }
+        return new ActiveUsers(from, to, Math.round(union.getEstimate()),
+                (long) Math.floor(union.getLowerBound(CONFIDENCE_STD_DEVS)),
+                (long) Math.ceil(union.getUpperBound(CONFIDENCE_STD_DEVS)), false);
+    }
+
+    // Hours from creation to due date of todos created between the local days, inclusive
+    public Quantiles dueDateSlackHours(LocalDate from, LocalDate to, double[] ranks, boolean exact) {
+        if (exact || !enabled || !isReady()) {
+            List<Number> slack = todoRepository.findDueDateSlackMillisCreatedBetween(toMillis(from), endOfDayMillis(to));
+            double[] sorted = new double[slack.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = slack.get(i).longValue() / MILLIS_PER_HOUR;
+            }
+            return Quantiles.ofSorted(sorted, ranks);
+        }
+        KllDoublesSketch merged = KllDoublesSketch.newHeapInstance(kllK);
+        for (DaySketches day : days.subMap(from, true, to, true).values()) {
+            merged.merge(day.slackHours);
+        }
+        return toQuantiles(merged, ranks);
+    }
+
+    // Todos per user over all time, among users with at least one todo; always exact, from SQLite when requested
+    public Quantiles todosPerUser(double[] ranks, boolean exact) {
+        if (!exact && analyticsStore.isReady()) {
+            return Quantiles.ofSorted(storeTodosPerUser(), ranks);
+        }
+        List<Number> counts = todoRepository.findTodoCountsPerUser();
+        double[] sorted = new double[counts.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = counts.get(i).doubleValue();
+        }
+        return Quantiles.ofSorted(sorted, ranks);
+    }
+
+    private double[] storeTodosPerUser() {
+        synchronized (todosPerUserLock) {
+            // Read before the counts, so a change made while sorting is picked up by the next call
+            long version = analyticsStore.todoVersion();
+            if (version != storeVersion) {
+                todosPerUser = analyticsStore.sortedTodoCountsPerUser();
+                storeVersion = version;
+            }
+            return todosPerUser;
+        }
+    }
+
+    private static Quantiles toQuantiles(KllDoublesSketch sketch, double[] ranks) {
+        List<Quantiles.Quantile> quantiles = new ArrayList<>(ranks.length);
+        if (!sketch.isEmpty()) {
+            for (double rank : ranks) {
+                quantiles.add(new Quantiles.Quantile(rank, sketch.getQuantile(rank)));
+            }
+        }
+        return new Quantiles(sketch.getN(), false, quantiles);
+    }
+
+    private LocalDate toLocalDate(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(zone).toLocalDate();
+    }
+
+    private long toMillis(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long endOfDayMillis(LocalDate day) {
+        return toMillis(day.plusDays(1)) - 1;
+    }
+
+    // Sketches of one local day's todos; replaced whole on refresh, never updated once published
+    private static final class DaySketches {
+
+        final HllSketch users;
+        final KllDoublesSketch slackHours;
+
+        DaySketches(int hllLgK, int kllK) {
+            users = new HllSketch(hllLgK);
+            slackHours = KllDoublesSketch.newHeapInstance(kllK);
+        }
+    }
+}
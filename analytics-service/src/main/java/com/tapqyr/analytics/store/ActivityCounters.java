@@ -0,0 +1,144 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.repository.UserProfile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sliding-window counts of signups, logins, todo creations and todo completions, one {@link MinuteRing}
+ * per event covering {@code analytics.counters.retention-days}.
+ * <p>
+ * {@link ChangeIngestionService} seeds the rings during the store's full load and then feeds them from each
+ * poll, so a window is a sum over its minute buckets with no database access. Signups and logins are counted
+ * at their own timestamps; the users table keeps only the latest lastLogin, so at most one login per user and
+ * poll is seen. Completions leave no timestamp behind and are counted when a poll finds them, from the load on.
+ * Todos and completions the backend pushes reach the rings through the store, which applies each todo
+ * once whether it is pushed or polled. Pushed logins go through {@link #recordLogin} and move the user's
+ * latest login forward, so a poll that reads the same lastLogin does not count it again.
+ * Counts are not reduced when users or todos are deleted.
+ */
+@Component
+public class ActivityCounters {
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<ActivityEvent, MinuteRing> rings = new EnumMap<>(ActivityEvent.class);
+
+    // Latest lastLogin seen per user; a user missing here has not been counted as a signup yet
+    private final Map<String, LocalDateTime> lastLogins = new HashMap<>();
+
+    private volatile boolean ready;
+
+    public ActivityCounters(@Value("${analytics.counters.retention-days:90}") int retentionDays) {
+        // At least the monthly window of the growth metrics
+        int minutes = (int) Duration.ofDays(Math.max(30, retentionDays)).toMinutes();
+        for (ActivityEvent event : ActivityEvent.values()) {
+            rings.put(event, new MinuteRing(minutes));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // The longest window that can be counted
+    public Duration retention() {
+        return Duration.ofMinutes(rings.get(ActivityEvent.SIGNUP).minutes());
+    }
+
+    /**
+     * Events in the window ending now, counted per whole minute: the current minute and the minutes
+     * before it, {@code window} minutes in all.
+     */
+    public long count(ActivityEvent event, Duration window) {
+        long minutes = window.toMinutes();
+        if (minutes < 1 || window.compareTo(retention()) > 0) {
+            throw new IllegalArgumentException("Window must be between 1 minute and " + retention().toDays() + " days");
+        }
+        long now = Math.floorDiv(System.currentTimeMillis(), MinuteRing.MINUTE_MILLIS);
+        return rings.get(event).sum(now - minutes + 1, now);
+    }
+
+    /**
+     * Count a login the backend pushed, at the lastLogin it wrote. Ignored before the seeding load, for users
+     * the polls have not seen yet (their first poll counts signup and login) and when not after the user's
+     * latest counted login.
+     */
+    public synchronized void recordLogin(String userId, LocalDateTime lastLogin) {
+        if (!ready || !lastLogins.containsKey(userId)) {
+            return;
+        }
+        LocalDateTime previous = lastLogins.get(userId);
+        if (previous == null || lastLogin.isAfter(previous)) {
+            lastLogins.put(userId, lastLogin);
+            record(ActivityEvent.LOGIN, toMillis(lastLogin), 1);
+        }
+    }
+
+    // Writer side, used by ChangeIngestionService
+
+    void markReady() {
+        ready = true;
+    }
+
+    synchronized void clear() {
+        ready = false;
+        lastLogins.clear();
+        rings.values().forEach(MinuteRing::clear);
+    }
+
+    // Count users not seen before as signups and lastLogin values newer than the latest counted one as logins
+    synchronized void observeProfiles(Collection<UserProfile> profiles) {
+        for (UserProfile profile : profiles) {
+            if (!lastLogins.containsKey(profile.id())) {
+                lastLogins.put(profile.id(), null);
+                if (profile.createdAt() != null) {
+                    record(ActivityEvent.SIGNUP, toMillis(profile.createdAt()), 1);
+                }
+            }
+            LocalDateTime previousLogin = lastLogins.get(profile.id());
+            if (profile.lastLogin() != null && (previousLogin == null || profile.lastLogin().isAfter(previousLogin))) {
+                lastLogins.put(profile.id(), profile.lastLogin());
+                record(ActivityEvent.LOGIN, toMillis(profile.lastLogin()), 1);
+            }
+        }
+    }
+
+    // Rows in TodoRepository.INGEST_COLUMNS layout; when loaded todos were completed is unknown, so the full
+    // load counts only their creation
+    void observeNewTodos(List<Object[]> rows, boolean seeding) {
+        long completed = 0;
+        for (Object[] row : rows) {
+            record(ActivityEvent.TODO_CREATED, ((Number) row[2]).longValue(), 1);
+            if (!seeding && AnalyticsStore.isTrue(row[5])) {
+                completed++;
+            }
+        }
+        observeCompletions(completed);
+    }
+
+    // Completions a poll found since the previous one
+    void observeCompletions(long completed) {
+        if (completed > 0) {
+            record(ActivityEvent.TODO_COMPLETED, System.currentTimeMillis(), completed);
+        }
+    }
+
+    // Count events at an epoch-millisecond time; times in the future count as now
+    private void record(ActivityEvent event, long epochMillis, long count) {
+        long time = Math.min(epochMillis, System.currentTimeMillis());
+        rings.get(event).add(Math.floorDiv(time, MinuteRing.MINUTE_MILLIS), count);
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+}
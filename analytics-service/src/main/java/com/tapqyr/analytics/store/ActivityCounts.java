@@ -0,0 +1,54 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.repository.TodoActivitySummary;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+
+import java.time.DayOfWeek;
+
+/**
+ * {@link TodoActivitySummary} accumulated in memory by scanning primitive todo columns, the
+ * in-process counterpart of the aggregate rows TodoRepository computes inside SQLite.
+ */
+public final class ActivityCounts implements TodoActivitySummary {
+
+    private long total;
+    private long completed;
+    private long aiGenerated;
+    private long withDueDate;
+    private final long[] priorities = new long[UserSimilarityIndex.PRIORITIES.length];
+    private final long[] days = new long[7];
+
+    // priority is an index into UserSimilarityIndex.PRIORITIES (-1 if unknown), dayOfWeek a DayOfWeek ordinal
+    public void add(boolean isCompleted, boolean isAiGenerated, boolean hasDueDate, int priority, int dayOfWeek) {
+        total++;
+        if (isCompleted) completed++;
+        if (isAiGenerated) aiGenerated++;
+        if (hasDueDate) withDueDate++;
+        if (priority >= 0) priorities[priority]++;
+        days[dayOfWeek]++;
+    }
+
+    public void merge(ActivityCounts other) {
+        total += other.total;
+        completed += other.completed;
+        aiGenerated += other.aiGenerated;
+        withDueDate += other.withDueDate;
+        for (int i = 0; i < priorities.length; i++) priorities[i] += other.priorities[i];
+        for (int i = 0; i < days.length; i++) days[i] += other.days[i];
+    }
+
+    @Override public long getTotalCount() { return total; }
+    @Override public long getCompletedCount() { return completed; }
+    @Override public long getAiGeneratedCount() { return aiGenerated; }
+    @Override public long getWithDueDateCount() { return withDueDate; }
+    @Override public long getLowPriorityCount() { return priorities[0]; }
+    @Override public long getMediumPriorityCount() { return priorities[1]; }
+    @Override public long getHighPriorityCount() { return priorities[2]; }
+    @Override public long getMondayCount() { return days[DayOfWeek.MONDAY.ordinal()]; }
+    @Override public long getTuesdayCount() { return days[DayOfWeek.TUESDAY.ordinal()]; }
+    @Override public long getWednesdayCount() { return days[DayOfWeek.WEDNESDAY.ordinal()]; }
+    @Override public long getThursdayCount() { return days[DayOfWeek.THURSDAY.ordinal()]; }
+    @Override public long getFridayCount() { return days[DayOfWeek.FRIDAY.ordinal()]; }
+    @Override public long getSaturdayCount() { return days[DayOfWeek.SATURDAY.ordinal()]; }
+    @Override public long getSundayCount() { return days[DayOfWeek.SUNDAY.ordinal()]; }
+}
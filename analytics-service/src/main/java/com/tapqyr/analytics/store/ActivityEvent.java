@@ -0,0 +1,23 @@
+package com.tapqyr.analytics.store;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+// Activity counted by ActivityCounters; the key names the count in responses
+public enum ActivityEvent {
+
+    SIGNUP("signups"),
+    LOGIN("logins"),
+    TODO_CREATED("todosCreated"),
+    TODO_COMPLETED("todosCompleted");
+
+    private final String key;
+
+    ActivityEvent(String key) {
+        this.key = key;
+    }
+
+    @JsonValue
+    public String key() {
+        return key;
+    }
+}
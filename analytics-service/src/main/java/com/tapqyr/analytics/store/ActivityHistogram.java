@@ -0,0 +1,25 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+
+/**
+ * Todo creation counters by hour of the week and by day of the year, adjusted as todos are added
+ * and removed so a heatmap is a copy of two small arrays rather than a scan.
+ */
+public final class ActivityHistogram {
+
+    private long total;
+    private final int[] hoursOfWeek = new int[ActivityHeatmap.HOURS_PER_WEEK];
+    private final int[] daysOfYear = new int[ActivityHeatmap.DAYS_PER_YEAR];
+
+    // hourOfWeek is DayOfWeek ordinal * 24 + hour, dayOfYear zero-based; delta is negative on removal
+    public void add(int hourOfWeek, int dayOfYear, int delta) {
+        total += delta;
+        hoursOfWeek[hourOfWeek] += delta;
+        daysOfYear[dayOfYear] += delta;
+    }
+
+    public ActivityHeatmap toHeatmap() {
+        return new ActivityHeatmap(total, hoursOfWeek.clone(), daysOfYear.clone());
+    }
+}
@@ -0,0 +1,577 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+import com.tapqyr.analytics.dto.LeaderboardCursor;
+import com.tapqyr.analytics.dto.LeaderboardMetric;
+import com.tapqyr.analytics.dto.OverdueSummary;
+import com.tapqyr.analytics.dto.UserOverdueCount;
+import com.tapqyr.analytics.repository.TodoActivitySummary;
+import com.tapqyr.analytics.repository.UserCompletionRate;
+import com.tapqyr.analytics.repository.UserMemoryFlags;
+import com.tapqyr.analytics.repository.UserProfile;
+import com.tapqyr.analytics.repository.UserTodoTotals;
+import com.tapqyr.analytics.rollup.TodoCounts;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the todos, users and user_memories rows that UserAnalyticsService reads.
+ * <p>
+ * Todos are held in {@link TodoColumns}; users and memory flags as small records keyed by user ID.
+ * {@link ChangeIngestionService} is the only writer and applies database changes in batches under
+ * the write lock, so readers always see whole batches. Until the first full load completes
+ * {@link #isReady()} is false and callers query SQLite instead.
+ */
+@Component
+public class AnalyticsStore {
+
+    // Dictionary code for todos without a user
+    private static final int NO_USER = 0;
+
+    // Fewer overdue todos first, ties broken by descending user ID
+    private static final Comparator<UserOverdueCount> OVERDUE_ORDER = Comparator
+            .comparingLong(UserOverdueCount::overdueCount)
+            .thenComparing(UserOverdueCount::userId, Comparator.reverseOrder());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // User ID dictionary; sorted so completion rates can be paged by user ID
+    private final TreeMap<String, Integer> userCodes = new TreeMap<>();
+    private final List<String> userIds = new ArrayList<>();
+
+    private final Map<String, UserProfile> profiles = new HashMap<>();
+    private final Map<String, UserMemoryFlags> memories = new HashMap<>();
+    private TodoColumns todos = new TodoColumns();
+    private UserLeaderboard leaderboard = new UserLeaderboard();
+
+    private volatile boolean ready;
+
+    // Bumped by every todo change, so results derived from the todos can tell when they are stale
+    private volatile long todoVersion;
+
+    // Rows each fork-join task scans on its own; smaller tables are scanned by the calling thread
+    @Value("${analytics.store.scan-segment-rows:65536}")
+    private int scanSegmentRows = 65536;
+
+    public AnalyticsStore() {
+        userIds.add(null);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Counts for all todos created in the inclusive epoch-millisecond range
+    public TodoCounts countCreatedBetween(long startMillis, long endMillis) {
+        ActivityCounts counts;
+        lock.readLock().lock();
+        try {
+            counts = todos.countBetween(startMillis, endMillis, scanSegmentRows);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return TodoCounts.of(counts);
+    }
+
+    public TodoActivitySummary summarizeUser(String userId) {
+        return summarizeUserBetween(userId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Counts for one user's todos created in the inclusive epoch-millisecond range
+    public TodoActivitySummary summarizeUserBetween(String userId, long startMillis, long endMillis) {
+        ActivityCounts counts = new ActivityCounts();
+        lock.readLock().lock();
+        try {
+            Integer user = userCodes.get(userId);
+            if (user != null) {
+                todos.countUserBetween(user, startMillis, endMillis, counts);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    // Creation histograms of every todo, maintained on each change
+    public ActivityHeatmap heatmap() {
+        lock.readLock().lock();
+        try {
+            return todos.histogram().toHeatmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public ActivityHeatmap userHeatmap(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = userCodes.get(userId);
+            ActivityHistogram histogram = user == null ? null : todos.userHistogram(user);
+            return histogram == null ? ActivityHeatmap.EMPTY : histogram.toHeatmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long todoCount(String userId) {
+        lock.readLock().lock();
+        try {
+            Integer user = userCodes.get(userId);
+            return user == null ? 0 : todos.userTodoCount(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Open todos due before now, with aging and the topUsers users with the most
+    public OverdueSummary overdueSummary(long now, int topUsers) {
+        lockSweptTo(now);
+        try {
+            DueDateIndex index = todos.dueIndex();
+            // The best users so far, weakest at the head
+            PriorityQueue<UserOverdueCount> top = new PriorityQueue<>(OVERDUE_ORDER);
+            for (int user = NO_USER + 1; user < userIds.size() && topUsers > 0; user++) {
+                int count = index.userOverdueCount(user);
+                if (count == 0) continue;
+                if (top.size() < topUsers) {
+                    top.add(new UserOverdueCount(userIds.get(user), count));
+                } else if (count > top.peek().overdueCount()) {
+                    top.poll();
+                    top.add(new UserOverdueCount(userIds.get(user), count));
+                }
+            }
+            List<UserOverdueCount> users = new ArrayList<>(top);
+            users.sort(OVERDUE_ORDER.reversed());
+            return new OverdueSummary(index.overdueCount(),
+                    OverdueSummary.aging(index.overdueAging(now, OverdueSummary.AGING_UPPER_HOURS)), users);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long overdueCount(String userId, long now) {
+        lockSweptTo(now);
+        try {
+            Integer user = userCodes.get(userId);
+            return user == null ? 0 : todos.dueIndex().userOverdueCount(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Open todos due from now until the bound, inclusive, soonest first
+    public List<DueTodo> upcomingDue(long now, long until, int limit) {
+        lockSweptTo(now);
+        try {
+            List<DueTodo> upcoming = new ArrayList<>();
+            for (long[] entry : todos.dueIndex().pendingDueBy(until, limit)) {
+                int row = (int) entry[1];
+                upcoming.add(new DueTodo(todos.rowId(row), userIds.get(todos.user(row)), entry[0]));
+            }
+            return upcoming;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Take the read lock with the due-date index swept to now; callers release it. The write lock is only
+    // taken, then downgraded, when a todo has come due since the last sweep
+    private void lockSweptTo(long now) {
+        lock.readLock().lock();
+        if (!todos.dueIndex().needsSweep(now)) {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            todos.sweepDue(now);
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Null when no such user exists
+    public UserProfile userProfile(String userId) {
+        lock.readLock().lock();
+        try {
+            return profiles.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Null when the user has no memory row
+    public UserMemoryFlags memoryFlags(String userId) {
+        lock.readLock().lock();
+        try {
+            return memories.get(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long userCount() {
+        lock.readLock().lock();
+        try {
+            return profiles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same rows as TodoRepository.findCompletionRatesAfter: users with todos, ordered by user ID
+    public List<UserCompletionRate> completionRatesAfter(String after, int limit) {
+        List<UserCompletionRate> rates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : userCodes.tailMap(after == null ? "" : after, false).entrySet()) {
+                if (rates.size() >= limit) break;
+                int user = entry.getValue();
+                long total = todos.userTodoCount(user);
+                if (total == 0) continue;
+                UserProfile profile = profiles.get(entry.getKey());
+                rates.add(new UserCompletionRate(entry.getKey(), (long) todos.userCompletedCount(user), total,
+                        profile == null ? null : profile.name(), profile == null ? null : profile.email()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rates;
+    }
+
+    // One leaderboard page of users with todos, ranked below the cursor; users without a profile row are skipped
+    public List<UserTodoTotals> leaderboard(LeaderboardMetric metric, LeaderboardCursor after, int limit) {
+        List<UserTodoTotals> page = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (UserLeaderboard.Entry entry : leaderboard.after(metric, after)) {
+                if (page.size() >= limit) break;
+                UserProfile profile = profiles.get(entry.userId());
+                if (profile == null) continue;
+                int user = entry.user();
+                page.add(new UserTodoTotals(entry.userId(), profile.name(), leaderboard.todoCount(user),
+                        leaderboard.completedCount(user), leaderboard.aiGeneratedCount(user)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    public long todoVersion() {
+        return todoVersion;
+    }
+
+    // Todo count of every user with todos, ascending; todos without a user are left out
+    public double[] sortedTodoCountsPerUser() {
+        lock.readLock().lock();
+        try {
+            double[] counts = new double[userIds.size()];
+            int users = 0;
+            for (int user = NO_USER + 1; user < userIds.size(); user++) {
+                int count = todos.userTodoCount(user);
+                if (count > 0) {
+                    counts[users++] = count;
+                }
+            }
+            double[] sorted = Arrays.copyOf(counts, users);
+            Arrays.sort(sorted);
+            return sorted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writer side, used by ChangeIngestionService
+
+    void markReady() {
+        ready = true;
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            todoVersion++;
+            ready = false;
+            userCodes.clear();
+            userIds.clear();
+            userIds.add(null);
+            profiles.clear();
+            memories.clear();
+            todos = new TodoColumns();
+            leaderboard = new UserLeaderboard();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rows in TodoRepository.INGEST_COLUMNS layout; the owners of appended rows are added to touchedUsers
+    void appendTodos(List<Object[]> rows, Set<String> touchedUsers) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            todoVersion++;
+            Set<Integer> appendedTo = new HashSet<>();
+            for (Object[] row : rows) {
+                appendedTo.add(appendTodo(row));
+                touchedUsers.add((String) row[1]);
+            }
+            rerank(appendedTo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Append one todo row unless the store already holds its rowid; returns whether it was appended
+    boolean appendTodoIfAbsent(Object[] row) {
+        lock.writeLock().lock();
+        try {
+            Integer user = row[1] == null ? Integer.valueOf(NO_USER) : userCodes.get((String) row[1]);
+            if (user != null && todos.findUserRow(user, ((Number) row[0]).longValue()) >= 0) {
+                return false;
+            }
+            todoVersion++;
+            rerank(List.of(appendTodo(row)));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mark the user's todo with this rowid completed; false when it already was or the store does not hold it
+    boolean completeTodo(String userId, long rowId) {
+        lock.writeLock().lock();
+        try {
+            Integer user = userCodes.get(userId);
+            int row = user == null ? -1 : todos.findUserRow(user, rowId);
+            if (row < 0 || !todos.complete(row)) {
+                return false;
+            }
+            todoVersion++;
+            rerank(List.of(user));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drop every todo of the given users (null for todos without a user) and load their current rows; returns
+    // how many completed todos the users gained, net per user
+    long replaceUserTodos(Collection<String> userIdsToReplace, List<Object[]> rows) {
+        lock.writeLock().lock();
+        try {
+            todoVersion++;
+            Set<Integer> replaced = new HashSet<>();
+            Map<Integer, Integer> completedBefore = new HashMap<>();
+            for (String userId : userIdsToReplace) {
+                Integer user = userId == null ? Integer.valueOf(NO_USER) : userCodes.get(userId);
+                if (user != null) {
+                    completedBefore.put(user, todos.userCompletedCount(user));
+                    todos.removeUser(user);
+                    replaced.add(user);
+                }
+            }
+            for (Object[] row : rows) {
+                replaced.add(appendTodo(row));
+            }
+            rerank(replaced);
+            long completed = 0;
+            for (int user : replaced) {
+                completed += Math.max(0, todos.userCompletedCount(user) - completedBefore.getOrDefault(user, 0));
+            }
+            // Rebuild once tombstones make up a quarter of the rows
+            if (todos.size() - todos.liveCount() > todos.size() / 4) {
+                todos = todos.compacted();
+            }
+            return completed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // {todo count, row checksum, due-date checksum} per user ID, null key for todos without a user
+    Map<String, long[]> todoChecksums() {
+        lock.readLock().lock();
+        try {
+            Map<String, long[]> checksums = new HashMap<>();
+            for (int user = 0; user < userIds.size(); user++) {
+                if (todos.userTodoCount(user) > 0) {
+                    checksums.put(userIds.get(user), todos.userChecksum(user));
+                }
+            }
+            return checksums;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Upsert profiles; returns the IDs whose profile actually changed
+    Set<String> putProfiles(Collection<UserProfile> changed) {
+        lock.writeLock().lock();
+        try {
+            Set<String> updated = new HashSet<>();
+            for (UserProfile profile : changed) {
+                if (!profile.equals(profiles.put(profile.id(), profile))) {
+                    updated.add(profile.id());
+                }
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replace all profiles; returns the IDs that disappeared
+    Set<String> replaceProfiles(Collection<UserProfile> all) {
+        lock.writeLock().lock();
+        try {
+            Map<String, UserProfile> previous = new HashMap<>(profiles);
+            profiles.clear();
+            for (UserProfile profile : all) {
+                profiles.put(profile.id(), profile);
+                previous.remove(profile.id());
+            }
+            return previous.keySet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Upsert memory flags; returns the user IDs whose flags actually changed
+    Set<String> putMemories(Collection<UserMemoryFlags> changed) {
+        lock.writeLock().lock();
+        try {
+            Set<String> updated = new HashSet<>();
+            for (UserMemoryFlags memory : changed) {
+                if (!memory.equals(memories.put(memory.userId(), memory))) {
+                    updated.add(memory.userId());
+                }
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replace all memory flags; returns the user IDs whose memory disappeared
+    Set<String> replaceMemories(Collection<UserMemoryFlags> all) {
+        lock.writeLock().lock();
+        try {
+            Map<String, UserMemoryFlags> previous = new HashMap<>(memories);
+            memories.clear();
+            for (UserMemoryFlags memory : all) {
+                memories.put(memory.userId(), memory);
+                previous.remove(memory.userId());
+            }
+            return previous.keySet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drop the memory flags of the given users; returns the IDs that had them
+    Set<String> removeMemories(Collection<String> userIdsToRemove) {
+        lock.writeLock().lock();
+        try {
+            Set<String> removed = new HashSet<>();
+            for (String userId : userIdsToRemove) {
+                if (memories.remove(userId) != null) {
+                    removed.add(userId);
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Set<String> memoryUserIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(memories.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long memoryCount() {
+        lock.readLock().lock();
+        try {
+            return memories.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long todoRowCount() {
+        lock.readLock().lock();
+        try {
+            return todos.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the todo's user code
+    private int appendTodo(Object[] row) {
+        long created = ((Number) row[2]).longValue();
+        ZonedDateTime local = Instant.ofEpochMilli(created).atZone(zone);
+        int user = userCode((String) row[1]);
+        todos.append(((Number) row[0]).longValue(), user, created,
+                row[3] == null ? TodoColumns.NO_DUE_DATE : ((Number) row[3]).longValue(),
+                UserSimilarityIndex.priorityIndex((String) row[4]),
+                ActivityHeatmap.hourOfWeek(local.getDayOfWeek(), local.getHour()), local.getDayOfYear() - 1,
+                isTrue(row[5]), isTrue(row[6]));
+        return user;
+    }
+
+    // Re-file users whose todos changed; todos without a user are never ranked
+    private void rerank(Collection<Integer> changedUsers) {
+        for (int user : changedUsers) {
+            if (user != NO_USER) {
+                leaderboard.update(user, userIds.get(user), todos.userTodoCount(user), todos.userCompletedCount(user),
+                        todos.userAiGeneratedCount(user));
+            }
+        }
+    }
+
+    private int userCode(String userId) {
+        if (userId == null) {
+            return NO_USER;
+        }
+        Integer code = userCodes.get(userId);
+        if (code == null) {
+            code = userIds.size();
+            userIds.add(userId);
+            userCodes.put(userId, code);
+        }
+        return code;
+    }
+
+    // SQLite returns booleans as 0/1 integers
+    static boolean isTrue(Object value) {
+        if (value instanceof Boolean b) return b;
+        return value instanceof Number n && n.intValue() != 0;
+    }
+}
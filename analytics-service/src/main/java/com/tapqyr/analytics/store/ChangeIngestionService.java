@@ -0,0 +1,287 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.cache.AnalyticsCacheService;
+import com.tapqyr.analytics.memory.MemoryTailer;
+import com.tapqyr.analytics.repository.TodoRepository;
+import com.tapqyr.analytics.repository.TodoUserChecksum;
+import com.tapqyr.analytics.repository.UserMemoryFlags;
+import com.tapqyr.analytics.repository.UserMemoryRepository;
+import com.tapqyr.analytics.repository.UserProfile;
+import com.tapqyr.analytics.repository.UserRepository;
+import com.tapqyr.analytics.similarity.UserSimilarityIndex;
+import com.tapqyr.analytics.similarity.UserSimilarityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps {@link AnalyticsStore} in step with the shared SQLite database by polling watermarks.
+ * <p>
+ * New todos are tailed by rowid, changed users by {@code updatedAt}, and memories by a {@link MemoryTailer}. The todos
+ * table has no updatedAt column, so completions, edits and deletions are found by comparing
+ * per-user checksums of the todo columns with the store's own, and the users that differ are
+ * reloaded. Users can also be queued for a reload explicitly. Todos and completions the backend
+ * pushes are applied at once; pushed todos the tailer later reads are skipped by rowid. Cached
+ * results of every user whose data changed are evicted after each poll.
+ * The same changes feed the {@link ActivityCounters} and the {@link UserSimilarityIndex}, which the
+ * full load seeds.
+ */
+@Service
+@Slf4j
+public class ChangeIngestionService {
+
+    // SQLite's bound-parameter limit is far above this; it only keeps single statements modest
+    private static final int RESYNC_CHUNK_SIZE = 500;
+
+    private final AnalyticsStore store;
+    private final ActivityCounters activityCounters;
+    private final TodoRepository todoRepository;
+    private final UserRepository userRepository;
+    private final UserMemoryRepository userMemoryRepository;
+    private final AnalyticsCacheService analyticsCacheService;
+    private final UserSimilarityService userSimilarityService;
+    private final MemoryTailer memoryTailer;
+
+    private final Queue<String> resyncRequests = new ConcurrentLinkedQueue<>();
+
+    // Pushed todos past the watermark, by rowid, with their user
+    private final TreeMap<Long, String> pushedTodos = new TreeMap<>();
+
+    @Value("${analytics.store.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${analytics.store.batch-size:50000}")
+    private int batchSize = 50000;
+
+    @Value("${analytics.store.reconcile-interval-ms:60000}")
+    private long reconcileIntervalMs = 60000;
+
+    private long todoWatermark;
+    private LocalDateTime userWatermark;
+    private long lastReconciled;
+
+    public ChangeIngestionService(AnalyticsStore store, ActivityCounters activityCounters, TodoRepository todoRepository,
+                                  UserRepository userRepository, UserMemoryRepository userMemoryRepository,
+                                  AnalyticsCacheService analyticsCacheService,
+                                  UserSimilarityService userSimilarityService) {
+        this.store = store;
+        this.activityCounters = activityCounters;
+        this.todoRepository = todoRepository;
+        this.userRepository = userRepository;
+        this.userMemoryRepository = userMemoryRepository;
+        this.analyticsCacheService = analyticsCacheService;
+        this.userSimilarityService = userSimilarityService;
+        this.memoryTailer = new MemoryTailer(userMemoryRepository, RESYNC_CHUNK_SIZE);
+    }
+
+    // Reload the user's todos on the next poll
+    public void requestResync(String userId) {
+        if (enabled && userId != null) {
+            resyncRequests.add(userId);
+        }
+    }
+
+    /**
+     * Apply a todo the backend created, as a row in TodoRepository.INGEST_COLUMNS layout. Ignored before the
+     * store is loaded, which reads it from the database anyway, and when the store already holds the rowid.
+     */
+    public synchronized void applyPushedTodo(Object[] row) {
+        long rowId = ((Number) row[0]).longValue();
+        if (!enabled || !store.isReady() || rowId <= todoWatermark || !store.appendTodoIfAbsent(row)) {
+            return;
+        }
+        pushedTodos.put(rowId, (String) row[1]);
+        List<Object[]> rows = List.<Object[]>of(row);
+        activityCounters.observeNewTodos(rows, false);
+        userSimilarityService.applyNewTodos(rows);
+    }
+
+    // Apply a completion the backend reported; a todo the store does not hold yet arrives completed with its row
+    public synchronized void applyPushedCompletion(String userId, long rowId) {
+        if (enabled && store.isReady() && store.completeTodo(userId, rowId)) {
+            activityCounters.observeCompletions(1);
+            userSimilarityService.applyCompletion(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.store.poll-interval-ms:2000}")
+    public synchronized void poll() {
+        if (!enabled) {
+            return;
+        }
+        if (!store.isReady()) {
+            load();
+            return;
+        }
+
+        Set<String> changedUsers = new HashSet<>();
+        applyNewTodos(changedUsers);
+        applyProfileChanges(changedUsers);
+        applyMemoryChanges(changedUsers);
+
+        Set<String> resync = new HashSet<>();
+        for (String userId = resyncRequests.poll(); userId != null; userId = resyncRequests.poll()) {
+            resync.add(userId);
+        }
+        if (System.currentTimeMillis() - lastReconciled >= reconcileIntervalMs) {
+            resync.addAll(findDriftedUsers());
+            changedUsers.addAll(reconcileProfilesAndMemories());
+            lastReconciled = System.currentTimeMillis();
+        }
+        if (!resync.isEmpty()) {
+            resyncTodos(resync);
+            changedUsers.addAll(resync);
+        }
+
+        changedUsers.remove(null);
+        changedUsers.forEach(analyticsCacheService::evictUser);
+        if (!changedUsers.isEmpty()) {
+            log.debug("Applied changes for {} users to the analytics store ({} reloaded)", changedUsers.size(), resync.size());
+        }
+    }
+
+    // Full load; the store stays unready, and callers keep querying SQLite, until it completes
+    private void load() {
+        long started = System.currentTimeMillis();
+        store.clear();
+        activityCounters.clear();
+        // Watermarks are taken first so rows changed during the load are read again by the next poll
+        userWatermark = orEpoch(userRepository.findMaxUpdatedAt());
+        memoryTailer.reset(userMemoryRepository.findMaxUpdatedAt());
+        List<UserProfile> profiles = userRepository.findAllProfiles();
+        store.replaceProfiles(profiles);
+        activityCounters.observeProfiles(profiles);
+        store.replaceMemories(userMemoryRepository.findAllFlags());
+
+        todoWatermark = 0;
+        pushedTodos.clear();
+        UserSimilarityIndex similarityIndex = userSimilarityService.isEnabled() ? new UserSimilarityIndex() : null;
+        Set<String> ignored = new HashSet<>();
+        List<Object[]> page;
+        do {
+            page = todoRepository.findIngestRowsAfter(todoWatermark, batchSize);
+            store.appendTodos(page, ignored);
+            activityCounters.observeNewTodos(page, true);
+            if (similarityIndex != null) {
+                UserSimilarityService.addTodoRows(similarityIndex, page);
+            }
+            ignored.clear();
+            if (!page.isEmpty()) {
+                todoWatermark = ((Number) page.get(page.size() - 1)[0]).longValue();
+            }
+        } while (page.size() == batchSize);
+
+        lastReconciled = System.currentTimeMillis();
+        if (similarityIndex != null) {
+            userSimilarityService.install(similarityIndex, profiles);
+        }
+        store.markReady();
+        activityCounters.markReady();
+        log.info("Loaded analytics store with {} todos, {} users and {} memories in {} ms",
+                store.todoRowCount(), store.userCount(), store.memoryCount(), System.currentTimeMillis() - started);
+    }
+
+    private void applyNewTodos(Set<String> changedUsers) {
+        List<Object[]> page;
+        do {
+            page = todoRepository.findIngestRowsAfter(todoWatermark, batchSize);
+            List<Object[]> unseen = page;
+            if (!pushedTodos.isEmpty()) {
+                unseen = page.stream().filter(row -> !pushedTodos.containsKey(((Number) row[0]).longValue())).toList();
+            }
+            store.appendTodos(unseen, changedUsers);
+            activityCounters.observeNewTodos(unseen, false);
+            userSimilarityService.applyNewTodos(unseen);
+            if (!page.isEmpty()) {
+                todoWatermark = ((Number) page.get(page.size() - 1)[0]).longValue();
+                pushedTodos.headMap(todoWatermark, true).clear();
+            }
+        } while (page.size() == batchSize);
+    }
+
+    private void applyProfileChanges(Set<String> changedUsers) {
+        List<UserProfile> profiles = userRepository.findProfilesUpdatedSince(userWatermark);
+        // The boundary row is read again on every poll, so only rows that differ count as changes
+        changedUsers.addAll(store.putProfiles(profiles));
+        activityCounters.observeProfiles(profiles);
+        userSimilarityService.applyProfiles(profiles);
+        for (UserProfile profile : profiles) {
+            if (profile.updatedAt() != null && profile.updatedAt().isAfter(userWatermark)) {
+                userWatermark = profile.updatedAt();
+            }
+        }
+    }
+
+    private void applyMemoryChanges(Set<String> changedUsers) {
+        List<UserMemoryFlags> memories = new ArrayList<>();
+        memoryTailer.tail(since -> userMemoryRepository.findFlagsUpdatedSince(since).stream(), UserMemoryFlags::updatedAt,
+                memories::add, newest -> changedUsers.addAll(store.putMemories(memories)));
+    }
+
+    // Users (null for todos without one) whose todos up to the watermark differ from the store's
+    private Set<String> findDriftedUsers() {
+        Map<String, long[]> expected = store.todoChecksums();
+        Set<String> drifted = new HashSet<>();
+        for (TodoUserChecksum checksum : todoRepository.findUserChecksums(todoWatermark)) {
+            long[] actual = {checksum.getTodoCount(), checksum.getRowChecksum(), checksum.getDueChecksum()};
+            if (!Arrays.equals(actual, expected.remove(checksum.getUserId()))) {
+                drifted.add(checksum.getUserId());
+            }
+        }
+        // Users left over had all of their todos deleted
+        drifted.addAll(expected.keySet());
+        return drifted;
+    }
+
+    // Deleted users leave no updatedAt behind, so a count mismatch reloads every profile; memories are reconciled
+    // by the tailer. Returns the users whose profile or memory changed
+    private Set<String> reconcileProfilesAndMemories() {
+        Set<String> changed = new HashSet<>();
+        if (userRepository.count() != store.userCount()) {
+            List<UserProfile> profiles = userRepository.findAllProfiles();
+            changed.addAll(store.replaceProfiles(profiles));
+            activityCounters.observeProfiles(profiles);
+        }
+        // The poll's own reconcile interval has already passed
+        memoryTailer.reconcile(0, store.memoryCount(), store::memoryUserIds,
+                gone -> changed.addAll(store.removeMemories(gone)),
+                missing -> changed.addAll(store.putMemories(userMemoryRepository.findFlagsByUserIdIn(missing))));
+        return changed;
+    }
+
+    // Reloaded todos stop at the watermark, so pushed todos past it are left for the tailer to read again
+    private void resyncTodos(Set<String> userIds) {
+        pushedTodos.values().removeIf(userIds::contains);
+        List<String> ids = new ArrayList<>(userIds);
+        ids.remove(null);
+        long completed = 0;
+        for (int from = 0; from < ids.size(); from += RESYNC_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + RESYNC_CHUNK_SIZE));
+            List<Object[]> rows = todoRepository.findIngestRowsByUserIdIn(chunk, todoWatermark);
+            completed += store.replaceUserTodos(chunk, rows);
+            userSimilarityService.applyReplacedTodos(chunk, rows);
+        }
+        if (userIds.contains(null)) {
+            completed += store.replaceUserTodos(Collections.singletonList(null),
+                    todoRepository.findIngestRowsWithoutUser(todoWatermark));
+        }
+        activityCounters.observeCompletions(completed);
+    }
+
+    private static LocalDateTime orEpoch(LocalDateTime value) {
+        return value == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : value;
+    }
+}
@@ -0,0 +1,177 @@
+package com.tapqyr.analytics.store;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Open todos with due dates, ordered by due date for overdue and upcoming queries.
+ * <p>
+ * Todos not yet overdue wait in a binary min-heap keyed on the due date. {@link #sweep} pops
+ * those whose due date has passed into per-user overdue counters and a count per due hour, so overdue
+ * totals, per-user counts and aging cost nothing per overdue todo. Removed rows are dropped from the
+ * counters at once but left in the heap and skipped when popped; {@link TodoColumns#compacted()}
+ * rebuilds the index. Rows are {@link TodoColumns} row numbers. Not thread-safe, like its owner.
+ */
+final class DueDateIndex {
+
+    static final long HOUR_MILLIS = 3_600_000L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Min-heap of pending due dates and their rows
+    private long[] heapDue = new long[INITIAL_CAPACITY];
+    private int[] heapRows = new int[INITIAL_CAPACITY];
+    private int heapSize;
+    private final BitSet pending = new BitSet(INITIAL_CAPACITY);
+
+    // Everything due before this instant has been swept
+    private long sweptThrough = Long.MIN_VALUE;
+
+    private long overdueCount;
+    private int[] userOverdue = new int[64];
+    // Overdue todos per due hour (epoch millis / HOUR_MILLIS)
+    private final TreeMap<Long, Integer> overdueByDueHour = new TreeMap<>();
+
+    long sweptThrough() {
+        return sweptThrough;
+    }
+
+    void add(int row, int user, long dueDate) {
+        if (dueDate < sweptThrough) {
+            markOverdue(user, dueDate, 1);
+            return;
+        }
+        if (heapSize == heapDue.length) {
+            heapDue = Arrays.copyOf(heapDue, heapSize * 2);
+            heapRows = Arrays.copyOf(heapRows, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDue[parent] <= dueDate) break;
+            heapDue[i] = heapDue[parent];
+            heapRows[i] = heapRows[parent];
+            i = parent;
+        }
+        heapDue[i] = dueDate;
+        heapRows[i] = row;
+        pending.set(row);
+    }
+
+    void remove(int row, int user, long dueDate) {
+        if (pending.get(row)) {
+            pending.clear(row);
+        } else {
+            markOverdue(user, dueDate, -1);
+        }
+    }
+
+    // Whether sweep(now) has anything to move; only reads, so callers may check under a shared lock
+    boolean needsSweep(long now) {
+        return heapSize > 0 && heapDue[0] < now;
+    }
+
+    // Move todos due before now out of the heap; userOf maps a row to its user
+    void sweep(long now, IntUnaryOperator userOf) {
+        while (heapSize > 0 && heapDue[0] < now) {
+            long due = heapDue[0];
+            int row = heapRows[0];
+            popHead();
+            if (pending.get(row)) {
+                pending.clear(row);
+                markOverdue(userOf.applyAsInt(row), due, 1);
+            }
+        }
+        sweptThrough = Math.max(sweptThrough, now);
+    }
+
+    long overdueCount() {
+        return overdueCount;
+    }
+
+    int userOverdueCount(int user) {
+        return user < userOverdue.length ? userOverdue[user] : 0;
+    }
+
+    // Overdue todos by hours past their due hour: bucket i counts ages below upperHours[i] (and at or above
+    // the previous bound), the last bucket everything older
+    long[] overdueAging(long now, long[] upperHours) {
+        long[] buckets = new long[upperHours.length + 1];
+        for (Map.Entry<Long, Integer> entry : overdueByDueHour.entrySet()) {
+            long ageHours = Math.floorDiv(now - entry.getKey() * HOUR_MILLIS, HOUR_MILLIS);
+            int bucket = 0;
+            while (bucket < upperHours.length && ageHours >= upperHours[bucket]) bucket++;
+            buckets[bucket] += entry.getValue();
+        }
+        return buckets;
+    }
+
+    // Pending todos due at or before the bound, as {due date, row} pairs in due-date order
+    long[][] pendingDueBy(long bound, int limit) {
+        long[] dues = new long[16];
+        int[] rows = new int[16];
+        int count = 0;
+        int[] stack = new int[32];
+        int top = 0;
+        if (heapSize > 0) stack[top++] = 0;
+        // Walk the heap, pruning subtrees whose root is already past the bound
+        while (top > 0) {
+            int i = stack[--top];
+            if (heapDue[i] > bound) continue;
+            if (pending.get(heapRows[i])) {
+                if (count == dues.length) {
+                    dues = Arrays.copyOf(dues, count * 2);
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                dues[count] = heapDue[i];
+                rows[count] = heapRows[i];
+                count++;
+            }
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            if (2 * i + 1 < heapSize) stack[top++] = 2 * i + 1;
+            if (2 * i + 2 < heapSize) stack[top++] = 2 * i + 2;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        long[] sortDues = dues;
+        Arrays.sort(order, (a, b) -> Long.compare(sortDues[a], sortDues[b]));
+        int size = Math.min(count, limit);
+        long[][] result = new long[size][];
+        for (int i = 0; i < size; i++) {
+            result[i] = new long[]{dues[order[i]], rows[order[i]]};
+        }
+        return result;
+    }
+
+    private void markOverdue(int user, long dueDate, int delta) {
+        overdueCount += delta;
+        if (user >= userOverdue.length) {
+            userOverdue = Arrays.copyOf(userOverdue, Math.max(userOverdue.length * 2, user + 1));
+        }
+        userOverdue[user] += delta;
+        overdueByDueHour.merge(Math.floorDiv(dueDate, HOUR_MILLIS), delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private void popHead() {
+        int last = --heapSize;
+        long due = heapDue[last];
+        int row = heapRows[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) break;
+            if (child + 1 < last && heapDue[child + 1] < heapDue[child]) child++;
+            if (heapDue[child] >= due) break;
+            heapDue[i] = heapDue[child];
+            heapRows[i] = heapRows[child];
+            i = child;
+        }
+        if (last > 0) {
+            heapDue[i] = due;
+            heapRows[i] = row;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.tapqyr.analytics.store;
+
+// An open todo in the due-date index, identified by its SQLite rowid
+public record DueTodo(long rowId, String userId, long dueDate) {
+}
@@ -0,0 +1,66 @@
+package com.tapqyr.analytics.store;
+
+import java.util.Arrays;
+
+/**
+ * Event counts per minute (epoch millis / 60000) over a fixed number of trailing minutes, in a ring buffer.
+ * <p>
+ * The bucket of a minute is reused once the minute falls out of the ring; moving the newest minute forward
+ * zeroes the buckets skipped over. Counts for minutes older than the ring are dropped.
+ */
+final class MinuteRing {
+
+    static final long MINUTE_MILLIS = 60_000L;
+
+    private final long[] counts;
+    // Newest minute with a bucket; the ring covers (newestMinute - counts.length, newestMinute]
+    private long newestMinute = Long.MIN_VALUE;
+
+    MinuteRing(int minutes) {
+        counts = new long[minutes];
+    }
+
+    int minutes() {
+        return counts.length;
+    }
+
+    synchronized void add(long minute, long delta) {
+        advanceTo(minute);
+        if (minute > newestMinute - counts.length) {
+            counts[slot(minute)] += delta;
+        }
+    }
+
+    // Counts of the inclusive minute range, clipped to the ring once it is advanced to toMinute
+    synchronized long sum(long fromMinute, long toMinute) {
+        advanceTo(toMinute);
+        long total = 0;
+        for (long minute = Math.max(fromMinute, newestMinute - counts.length + 1); minute <= toMinute; minute++) {
+            total += counts[slot(minute)];
+        }
+        return total;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(counts, 0);
+        newestMinute = Long.MIN_VALUE;
+    }
+
+    private void advanceTo(long minute) {
+        if (minute <= newestMinute) {
+            return;
+        }
+        if (newestMinute == Long.MIN_VALUE || minute - newestMinute >= counts.length) {
+            Arrays.fill(counts, 0);
+        } else {
+            for (long skipped = newestMinute + 1; skipped <= minute; skipped++) {
+                counts[slot(skipped)] = 0;
+            }
+        }
+        newestMinute = minute;
+    }
+
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) counts.length);
+    }
+}
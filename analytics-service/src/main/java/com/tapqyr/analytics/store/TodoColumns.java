@@ -0,0 +1,295 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.dto.ActivityHeatmap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Todo rows stored column-wise in growable primitive arrays, indexed by row number.
+ * <p>
+ * Users are dictionary-encoded ints assigned by {@link AnalyticsStore}, timestamps are epoch
+ * milliseconds, priorities bytes, local hour of the week and day of the year shorts, and the
+ * completed, AI-generated and live flags bitsets. Each user keeps the list of its row numbers and
+ * its completed and AI-generated counts so per-user queries do not scan the whole table, while range scans over every row are split into
+ * segments counted in parallel. {@link ActivityHistogram}s per user and overall, and the
+ * {@link DueDateIndex} of open todos, follow every append and removal. Replacing a user's
+ * todos tombstones their old rows; {@link #compacted()} drops tombstones once they pile up.
+ * Not thread-safe: the owning store guards every call with its read/write lock.
+ */
+final class TodoColumns {
+
+    static final long NO_DUE_DATE = Long.MIN_VALUE;
+
+    // Keeps the checksum of a due date small enough for SQLite's 64-bit SUM
+    static final long DUE_CHECKSUM_MODULUS = 1_000_003L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_USER_ROWS = 8;
+
+    private int size;
+    private int liveCount;
+
+    private long[] rowIds = new long[INITIAL_CAPACITY];
+    private int[] users = new int[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] dueDates = new long[INITIAL_CAPACITY];
+    private byte[] priorities = new byte[INITIAL_CAPACITY];
+    private short[] hoursOfWeek = new short[INITIAL_CAPACITY];
+    private short[] daysOfYear = new short[INITIAL_CAPACITY];
+    private final BitSet completed = new BitSet(INITIAL_CAPACITY);
+    private final BitSet aiGenerated = new BitSet(INITIAL_CAPACITY);
+    private final BitSet live = new BitSet(INITIAL_CAPACITY);
+
+    // Row numbers of each user's live rows
+    private int[][] userRows = new int[INITIAL_USER_ROWS][];
+    private int[] userRowCounts = new int[INITIAL_USER_ROWS];
+    private int[] userCompletedCounts = new int[INITIAL_USER_ROWS];
+    private int[] userAiGeneratedCounts = new int[INITIAL_USER_ROWS];
+
+    private final ActivityHistogram histogram = new ActivityHistogram();
+    private ActivityHistogram[] userHistograms = new ActivityHistogram[INITIAL_USER_ROWS];
+    private final DueDateIndex dueIndex = new DueDateIndex();
+
+    int size() {
+        return size;
+    }
+
+    int liveCount() {
+        return liveCount;
+    }
+
+    // priority is an index into UserSimilarityIndex.PRIORITIES (-1 if unknown); hourOfWeek and dayOfYear
+    // are as in ActivityHeatmap
+    void append(long rowId, int user, long created, long dueDate, int priority, int hourOfWeek, int dayOfYear,
+                boolean isCompleted, boolean isAiGenerated) {
+        if (size == rowIds.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        rowIds[row] = rowId;
+        users[row] = user;
+        createdAt[row] = created;
+        dueDates[row] = dueDate;
+        priorities[row] = (byte) priority;
+        hoursOfWeek[row] = (short) hourOfWeek;
+        daysOfYear[row] = (short) dayOfYear;
+        completed.set(row, isCompleted);
+        aiGenerated.set(row, isAiGenerated);
+        live.set(row);
+        liveCount++;
+        addUserRow(user, row);
+        if (isCompleted) userCompletedCounts[user]++;
+        if (isAiGenerated) userAiGeneratedCounts[user]++;
+        histogram.add(hourOfWeek, dayOfYear, 1);
+        if (userHistograms[user] == null) {
+            userHistograms[user] = new ActivityHistogram();
+        }
+        userHistograms[user].add(hourOfWeek, dayOfYear, 1);
+        if (!isCompleted && dueDate != NO_DUE_DATE) {
+            dueIndex.add(row, user, dueDate);
+        }
+    }
+
+    // Tombstone every row of the user
+    void removeUser(int user) {
+        if (user >= userRows.length || userRows[user] == null) {
+            return;
+        }
+        int[] rows = userRows[user];
+        for (int i = 0; i < userRowCounts[user]; i++) {
+            live.clear(rows[i]);
+            histogram.add(hoursOfWeek[rows[i]], daysOfYear[rows[i]], -1);
+            if (!completed.get(rows[i]) && dueDates[rows[i]] != NO_DUE_DATE) {
+                dueIndex.remove(rows[i], user, dueDates[rows[i]]);
+            }
+        }
+        liveCount -= userRowCounts[user];
+        userRows[user] = null;
+        userRowCounts[user] = 0;
+        userCompletedCounts[user] = 0;
+        userAiGeneratedCounts[user] = 0;
+        userHistograms[user] = null;
+    }
+
+    // Row number of the user's live todo with this rowid, or -1
+    int findUserRow(int user, long rowId) {
+        for (int i = 0; i < userTodoCount(user); i++) {
+            if (rowIds[userRows[user][i]] == rowId) {
+                return userRows[user][i];
+            }
+        }
+        return -1;
+    }
+
+    // Mark a live row completed; false when it already was
+    boolean complete(int row) {
+        if (completed.get(row)) {
+            return false;
+        }
+        completed.set(row);
+        userCompletedCounts[users[row]]++;
+        if (dueDates[row] != NO_DUE_DATE) {
+            dueIndex.remove(row, users[row], dueDates[row]);
+        }
+        return true;
+    }
+
+    int userTodoCount(int user) {
+        return user < userRowCounts.length ? userRowCounts[user] : 0;
+    }
+
+    long rowId(int row) {
+        return rowIds[row];
+    }
+
+    int user(int row) {
+        return users[row];
+    }
+
+    // Open todos with due dates; sweepDue must run before overdue counts are read
+    DueDateIndex dueIndex() {
+        return dueIndex;
+    }
+
+    void sweepDue(long now) {
+        dueIndex.sweep(now, row -> users[row]);
+    }
+
+    ActivityHistogram histogram() {
+        return histogram;
+    }
+
+    // Null when the user has no todos
+    ActivityHistogram userHistogram(int user) {
+        return user < userHistograms.length ? userHistograms[user] : null;
+    }
+
+    int userCompletedCount(int user) {
+        return user < userCompletedCounts.length ? userCompletedCounts[user] : 0;
+    }
+
+    int userAiGeneratedCount(int user) {
+        return user < userAiGeneratedCounts.length ? userAiGeneratedCounts[user] : 0;
+    }
+
+    // Counts for every live row created in the inclusive epoch-millisecond range, scanning
+    // segments of at most segmentRows rows on the common fork-join pool
+    ActivityCounts countBetween(long startMillis, long endMillis, int segmentRows) {
+        return ForkJoinPool.commonPool().invoke(new RangeScan(0, size, startMillis, endMillis, Math.max(1, segmentRows)));
+    }
+
+    private void countSegment(int from, int to, long startMillis, long endMillis, ActivityCounts counts) {
+        for (int row = live.nextSetBit(from); row >= 0 && row < to; row = live.nextSetBit(row + 1)) {
+            countRow(row, startMillis, endMillis, counts);
+        }
+    }
+
+    void countUserBetween(int user, long startMillis, long endMillis, ActivityCounts counts) {
+        for (int i = 0; i < userTodoCount(user); i++) {
+            countRow(userRows[user][i], startMillis, endMillis, counts);
+        }
+    }
+
+    private void countRow(int row, long startMillis, long endMillis, ActivityCounts counts) {
+        long created = createdAt[row];
+        if (created < startMillis || created > endMillis) return;
+        counts.add(completed.get(row), aiGenerated.get(row), dueDates[row] != NO_DUE_DATE, priorities[row],
+                hoursOfWeek[row] / ActivityHeatmap.HOURS_PER_DAY);
+    }
+
+    // {todo count, row checksum, due-date checksum}, computed exactly like TodoRepository.CHECKSUM_COLUMNS
+    long[] userChecksum(int user) {
+        long rowChecksum = 0;
+        long dueChecksum = 0;
+        for (int i = 0; i < userTodoCount(user); i++) {
+            int row = userRows[user][i];
+            rowChecksum += rowIds[row] * checksumWeight(row);
+            dueChecksum += dueDates[row] == NO_DUE_DATE ? 0 : dueDates[row] % DUE_CHECKSUM_MODULUS;
+        }
+        return new long[]{userTodoCount(user), rowChecksum, dueChecksum};
+    }
+
+    private long checksumWeight(int row) {
+        return 1 + (completed.get(row) ? 2 : 0) + (aiGenerated.get(row) ? 4 : 0)
+                + (priorities[row] == 2 ? 8 : 0) + (priorities[row] == 0 ? 16 : 0)
+                + (dueDates[row] != NO_DUE_DATE ? 32 : 0);
+    }
+
+    // A copy holding only live rows, with user row lists rebuilt
+    TodoColumns compacted() {
+        TodoColumns copy = new TodoColumns();
+        copy.grow(Math.max(INITIAL_CAPACITY, liveCount));
+        // Rows already overdue here go straight to the copy's overdue counters
+        copy.sweepDue(dueIndex.sweptThrough());
+        for (int row = live.nextSetBit(0); row >= 0 && row < size; row = live.nextSetBit(row + 1)) {
+            copy.append(rowIds[row], users[row], createdAt[row], dueDates[row], priorities[row], hoursOfWeek[row],
+                    daysOfYear[row], completed.get(row), aiGenerated.get(row));
+        }
+        return copy;
+    }
+
+    private void addUserRow(int user, int row) {
+        if (user >= userRows.length) {
+            int capacity = Math.max(userRows.length * 2, user + 1);
+            userRows = Arrays.copyOf(userRows, capacity);
+            userRowCounts = Arrays.copyOf(userRowCounts, capacity);
+            userCompletedCounts = Arrays.copyOf(userCompletedCounts, capacity);
+            userAiGeneratedCounts = Arrays.copyOf(userAiGeneratedCounts, capacity);
+            userHistograms = Arrays.copyOf(userHistograms, capacity);
+        }
+        int[] rows = userRows[user];
+        if (rows == null) {
+            rows = userRows[user] = new int[INITIAL_USER_ROWS];
+        } else if (userRowCounts[user] == rows.length) {
+            rows = userRows[user] = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[userRowCounts[user]++] = row;
+    }
+
+    private void grow(int capacity) {
+        rowIds = Arrays.copyOf(rowIds, capacity);
+        users = Arrays.copyOf(users, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        dueDates = Arrays.copyOf(dueDates, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        hoursOfWeek = Arrays.copyOf(hoursOfWeek, capacity);
+        daysOfYear = Arrays.copyOf(daysOfYear, capacity);
+    }
+
+    // Halves the row range until it fits in one segment, then merges the segments' counts.
+    // The caller's read lock keeps writers out until the whole scan has joined.
+    private final class RangeScan extends RecursiveTask<ActivityCounts> {
+
+        private final int from;
+        private final int to;
+        private final long startMillis;
+        private final long endMillis;
+        private final int segmentRows;
+
+        RangeScan(int from, int to, long startMillis, long endMillis, int segmentRows) {
+            this.from = from;
+            this.to = to;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.segmentRows = segmentRows;
+        }
+
+        @Override
+        protected ActivityCounts compute() {
+            if (to - from <= segmentRows) {
+                ActivityCounts counts = new ActivityCounts();
+                countSegment(from, to, startMillis, endMillis, counts);
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            RangeScan left = new RangeScan(from, mid, startMillis, endMillis, segmentRows);
+            left.fork();
+            ActivityCounts counts = new RangeScan(mid, to, startMillis, endMillis, segmentRows).compute();
+            counts.merge(left.join());
+            return counts;
+        }
+    }
+}
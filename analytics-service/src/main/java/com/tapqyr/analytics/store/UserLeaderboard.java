@@ -0,0 +1,87 @@
+package com.tapqyr.analytics.store;
+
+import com.tapqyr.analytics.dto.LeaderboardCursor;
+import com.tapqyr.analytics.dto.LeaderboardMetric;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Users with todos kept sorted by every {@link LeaderboardMetric}, best first and ties by user ID, so a
+ * leaderboard page is a seek to the cursor plus one step per user returned. {@link #update} re-files a
+ * user whenever its todo totals change. Rows are keyed by the owning store's user codes. Not thread-safe,
+ * like its owner.
+ */
+final class UserLeaderboard {
+
+    // Metric value as a fraction, so ranks compare exactly
+    record Entry(long numerator, long denominator, String userId, int user) {
+    }
+
+    private static final Comparator<Entry> BEST_FIRST = (a, b) -> {
+        int byValue = LeaderboardCursor.compareFractions(b.numerator(), b.denominator(), a.numerator(), a.denominator());
+        return byValue != 0 ? byValue : a.userId().compareTo(b.userId());
+    };
+
+    private final Map<LeaderboardMetric, TreeSet<Entry>> ranked = new EnumMap<>(LeaderboardMetric.class);
+
+    // Totals each user is currently filed under, indexed by user code
+    private long[] todoCounts = new long[64];
+    private long[] completedCounts = new long[64];
+    private long[] aiGeneratedCounts = new long[64];
+
+    UserLeaderboard() {
+        for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+            ranked.put(metric, new TreeSet<>(BEST_FIRST));
+        }
+    }
+
+    void update(int user, String userId, long todoCount, long completedCount, long aiGeneratedCount) {
+        if (user >= todoCounts.length) {
+            int capacity = Math.max(todoCounts.length * 2, user + 1);
+            todoCounts = Arrays.copyOf(todoCounts, capacity);
+            completedCounts = Arrays.copyOf(completedCounts, capacity);
+            aiGeneratedCounts = Arrays.copyOf(aiGeneratedCounts, capacity);
+        }
+        if (todoCounts[user] == todoCount && completedCounts[user] == completedCount
+                && aiGeneratedCounts[user] == aiGeneratedCount) {
+            return;
+        }
+        if (todoCounts[user] > 0) {
+            ranked.forEach((metric, users) -> users.remove(entry(metric, user, userId)));
+        }
+        todoCounts[user] = todoCount;
+        completedCounts[user] = completedCount;
+        aiGeneratedCounts[user] = aiGeneratedCount;
+        if (todoCount > 0) {
+            ranked.forEach((metric, users) -> users.add(entry(metric, user, userId)));
+        }
+    }
+
+    // Users ranked below the cursor position, best first
+    NavigableSet<Entry> after(LeaderboardMetric metric, LeaderboardCursor cursor) {
+        return ranked.get(metric).tailSet(new Entry(cursor.numerator(), cursor.denominator(), cursor.userId(), -1), false);
+    }
+
+    long todoCount(int user) {
+        return user < todoCounts.length ? todoCounts[user] : 0;
+    }
+
+    long completedCount(int user) {
+        return user < completedCounts.length ? completedCounts[user] : 0;
+    }
+
+    long aiGeneratedCount(int user) {
+        return user < aiGeneratedCounts.length ? aiGeneratedCounts[user] : 0;
+    }
+
+    private Entry entry(LeaderboardMetric metric, int user, String userId) {
+        long todoCount = todoCounts[user];
+        return new Entry(metric.numerator(todoCount, completedCounts[user], aiGeneratedCounts[user]),
+                metric.denominator(todoCount), userId, user);
+    }
+}
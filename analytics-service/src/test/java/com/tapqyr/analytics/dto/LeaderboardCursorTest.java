@@ -0,0 +1,46 @@
+package com.tapqyr.analytics.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardCursorTest {
+
+    private static final long MAX = Long.MAX_VALUE;
+
+    @Test
+    void comparesSmallFractions() {
+        assertEquals(0, LeaderboardCursor.compareFractions(1, 2, 2, 4));
+        assertTrue(LeaderboardCursor.compareFractions(1, 3, 1, 2) < 0);
+        assertTrue(LeaderboardCursor.compareFractions(2, 3, 1, 2) > 0);
+        assertEquals(0, LeaderboardCursor.compareFractions(0, 5, 0, 7));
+        assertTrue(LeaderboardCursor.compareFractions(0, 5, 1, MAX) < 0);
+    }
+
+    @Test
+    void comparesFractionsWhoseCrossProductsOverflow() {
+        // x / (x - 1) shrinks as x grows
+        assertTrue(LeaderboardCursor.compareFractions(MAX, MAX - 1, MAX - 1, MAX - 2) < 0);
+        assertTrue(LeaderboardCursor.compareFractions(MAX - 1, MAX - 2, MAX, MAX - 1) > 0);
+        assertEquals(0, LeaderboardCursor.compareFractions(1L << 62, 1L << 61, 1L << 62, 1L << 61));
+        assertEquals(0, LeaderboardCursor.compareFractions(MAX, MAX, 1, 1));
+        // 2^63 against 1: equal high words, and a low word that is negative when read as signed
+        assertTrue(LeaderboardCursor.compareFractions(1L << 62, 1, 1, 2) > 0);
+    }
+
+    @Test
+    void roundTripsThroughItsEncoding() {
+        LeaderboardCursor cursor = new LeaderboardCursor(3, 4, "user/with/slashes");
+
+        assertEquals(cursor, LeaderboardCursor.parse(cursor.encode()));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String cursor : new String[]{"1/2", "a/2/u", "1/0/u", "-1/2/u", ""}) {
+            assertThrows(IllegalArgumentException.class, () -> LeaderboardCursor.parse(cursor));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.tapqyr.analytics.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventQueueTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(2, new EventQueue<Integer>(1).capacity());
+        assertEquals(8, new EventQueue<Integer>(5).capacity());
+        assertEquals(8, new EventQueue<Integer>(8).capacity());
+    }
+
+    @Test
+    void rejectsOffersWhileFull() {
+        EventQueue<Integer> queue = new EventQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        assertFalse(queue.offer(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void wrapsAroundTheRing() {
+        EventQueue<Integer> queue = new EventQueue<>(4);
+        int next = 0;
+        int expected = 0;
+        // Three elements per lap so positions drift across every slot
+        for (int lap = 0; lap < 20; lap++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(queue.offer(next++));
+            }
+            assertEquals(3, queue.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, queue.poll());
+            }
+            assertEquals(0, queue.size());
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    void keepsEachProducersOrderUnderConcurrentOffers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        EventQueue<long[]> queue = new EventQueue<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long seq = 0; seq < perProducer; seq++) {
+                    long[] element = {producer, seq};
+                    while (!queue.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            // A failed assertion must not leave producers waiting on a full queue
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        long[] nextSeq = new long[producers];
+        long received = 0;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (received < (long) producers * perProducer && System.nanoTime() < deadline) {
+            long[] element = queue.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(nextSeq[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+
+        assertEquals((long) producers * perProducer, received);
+        for (long seq : nextSeq) {
+            assertEquals(perProducer, seq);
+        }
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,115 @@
+package com.tapqyr.analytics.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DueDateIndexTest {
+
+    private static final long HOUR = DueDateIndex.HOUR_MILLIS;
+
+    @Test
+    void sweepMovesOnlyTodosDueBeforeNow() {
+        DueDateIndex index = new DueDateIndex();
+        int[] users = {0, 1, 0, 1};
+        index.add(0, users[0], 1000);
+        index.add(1, users[1], 2000);
+        index.add(2, users[2], 3000);
+        // Due exactly at now is not overdue yet
+        index.add(3, users[3], 2500);
+
+        index.sweep(2500, row -> users[row]);
+
+        assertEquals(2, index.overdueCount());
+        assertEquals(1, index.userOverdueCount(0));
+        assertEquals(1, index.userOverdueCount(1));
+        assertEquals(2500, index.sweptThrough());
+        assertFalse(index.needsSweep(2500));
+        assertTrue(index.needsSweep(2501));
+        assertEquals(2, index.pendingDueBy(Long.MAX_VALUE, 10).length);
+    }
+
+    @Test
+    void sweepPopsInDueOrderFromAShuffledHeap() {
+        DueDateIndex index = new DueDateIndex();
+        int rows = 2000;
+        for (int i = 0; i < rows; i++) {
+            // A permutation of 0..rows-1, so the heap is filled out of order
+            index.add(i, i % 7, (i * 7919L) % rows);
+        }
+
+        index.sweep(500, row -> row % 7);
+        assertEquals(500, index.overdueCount());
+        index.sweep(1500, row -> row % 7);
+        assertEquals(1500, index.overdueCount());
+
+        long[][] pending = index.pendingDueBy(Long.MAX_VALUE, rows);
+        assertEquals(rows - 1500, pending.length);
+        for (int i = 0; i < pending.length; i++) {
+            assertEquals(1500 + i, pending[i][0]);
+        }
+        long perUser = 0;
+        for (int user = 0; user < 7; user++) {
+            perUser += index.userOverdueCount(user);
+        }
+        assertEquals(1500, perUser);
+    }
+
+    @Test
+    void sweepSkipsRowsRemovedWhilePending() {
+        DueDateIndex index = new DueDateIndex();
+        index.add(0, 0, 1000);
+        index.add(1, 0, 2000);
+        index.remove(0, 0, 1000);
+
+        index.sweep(5000, row -> 0);
+
+        assertEquals(1, index.overdueCount());
+        assertEquals(1, index.userOverdueCount(0));
+        assertEquals(0, index.pendingDueBy(Long.MAX_VALUE, 10).length);
+    }
+
+    @Test
+    void removingASweptRowUncountsIt() {
+        DueDateIndex index = new DueDateIndex();
+        index.add(0, 2, 1000);
+        index.sweep(5000, row -> 2);
+
+        index.remove(0, 2, 1000);
+
+        assertEquals(0, index.overdueCount());
+        assertEquals(0, index.userOverdueCount(2));
+        assertArrayEquals(new long[]{0, 0}, index.overdueAging(5000, new long[]{24}));
+    }
+
+    @Test
+    void todosAddedAlreadyOverdueAreCountedAtOnce() {
+        DueDateIndex index = new DueDateIndex();
+        index.sweep(10 * HOUR, row -> 0);
+
+        index.add(0, 3, 2 * HOUR);
+        index.add(1, 3, 20 * HOUR);
+
+        assertEquals(1, index.overdueCount());
+        assertEquals(1, index.userOverdueCount(3));
+        assertFalse(index.needsSweep(10 * HOUR));
+        assertTrue(index.needsSweep(21 * HOUR));
+    }
+
+    @Test
+    void agesSweptTodosByDueHour() {
+        DueDateIndex index = new DueDateIndex();
+        long now = 100 * HOUR;
+        index.add(0, 0, now - HOUR);
+        index.add(1, 0, now - 30 * HOUR);
+        index.add(2, 0, now - 30 * HOUR + 1);
+        index.add(3, 0, now - 200 * HOUR);
+
+        index.sweep(now, row -> 0);
+
+        assertArrayEquals(new long[]{1, 2, 1}, index.overdueAging(now, new long[]{24, 72}));
+    }
+}
@@ -0,0 +1,79 @@
+package com.tapqyr.analytics.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MinuteRingTest {
+
+    @Test
+    void sumsInclusiveMinuteRanges() {
+        MinuteRing ring = new MinuteRing(10);
+        ring.add(100, 1);
+        ring.add(101, 2);
+        ring.add(102, 3);
+        ring.add(102, 4);
+
+        assertEquals(10, ring.sum(100, 102));
+        assertEquals(2, ring.sum(101, 101));
+        assertEquals(9, ring.sum(101, 102));
+        assertEquals(0, ring.sum(103, 105));
+    }
+
+    @Test
+    void dropsMinutesThatFallOutOfTheRing() {
+        MinuteRing ring = new MinuteRing(5);
+        ring.add(100, 1);
+        ring.add(104, 2);
+        assertEquals(3, ring.sum(100, 104));
+
+        ring.add(105, 4);
+        assertEquals(6, ring.sum(100, 105));
+        assertEquals(0, ring.sum(100, 100));
+    }
+
+    @Test
+    void ignoresMinutesOlderThanTheRing() {
+        MinuteRing ring = new MinuteRing(5);
+        ring.add(110, 1);
+        ring.add(105, 7);
+        ring.add(106, 2);
+
+        assertEquals(3, ring.sum(100, 110));
+    }
+
+    @Test
+    void reusedBucketsStartFromZero() {
+        MinuteRing ring = new MinuteRing(3);
+        ring.add(0, 4);
+        ring.add(1, 5);
+        // Minute 3 takes minute 0's bucket
+        ring.add(3, 1);
+
+        assertEquals(1, ring.sum(3, 3));
+        assertEquals(0, ring.sum(2, 2));
+        assertEquals(6, ring.sum(0, 3));
+    }
+
+    @Test
+    void advancingPastTheWholeRingClearsIt() {
+        MinuteRing ring = new MinuteRing(4);
+        ring.add(100, 5);
+        ring.add(101, 6);
+
+        assertEquals(0, ring.sum(96, 200));
+        ring.add(201, 1);
+        assertEquals(1, ring.sum(198, 201));
+    }
+
+    @Test
+    void clearForgetsCountsAndTheNewestMinute() {
+        MinuteRing ring = new MinuteRing(4);
+        ring.add(100, 5);
+        ring.clear();
+
+        ring.add(50, 2);
+        assertEquals(2, ring.sum(50, 50));
+        assertEquals(0, ring.sum(100, 100));
+    }
+}